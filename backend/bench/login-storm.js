@@ -0,0 +1,72 @@
+// Catalog latency while logins hammer BCrypt (see README.md).
+//
+//   k6 run -e LOGIN_RATE=0   login-storm.js   # baseline: catalog traffic only
+//   k6 run -e LOGIN_RATE=200 login-storm.js   # the same catalog traffic during a login storm
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api/v1';
+const DURATION = __ENV.DURATION || '2m';
+const CATALOG_RATE = parseInt(__ENV.CATALOG_RATE || '100', 10);
+const LOGIN_RATE = parseInt(__ENV.LOGIN_RATE || '200', 10);
+const CATALOG_P99_MS = parseInt(__ENV.CATALOG_P99_MS || '250', 10);
+
+const EMAIL = __ENV.BENCH_EMAIL || 'bench@example.com';
+const PASSWORD = __ENV.BENCH_PASSWORD || 'bench-password';
+const JSON_HEADERS = { headers: { 'Content-Type': 'application/json' } };
+
+const scenarios = {
+    catalog: {
+        executor: 'constant-arrival-rate',
+        exec: 'browse',
+        rate: CATALOG_RATE,
+        timeUnit: '1s',
+        duration: DURATION,
+        preAllocatedVUs: 50,
+        maxVUs: 500,
+    },
+};
+if (LOGIN_RATE > 0) {
+    scenarios.logins = {
+        executor: 'constant-arrival-rate',
+        exec: 'login',
+        rate: LOGIN_RATE,
+        timeUnit: '1s',
+        duration: DURATION,
+        preAllocatedVUs: 200,
+        maxVUs: 2000,
+    };
+}
+
+export const options = {
+    scenarios,
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        'http_req_duration{scenario:catalog}': [`p(99)<${CATALOG_P99_MS}`],
+        'http_req_failed{scenario:catalog}': ['rate<0.001'],
+        // Listed so the summary breaks them out; shed logins (429) are expected
+        'http_req_duration{scenario:logins}': [],
+        'checks{scenario:logins}': [],
+    },
+};
+
+export function setup() {
+    // 400 when the account already exists from an earlier run
+    http.post(`${BASE_URL}/auth/register`, JSON.stringify({
+        firstName: 'Bench',
+        lastName: 'User',
+        email: EMAIL,
+        password: PASSWORD,
+        phone: '+254700000000',
+    }), JSON_HEADERS);
+}
+
+export function browse() {
+    const res = http.get(`${BASE_URL}/products`);
+    check(res, { 'catalog 200': (r) => r.status === 200 });
+}
+
+export function login() {
+    const res = http.post(`${BASE_URL}/auth/login`, JSON.stringify({ email: EMAIL, password: PASSWORD }), JSON_HEADERS);
+    check(res, { 'login 200 or shed with 429': (r) => r.status === 200 || r.status === 429 });
+}
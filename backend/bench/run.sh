@@ -0,0 +1,80 @@
+#!/usr/bin/env bash
+# Runs login-storm.js against a freshly built backend and a throwaway Postgres,
+# once without and once with the login storm, and writes the catalog latencies
+# to results/<timestamp>.md. Needs docker, k6, jq and JDK 17. See README.md.
+set -euo pipefail
+
+cd "$(dirname "$0")"
+BENCH_DIR=$(pwd)
+BACKEND_DIR=$(cd .. && pwd)
+
+PORT=${PORT:-8080}
+PG_PORT=${PG_PORT:-55432}
+PG_CONTAINER=${PG_CONTAINER:-agri-bench-pg}
+# Pin the app to a few cores so the storm can saturate them, e.g. APP_CPUS=0-3
+APP_CPUS=${APP_CPUS:-}
+export DURATION=${DURATION:-2m}
+export CATALOG_RATE=${CATALOG_RATE:-100}
+STORM_LOGIN_RATE=${LOGIN_RATE:-200}
+
+APP_PID=
+cleanup() {
+    if [[ -n "$APP_PID" ]]; then kill "$APP_PID" 2>/dev/null || true; fi
+    docker rm -f "$PG_CONTAINER" >/dev/null 2>&1 || true
+}
+trap cleanup EXIT
+
+docker run -d --rm --name "$PG_CONTAINER" -p "$PG_PORT":5432 \
+    -e POSTGRES_DB=agri -e POSTGRES_USER=agri -e POSTGRES_PASSWORD=agri postgres:16 >/dev/null
+until docker exec "$PG_CONTAINER" pg_isready -U agri -d agri >/dev/null 2>&1; do sleep 1; done
+
+(cd "$BACKEND_DIR" && ./mvnw -q -B -DskipTests package)
+JAR=$(ls "$BACKEND_DIR"/target/*.jar | grep -v plain | head -n 1)
+
+# Per-client rate limits would turn the single k6 client into a 429 test
+APP_ARGS=(
+    "--server.port=$PORT"
+    "--app.ratelimit.auth.capacity=1000000" "--app.ratelimit.auth.per-minute=1000000"
+    "--app.ratelimit.catalog.capacity=1000000" "--app.ratelimit.catalog.per-minute=1000000"
+)
+LAUNCH=(java -jar "$JAR" "${APP_ARGS[@]}")
+if [[ -n "$APP_CPUS" ]]; then LAUNCH=(taskset -c "$APP_CPUS" "${LAUNCH[@]}"); fi
+
+mkdir -p results
+STAMP=$(date +%Y%m%d-%H%M%S)
+DATASOURCE_URL="jdbc:postgresql://localhost:$PG_PORT/agri" DATASOURCE_USER=agri DATASOURCE_PASSWORD=agri \
+    APP_JWT_SECRET=${APP_JWT_SECRET:-$(openssl rand -base64 64 | tr -d '\n')} \
+    APP_JWT_EXPIRATION_MS=900000 APP_JWT_REFRESH_EXPIRATION_MS=604800000 FRONTEND_URL=http://localhost:3000 \
+    "${LAUNCH[@]}" >"results/$STAMP-app.log" 2>&1 &
+APP_PID=$!
+until curl -fs "http://localhost:$PORT/api/v1/products" >/dev/null; do
+    kill -0 "$APP_PID" 2>/dev/null || { echo "backend exited, see results/$STAMP-app.log" >&2; exit 1; }
+    sleep 2
+done
+
+export BASE_URL="http://localhost:$PORT/api/v1"
+# Warm up the JIT and connection pools before anything is measured
+DURATION=30s LOGIN_RATE=0 k6 run -q login-storm.js >/dev/null || true
+LOGIN_RATE=0 k6 run --summary-export "results/$STAMP-baseline.json" login-storm.js || true
+LOGIN_RATE=$STORM_LOGIN_RATE k6 run --summary-export "results/$STAMP-storm.json" login-storm.js || true
+
+metric() {
+    jq -r --arg m "$2" --arg s "$3" '.metrics[$m][$s] // "n/a"' "$1"
+}
+row() {
+    local file="results/$STAMP-$1.json" key='http_req_duration{scenario:catalog}'
+    printf '| %s | %s | %s | %s | %s |\n' "$1" \
+        "$(metric "$file" "$key" 'p(50)')" "$(metric "$file" "$key" 'p(95)')" "$(metric "$file" "$key" 'p(99)')" \
+        "$(metric "$file" 'http_req_duration{scenario:logins}' 'p(99)')"
+}
+{
+    echo "# Login storm, $STAMP"
+    echo
+    echo "Commit $(git -C "$BACKEND_DIR" rev-parse --short HEAD), $(nproc) cores, APP_CPUS=${APP_CPUS:-all}," \
+        "$CATALOG_RATE catalog req/s, $STORM_LOGIN_RATE login req/s, $DURATION per run."
+    echo
+    echo '| run | catalog p50 ms | catalog p95 ms | catalog p99 ms | login p99 ms |'
+    echo '|---|---|---|---|---|'
+    row baseline
+    row storm
+} | tee "results/$STAMP.md"
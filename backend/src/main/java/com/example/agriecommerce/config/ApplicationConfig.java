@@ -4,10 +4,12 @@ import com.example.agriecommerce.model.User;
 import com.example.agriecommerce.repository.UserRepository;
 import com.example.agriecommerce.security.UserPrincipal;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -27,16 +29,57 @@ public class ApplicationConfig {
         };
     }
 
+    @Value("${app.auth.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService());
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Re-hashes a password at the current cost on its next successful login
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService());
         return authProvider;
     }
 
+    @Bean
+    public UserDetailsPasswordService userDetailsPasswordService() {
+        return (userDetails, newPassword) -> {
+            User user = userRepository.findByEmail(userDetails.getUsername())
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            user.setPassword(newPassword);
+            return UserPrincipal.create(userRepository.save(user));
+        };
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new CostAwareBCryptPasswordEncoder(bcryptStrength);
+    }
+
+    /**
+     * Reports hashes made at any other cost as needing an upgrade, so lowering the
+     * cost takes effect for existing users too, not only raising it.
+     */
+    static class CostAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+        private final int strength;
+
+        CostAwareBCryptPasswordEncoder(int strength) {
+            super(strength);
+            this.strength = strength;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            // $2a$10$... : the cost is the two digits after the version
+            if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(6) != '$') {
+                return false;
+            }
+            try {
+                return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
     }
 }
\ No newline at end of file
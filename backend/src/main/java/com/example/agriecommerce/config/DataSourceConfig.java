@@ -0,0 +1,33 @@
+package com.example.agriecommerce.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Read-only transactions run on a replica when app.datasource.replicas.urls
+     * lists any. The proxy only fetches a real connection at the first
+     * statement, by which time the transaction has marked it read-only, so it
+     * can still choose the replica side.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        if (!replicaRouter.hasReplicas()) {
+            return replicaRouter.getPrimary();
+        }
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(replicaRouter.getPrimary());
+        proxy.setReadOnlyDataSource(replicaRouter.getReadOnlyDataSource());
+        // Known up front, so the proxy does not open a connection at startup to find out
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return proxy;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.agriecommerce.config;
+
+import com.example.agriecommerce.dto.response.ReplicaStatsResponse;
+import com.example.agriecommerce.security.UserPrincipal;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Owns the primary pool and the replica pools, and picks where read-only work
+ * runs (see DataSourceConfig). A replica is used only while its last lag check
+ * succeeded and found it within {@code max-lag-ms}; otherwise reads fall back
+ * to the primary, as do reads by a user who committed a write recently enough
+ * that a replica might not have it yet.
+ */
+@Slf4j
+@Component
+public class ReplicaRouter implements TransactionExecutionListener {
+    // 0 when the replica has replayed everything the primary had written at the
+    // time of the check, else the age of the last transaction it replayed. A
+    // server that is not in recovery (a local stand-in) counts as caught up.
+    private static final String LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0" +
+                    " WHEN pg_wal_lsn_diff(CAST(? AS pg_lsn), pg_last_wal_replay_lsn()) <= 0 THEN 0" +
+                    " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, -1) END";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final DataSource readOnlyDataSource = new ReadOnlyDataSource();
+    private final long maxLagMs;
+    private final long pinNanos;
+    private final ConcurrentHashMap<Long, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder pinnedReads = new LongAdder();
+
+    public ReplicaRouter(DataSourceProperties properties,
+                         Environment environment,
+                         @Value("${app.datasource.replicas.urls:}") String replicaUrls,
+                         @Value("${app.datasource.replicas.username:}") String replicaUsername,
+                         @Value("${app.datasource.replicas.password:}") String replicaPassword,
+                         @Value("${app.datasource.replicas.max-lag-ms:5000}") long maxLagMs,
+                         @Value("${app.datasource.replicas.lag-check-interval-ms:2000}") long checkIntervalMs) {
+        Binder binder = Binder.get(environment);
+        this.primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        String username = replicaUsername.isBlank() ? properties.determineUsername() : replicaUsername;
+        String password = replicaPassword.isBlank() ? properties.determinePassword() : replicaPassword;
+        for (String url : replicaUrls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource pool = new HikariDataSource();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setJdbcUrl(url.trim());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setDriverClassName(properties.determineDriverClassName());
+            pool.setPoolName("replica-" + (replicas.size() + 1));
+            pool.setReadOnly(true);
+            // Do not fail startup over a replica; the lag check brings it in once it answers
+            pool.setInitializationFailTimeout(-1);
+            replicas.add(new Replica(url.trim(), pool));
+        }
+        this.maxLagMs = maxLagMs;
+        // A write is on every usable replica once it is older than the lag they
+        // were last measured at, plus the time since that measurement
+        this.pinNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMs + checkIntervalMs);
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /** Where connections for read-only transactions come from. */
+    public DataSource getReadOnlyDataSource() {
+        return readOnlyDataSource;
+    }
+
+    // Read-your-writes: remember when each signed-in user last committed a write
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (commitFailure == null && !transaction.isReadOnly() && hasReplicas()) {
+            Long userId = currentUserId();
+            if (userId != null) {
+                lastWrites.put(userId, System.nanoTime());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.lag-check-interval-ms:2000}")
+    public void checkLag() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        String primaryLsn;
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT CAST(pg_current_wal_lsn() AS text)")) {
+            rs.next();
+            primaryLsn = rs.getString(1);
+        } catch (SQLException e) {
+            log.warn("Could not read the primary's WAL position: {}", e.getMessage());
+            return;
+        }
+        for (Replica replica : replicas) {
+            long lag;
+            try (Connection connection = replica.pool.getConnection();
+                 PreparedStatement ps = connection.prepareStatement(LAG_SQL)) {
+                ps.setString(1, primaryLsn);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    lag = rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                lag = -1;
+                if (replica.usable) {
+                    log.warn("Replica {} failed its lag check: {}", replica.url, e.getMessage());
+                }
+            }
+            replica.lagMs = lag;
+            boolean usable = lag >= 0 && lag <= maxLagMs;
+            if (usable != replica.usable) {
+                log.info("Replica {} is now {} (lag {} ms)", replica.url, usable ? "in use" : "out of use", lag);
+            }
+            replica.usable = usable;
+        }
+        long expired = System.nanoTime() - pinNanos;
+        lastWrites.values().removeIf(at -> at - expired < 0);
+    }
+
+    public ReplicaStatsResponse getStats() {
+        List<ReplicaStatsResponse.ReplicaStats> stats = new ArrayList<>();
+        for (Replica replica : replicas) {
+            stats.add(ReplicaStatsResponse.ReplicaStats.builder()
+                    .url(replica.url)
+                    .usable(replica.usable)
+                    .lagMs(replica.lagMs)
+                    .reads(replica.reads.sum())
+                    .build());
+        }
+        return ReplicaStatsResponse.builder()
+                .maxLagMs(maxLagMs)
+                .primaryReads(primaryReads.sum())
+                .pinnedReads(pinnedReads.sum())
+                .pinnedUsers(lastWrites.size())
+                .replicas(stats)
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        replicas.forEach(replica -> replica.pool.close());
+        primary.close();
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        Long userId = currentUserId();
+        Long lastWrite = userId != null ? lastWrites.get(userId) : null;
+        if (lastWrite != null && System.nanoTime() - lastWrite < pinNanos) {
+            pinnedReads.increment();
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(replicas.size(), 1));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.usable) {
+                continue;
+            }
+            try {
+                Connection connection = replica.pool.getConnection();
+                replica.reads.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.usable = false;
+                log.warn("Replica {} refused a connection, falling back: {}", replica.url, e.getMessage());
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal
+                ? principal.getId() : null;
+    }
+
+    private static final class Replica {
+        private final String url;
+        private final HikariDataSource pool;
+        private final LongAdder reads = new LongAdder();
+        private volatile boolean usable;
+        private volatile long lagMs = -1;
+
+        private Replica(String url, HikariDataSource pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+
+    private final class ReadOnlyDataSource extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readOnlyConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return readOnlyConnection();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.agriecommerce.config;
 
 import com.example.agriecommerce.security.JwtAuthenticationFilter;
 import com.example.agriecommerce.security.JwtAuthenticationEntryPoint;
+import com.example.agriecommerce.security.RateLimitFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -28,6 +30,7 @@ public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final JwtAuthenticationEntryPoint unauthorizedHandler;
+    private final RateLimitFilter rateLimitFilter;
 
     @Value("${app.allowedOrigins}")
     private String[] allowedOrigins;
@@ -41,11 +44,16 @@ public class SecurityConfig {
                         .authenticationEntryPoint(unauthorizedHandler)
                 )
                 .authorizeHttpRequests(auth -> auth
+                        // The JWT filter only runs on the original request; async results and
+                        // error pages are written on a later dispatch of a request that was
+                        // already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers(
                                 "/api/v1/auth/**",
                                 "/api/v1/products/**",
                                 "/api/v1/categories/**",
                                 "/api/v1/cart/**",
+                                "/api/v1/payments/mpesa/callback",
                                 "/uploads/**",
                                 "/v2/api-docs",
                                 "/v3/api-docs",
@@ -63,7 +71,8 @@ public class SecurityConfig {
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -1,13 +1,22 @@
 package com.example.agriecommerce.controller;
 
 import com.example.agriecommerce.dto.response.*;
+import com.example.agriecommerce.service.AdminDashboardService;
 import com.example.agriecommerce.service.AdminService;
+import com.example.agriecommerce.service.DashboardRollupService;
+import com.example.agriecommerce.service.FarmerSalesService;
+import com.example.agriecommerce.service.OrderFactStore;
+import com.example.agriecommerce.service.SalesSeriesService;
+import com.example.agriecommerce.service.UniqueBuyerService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/admin/analytics")
@@ -15,6 +24,19 @@ import java.util.List;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
     private final AdminService adminService;
+    private final DashboardRollupService dashboardRollupService;
+    private final AdminDashboardService adminDashboardService;
+    private final SalesSeriesService salesSeriesService;
+    private final UniqueBuyerService uniqueBuyerService;
+    private final FarmerSalesService farmerSalesService;
+    private final OrderFactStore orderFactStore;
+
+    /** Every widget below in one response; widgets that fail or time out are listed as unavailable. */
+    @GetMapping("/dashboard")
+    public ResponseEntity<AdminDashboardResponse> getDashboard(
+            @RequestParam(defaultValue = "month") String salesPeriod) {
+        return ResponseEntity.ok(adminDashboardService.getDashboard(salesPeriod));
+    }
 
     @GetMapping("/dashboard-stats")
     public ResponseEntity<AdminStatsResponse> getDashboardStats() {
@@ -37,6 +59,37 @@ public class AdminController {
         return ResponseEntity.ok(adminService.getSalesTrend(period));
     }
 
+    /** Revenue and order counts per hour, day, week or month; dates are inclusive, in the business time zone. */
+    @GetMapping("/sales-series")
+    public ResponseEntity<SalesSeriesResponse> getSalesSeries(
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(salesSeriesService.getSeries(granularity, from, to));
+    }
+
+    /**
+     * Estimated distinct buyers overall ({@code dimension=all}) or for one product
+     * id, category or county, over an inclusive range of days (default: the last
+     * 30). Estimates carry a relative standard error of about 1.6%; the response
+     * includes bounds that hold about 95% of the time.
+     */
+    @GetMapping("/unique-buyers")
+    public ResponseEntity<UniqueBuyersResponse> getUniqueBuyers(
+            @RequestParam(defaultValue = "all") String dimension,
+            @RequestParam(required = false) String key,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(uniqueBuyerService.getUniqueBuyers(dimension, key, from, to));
+    }
+
+    @PostMapping("/unique-buyers/backfill")
+    public ResponseEntity<Map<String, Long>> backfillUniqueBuyers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(Map.of("orderLines", uniqueBuyerService.backfill(from, to)));
+    }
+
     @GetMapping("/user-stats")
     public ResponseEntity<UserStatsResponse> getUserStats() {
         return ResponseEntity.ok(adminService.getUserStats());
@@ -56,4 +109,39 @@ public class AdminController {
     public ResponseEntity<OrderStatusDistributionResponse> getOrderStatusDistribution() {
         return ResponseEntity.ok(adminService.getOrderStatusDistribution());
     }
-}
\ No newline at end of file
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Void> rebuildRollups() {
+        dashboardRollupService.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/farmer-sales/rebuild")
+    public ResponseEntity<Void> rebuildFarmerSales() {
+        farmerSalesService.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Ad-hoc totals over every order line, e.g. {@code groupBy=county,category,week}.
+     * Dimensions: category, county, farmer, status, and one of day, week, month or
+     * year. Cancelled and returned orders are excluded unless {@code status} says otherwise.
+     */
+    @GetMapping("/facts")
+    public ResponseEntity<FactQueryResponse> queryFacts(
+            @RequestParam(required = false) List<String> groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> county,
+            @RequestParam(required = false) List<Long> farmerId,
+            @RequestParam(required = false) List<String> status,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(orderFactStore.query(groupBy, from, to, category, county, farmerId, status, limit));
+    }
+
+    @PostMapping("/facts/reload")
+    public ResponseEntity<Map<String, Boolean>> reloadFacts() {
+        return ResponseEntity.accepted().body(Map.of("started", orderFactStore.reloadAsync()));
+    }
+}
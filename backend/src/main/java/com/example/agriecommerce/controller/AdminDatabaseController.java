@@ -0,0 +1,23 @@
+package com.example.agriecommerce.controller;
+
+import com.example.agriecommerce.config.ReplicaRouter;
+import com.example.agriecommerce.dto.response.ReplicaStatsResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/admin/database")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminDatabaseController {
+    private final ReplicaRouter replicaRouter;
+
+    @GetMapping("/replicas")
+    public ResponseEntity<ReplicaStatsResponse> getReplicaStats() {
+        return ResponseEntity.ok(replicaRouter.getStats());
+    }
+}
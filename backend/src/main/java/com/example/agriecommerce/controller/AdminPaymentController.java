@@ -0,0 +1,59 @@
+package com.example.agriecommerce.controller;
+
+import com.example.agriecommerce.dto.request.CallbackReplayRequest;
+import com.example.agriecommerce.dto.request.ReconciliationRequest;
+import com.example.agriecommerce.dto.response.CallbackIngestionStatsResponse;
+import com.example.agriecommerce.dto.response.CallbackReplayResponse;
+import com.example.agriecommerce.dto.response.ReconciliationResponse;
+import com.example.agriecommerce.service.MpesaCallbackIngestor;
+import com.example.agriecommerce.service.MpesaCallbackReplayer;
+import com.example.agriecommerce.service.PaymentReconciliationService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@RestController
+@RequestMapping("/api/v1/admin/payments")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminPaymentController {
+    private final MpesaCallbackIngestor mpesaCallbackIngestor;
+    private final MpesaCallbackReplayer mpesaCallbackReplayer;
+    private final PaymentReconciliationService paymentReconciliationService;
+
+    @GetMapping("/callbacks/stats")
+    public ResponseEntity<CallbackIngestionStatsResponse> getCallbackStats() {
+        return ResponseEntity.ok(mpesaCallbackIngestor.getStats());
+    }
+
+    @PostMapping("/callbacks/replay")
+    public ResponseEntity<CallbackReplayResponse> replayCallbacks(
+            @Valid @RequestBody CallbackReplayRequest request) throws InterruptedException {
+        return ResponseEntity.ok(mpesaCallbackReplayer.replay(request));
+    }
+
+    @PostMapping("/reconciliations")
+    public ResponseEntity<ReconciliationResponse> reconcile(
+            @Valid @RequestBody ReconciliationRequest request) throws IOException {
+        return ResponseEntity.ok(paymentReconciliationService.reconcile(
+                request.getFileName(), request.getFrom(), request.getTo()));
+    }
+
+    @GetMapping("/reconciliations/{runId}/{report}")
+    public ResponseEntity<Resource> getReconciliationReport(@PathVariable String runId, @PathVariable String report) {
+        Path file = paymentReconciliationService.reportFile(runId, report);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + runId + "-" + report + ".csv\"")
+                .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                .body(new FileSystemResource(file));
+    }
+}
@@ -3,11 +3,14 @@ package com.example.agriecommerce.controller;
 import com.example.agriecommerce.dto.response.ProductResponse;
 import com.example.agriecommerce.service.AdminProductService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/admin/products")
@@ -16,6 +19,13 @@ import java.util.List;
 public class AdminProductController {
     private final AdminProductService adminProductService;
 
+    @GetMapping
+    public ResponseEntity<Page<ProductResponse>> searchProducts(
+            @RequestParam Map<String, String> filters,
+            Pageable pageable) {
+        return ResponseEntity.ok(adminProductService.searchProducts(filters, pageable));
+    }
+
     @GetMapping("/pending")
     public ResponseEntity<List<ProductResponse>> getPendingProducts() {
         return ResponseEntity.ok(adminProductService.getPendingProducts());
@@ -0,0 +1,23 @@
+package com.example.agriecommerce.controller;
+
+import com.example.agriecommerce.dto.response.RateLimitStatsResponse;
+import com.example.agriecommerce.service.RateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/admin/security")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminSecurityController {
+    private final RateLimiter rateLimiter;
+
+    @GetMapping("/rate-limits")
+    public ResponseEntity<RateLimitStatsResponse> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+}
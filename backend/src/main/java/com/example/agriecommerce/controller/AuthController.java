@@ -5,32 +5,35 @@ import com.example.agriecommerce.dto.request.RefreshTokenRequest;
 import com.example.agriecommerce.dto.request.RegisterRequest;
 import com.example.agriecommerce.dto.response.AuthResponse;
 import com.example.agriecommerce.service.AuthService;
-import com.example.agriecommerce.service.RefreshTokenService;
+import com.example.agriecommerce.service.PasswordHashingExecutor;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/v1/auth")
 @RequiredArgsConstructor
 public class AuthController {
     private final AuthService authService;
-    private final RefreshTokenService refreshTokenService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(
             @Valid @RequestBody RegisterRequest registerRequest) {
-        return ResponseEntity
-                .status(HttpStatus.CREATED)
-                .body(authService.registerUser(registerRequest));
+        return passwordHashingExecutor.submit(() -> authService.registerUser(registerRequest))
+                .thenApply(response -> ResponseEntity.status(HttpStatus.CREATED).body(response));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(
             @Valid @RequestBody LoginRequest loginRequest) {
-        return ResponseEntity.ok(authService.authenticateUser(loginRequest));
+        return passwordHashingExecutor.submit(() -> authService.authenticateUser(loginRequest))
+                .thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/refresh")
@@ -41,8 +44,10 @@ public class AuthController {
 
     @PostMapping("/logout")
     public ResponseEntity<Void> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
             @Valid @RequestBody RefreshTokenRequest request) {
-        refreshTokenService.deleteByToken(request.getRefreshToken());
+        String accessToken = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        authService.logout(request.getRefreshToken(), accessToken);
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
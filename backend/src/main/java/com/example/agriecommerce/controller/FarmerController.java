@@ -1,18 +1,25 @@
 package com.example.agriecommerce.controller;
 
 import com.example.agriecommerce.dto.request.FarmerProductRequest;
+import com.example.agriecommerce.dto.response.FarmerAnalyticsResponse;
+import com.example.agriecommerce.dto.response.FarmerNotificationResponse;
 import com.example.agriecommerce.dto.response.ProductResponse;
 import com.example.agriecommerce.security.UserPrincipal;
+import com.example.agriecommerce.service.FarmerSalesService;
 import com.example.agriecommerce.service.FarmerService;
 import com.example.agriecommerce.service.ImageStorageService;
+import com.example.agriecommerce.service.StockAlertService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +29,8 @@ import java.util.Map;
 public class FarmerController {
     private final FarmerService farmerService;
     private final ImageStorageService imageStorageService;
+    private final FarmerSalesService farmerSalesService;
+    private final StockAlertService stockAlertService;
 
     // Add this image upload endpoint
     @PostMapping("/upload")
@@ -72,4 +81,33 @@ public class FarmerController {
         farmerService.deleteProduct(userId, id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    /** The signed-in farmer's sales over an inclusive range of days (default: the last 30). */
+    @GetMapping("/analytics")
+    @PreAuthorize("hasRole('FARMER')")
+    public ResponseEntity<FarmerAnalyticsResponse> getAnalytics(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "5") int top) {
+        Long userId = ((UserPrincipal) userDetails).getId();
+        return ResponseEntity.ok(farmerSalesService.getAnalytics(userId, from, to, top));
+    }
+
+    @GetMapping("/notifications")
+    @PreAuthorize("hasRole('FARMER')")
+    public ResponseEntity<List<FarmerNotificationResponse>> getNotifications(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "50") int limit) {
+        Long userId = ((UserPrincipal) userDetails).getId();
+        return ResponseEntity.ok(stockAlertService.getNotifications(userId, limit));
+    }
+
+    @PostMapping("/notifications/read")
+    @PreAuthorize("hasRole('FARMER')")
+    public ResponseEntity<Map<String, Integer>> markNotificationsRead(
+            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = ((UserPrincipal) userDetails).getId();
+        return ResponseEntity.ok(Map.of("marked", stockAlertService.markAllRead(userId)));
+    }
+}
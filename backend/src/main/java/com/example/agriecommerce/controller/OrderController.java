@@ -1,25 +1,57 @@
 package com.example.agriecommerce.controller;
 
+import com.example.agriecommerce.dto.request.BulkOrderStatusRequest;
 import com.example.agriecommerce.dto.request.OrderRequest;
+import com.example.agriecommerce.dto.response.BulkOrderStatusResponse;
 import com.example.agriecommerce.dto.response.OrderResponse;
+import com.example.agriecommerce.dto.response.OrderStatusHistoryResponse;
+import com.example.agriecommerce.exception.BadRequestException;
 import com.example.agriecommerce.model.OrderStatus;
 import com.example.agriecommerce.security.UserPrincipal;
+import com.example.agriecommerce.service.BusinessClock;
+import com.example.agriecommerce.service.CheckoutQueue;
+import com.example.agriecommerce.service.OrderExportService;
 import com.example.agriecommerce.service.OrderService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api/v1/orders")
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService orderService;
+    private final CheckoutQueue checkoutQueue;
+    private final OrderExportService orderExportService;
+    private final BusinessClock businessClock;
+
+    @Value("${app.orders.export.timeout-ms:600000}")
+    private long exportTimeoutMs;
 
     @PostMapping
     public ResponseEntity<OrderResponse> createOrder(
@@ -29,6 +61,17 @@ public class OrderController {
         return ResponseEntity.ok(orderService.createOrder(userId, orderRequest));
     }
 
+    @PostMapping("/async")
+    public ResponseEntity<OrderResponse> createOrderAsync(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Valid @RequestBody OrderRequest orderRequest) {
+        Long userId = ((UserPrincipal) userDetails).getId();
+        OrderResponse order = checkoutQueue.submit(userId, orderRequest);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/v1/orders/" + order.getId()))
+                .body(order);
+    }
+
     @GetMapping
     public ResponseEntity<Page<OrderResponse>> getUserOrders(
             @AuthenticationPrincipal UserDetails userDetails,
@@ -42,10 +85,52 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getOrderDetails(id));
     }
 
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderStatus(@PathVariable String id) {
+        return orderService.subscribeToStatus(id);
+    }
+
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<OrderStatusHistoryResponse>> getStatusHistory(@PathVariable String id) {
+        return ResponseEntity.ok(orderService.getStatusHistory(id));
+    }
+
     @GetMapping("/admin")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<OrderResponse>> getAllOrders(Pageable pageable) {
-        return ResponseEntity.ok(orderService.getAllOrders(pageable));
+    public ResponseEntity<Page<OrderResponse>> getAllOrders(
+            @RequestParam Map<String, String> filters,
+            Pageable pageable) {
+        return ResponseEntity.ok(orderService.getAllOrders(filters, pageable));
+    }
+
+    @GetMapping("/admin/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        if (to.isBefore(from)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        // Both dates are inclusive business days
+        Date start = Date.from(businessClock.toInstant(from.atStartOfDay()));
+        Date end = Date.from(businessClock.toInstant(to.plusDays(1).atStartOfDay()));
+        String filename = "orders-" + from + "-to-" + to + (gzip ? ".csv.gz" : ".csv");
+
+        StreamingResponseBody body = out -> orderExportService.exportCsv(start, end, gzip, out);
+        // Large exports outlive the default async timeout; raise it for this request only
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(OrderController.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest asyncRequest, Callable<T> task) {
+                        ((AsyncWebRequest) asyncRequest).setTimeout(exportTimeoutMs);
+                    }
+                });
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                .body(body);
     }
 
     @PutMapping("/admin/{id}/status")
@@ -55,4 +140,11 @@ public class OrderController {
             @RequestParam OrderStatus status) {
         return ResponseEntity.ok(orderService.updateOrderStatus(id, status));
     }
+
+    @PutMapping("/admin/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkOrderStatusResponse> bulkUpdateOrderStatus(
+            @Valid @RequestBody BulkOrderStatusRequest request) {
+        return ResponseEntity.ok(orderService.bulkUpdateStatus(request));
+    }
 }
\ No newline at end of file
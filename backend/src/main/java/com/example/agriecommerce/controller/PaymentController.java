@@ -4,26 +4,35 @@ import com.example.agriecommerce.dto.request.PaymentRequest;
 import com.example.agriecommerce.dto.response.PaymentResponse;
 import com.example.agriecommerce.model.PaymentMethod;
 import com.example.agriecommerce.security.UserPrincipal;
+import com.example.agriecommerce.service.MpesaCallbackIngestor;
 import com.example.agriecommerce.service.PaymentService;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/payments")
 @RequiredArgsConstructor
 public class PaymentController {
     private final PaymentService paymentService;
+    private final MpesaCallbackIngestor mpesaCallbackIngestor;
 
     @PostMapping
-    public ResponseEntity<PaymentResponse> processPayment(
+    public CompletableFuture<ResponseEntity<PaymentResponse>> processPayment(
             @AuthenticationPrincipal UserDetails userDetails,
             @Valid @RequestBody PaymentRequest paymentRequest) {
         Long userId = ((UserPrincipal) userDetails).getId();
-        return ResponseEntity.ok(paymentService.processPayment(userId, paymentRequest));
+        return paymentService.processPayment(userId, paymentRequest).thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/status/{transactionId}")
@@ -32,16 +41,41 @@ public class PaymentController {
     }
 
     @PostMapping("/mpesa/stk-push")
-    public ResponseEntity<PaymentResponse> initiateMpesaPayment(
+    public CompletableFuture<ResponseEntity<PaymentResponse>> initiateMpesaPayment(
             @AuthenticationPrincipal UserDetails userDetails,
             @Valid @RequestBody PaymentRequest paymentRequest) {
         Long userId = ((UserPrincipal) userDetails).getId();
         paymentRequest.setPaymentMethod(PaymentMethod.MPESA);
-        return ResponseEntity.ok(paymentService.processPayment(userId, paymentRequest));
+        return paymentService.processPayment(userId, paymentRequest).thenApply(ResponseEntity::ok);
     }
 
     @GetMapping("/mpesa/status/{checkoutRequestId}")
     public ResponseEntity<PaymentResponse> checkMpesaPaymentStatus(@PathVariable String checkoutRequestId) {
-        return ResponseEntity.ok(paymentService.getPaymentStatus(checkoutRequestId));
+        return ResponseEntity.ok(paymentService.getMpesaPaymentStatus(checkoutRequestId));
+    }
+
+    // With ?waitSeconds=N (N > 0) the request is held until the payment settles or N seconds pass;
+    // without it, or with 0, the mapping above answers at once
+    @GetMapping(value = "/mpesa/status/{checkoutRequestId}", params = {"waitSeconds", "waitSeconds!=0"})
+    public DeferredResult<PaymentResponse> awaitMpesaPaymentStatus(
+            @PathVariable String checkoutRequestId,
+            @RequestParam long waitSeconds) {
+        return paymentService.awaitMpesaPaymentStatus(checkoutRequestId, waitSeconds);
+    }
+
+    // Called by the provider without a JWT; the ingestor checks the callback token and source address
+    @PostMapping("/mpesa/callback")
+    public ResponseEntity<Map<String, Object>> mpesaCallback(@RequestBody JsonNode payload,
+                                                             @RequestParam(required = false) String token,
+                                                             HttpServletRequest request) {
+        return switch (mpesaCallbackIngestor.accept(payload, token, request.getRemoteAddr())) {
+            case ACCEPTED, DUPLICATE -> ResponseEntity.ok(Map.of("ResultCode", 0, "ResultDesc", "Accepted"));
+            case REJECTED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("ResultCode", 1, "ResultDesc", "Busy, retry later"));
+            case INVALID -> ResponseEntity.badRequest()
+                    .body(Map.of("ResultCode", 1, "ResultDesc", "Not an STK callback"));
+            case UNAUTHORIZED -> ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("ResultCode", 1, "ResultDesc", "Forbidden"));
+        };
     }
-}
\ No newline at end of file
+}
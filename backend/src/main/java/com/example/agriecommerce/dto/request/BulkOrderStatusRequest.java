@@ -0,0 +1,34 @@
+package com.example.agriecommerce.dto.request;
+
+import com.example.agriecommerce.model.OrderStatus;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Either an explicit list of order ids, or a filter (source status plus an
+ * optional order date range) selecting the orders to move.
+ */
+@Data
+public class BulkOrderStatusRequest {
+    @NotNull
+    private OrderStatus targetStatus;
+
+    @Size(max = 5000)
+    private List<String> orderIds;
+
+    private OrderStatus fromStatus;
+
+    private Date orderDateFrom;
+
+    private Date orderDateTo;
+
+    @AssertTrue(message = "Provide orderIds or a fromStatus filter")
+    public boolean isSelectionPresent() {
+        return (orderIds != null && !orderIds.isEmpty()) || fromStatus != null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.agriecommerce.dto.request;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CallbackReplayRequest {
+    // Raw callback bodies; when empty the most recent recorded callbacks are replayed
+    private List<JsonNode> payloads;
+
+    @Min(1)
+    @Max(10000)
+    private int recordedLimit = 1000;
+
+    // Deliveries per payload, to simulate provider retries
+    @Min(1)
+    @Max(20)
+    private int copies = 1;
+
+    // Give each payload a new checkout request id so it goes through the full write path
+    private boolean freshIds = true;
+
+    @Min(1)
+    @Max(600)
+    private int timeoutSeconds = 60;
+}
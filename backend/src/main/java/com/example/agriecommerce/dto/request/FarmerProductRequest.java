@@ -25,6 +25,10 @@ public class FarmerProductRequest {
     @Min(0)
     private Integer stock;
 
+    // Defaults by unit type when omitted
+    @Min(0)
+    private Integer reorderThreshold;
+
     private String origin;
 
     private String nutritionalInfo;
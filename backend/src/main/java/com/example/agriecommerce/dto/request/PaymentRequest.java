@@ -2,6 +2,7 @@ package com.example.agriecommerce.dto.request;
 
 import com.example.agriecommerce.model.PaymentMethod;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
@@ -12,7 +13,9 @@ public class PaymentRequest {
     @NotNull
     private PaymentMethod paymentMethod;
 
+    @Size(max = 20)
     private String phoneNumber;
+
     private String accountReference;
     private String transactionDesc;
 }
\ No newline at end of file
@@ -24,6 +24,10 @@ public class ProductRequest {
     @Min(0)
     private Integer stock;
 
+    // Defaults by unit type when omitted
+    @Min(0)
+    private Integer reorderThreshold;
+
     private String imageUrl;
 
     private Boolean isOrganic = false;
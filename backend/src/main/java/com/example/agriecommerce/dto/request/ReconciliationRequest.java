@@ -0,0 +1,20 @@
+package com.example.agriecommerce.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class ReconciliationRequest {
+    // Statement file name inside app.payments.reconciliation.inbox-dir
+    @NotBlank
+    private String fileName;
+
+    @NotNull
+    private LocalDate from;
+
+    @NotNull
+    private LocalDate to;
+}
@@ -0,0 +1,21 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AdminDashboardResponse {
+    private AdminStatsResponse stats;
+    private List<RecentOrderResponse> recentOrders;
+    private List<PopularProductResponse> popularProducts;
+    private SalesTrendResponse salesTrend;
+    private UserStatsResponse userStats;
+    private ProductStatsResponse productStats;
+    private List<RevenueByCategoryResponse> revenueByCategory;
+    private OrderStatusDistributionResponse orderStatusDistribution;
+    // Widgets that failed or did not finish in time; their fields are null
+    private List<String> unavailable;
+}
@@ -0,0 +1,24 @@
+package com.example.agriecommerce.dto.response;
+
+import com.example.agriecommerce.model.OrderStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class BulkOrderStatusResponse {
+    private OrderStatus targetStatus;
+    private int matched;
+    private int updated;
+    private Map<OrderStatus, Integer> updatedBySourceStatus;
+    // Orders whose current status does not allow the transition
+    private List<String> rejectedIds;
+    private List<String> notFoundIds;
+    // Orders that changed status between selection and update
+    private int conflicts;
+    // Filter selections are capped; true when more orders still match
+    private boolean hasMore;
+}
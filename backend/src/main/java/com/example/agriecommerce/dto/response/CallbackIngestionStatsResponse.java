@@ -0,0 +1,20 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CallbackIngestionStatsResponse {
+    private long received;
+    private long duplicates;
+    private long rejected;
+    private long invalid;
+    private long unauthorized;
+    private long stored;
+    private long applied;
+    private long batches;
+    private long retried;
+    private long dropped;
+    private int queueDepth;
+}
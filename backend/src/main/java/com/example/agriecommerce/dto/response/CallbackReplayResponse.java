@@ -0,0 +1,20 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CallbackReplayResponse {
+    private int payloads;
+    private int submitted;
+    private int accepted;
+    private int duplicates;
+    private int invalid;
+    private int backpressureRetries;
+    private boolean drained;
+    private long submitMs;
+    private long totalMs;
+    private double callbacksPerSecond;
+    private CallbackIngestionStatsResponse stats;
+}
@@ -0,0 +1,33 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+public class FactQueryResponse {
+    private List<String> groupBy;
+    private LocalDate from;
+    private LocalDate to;
+    private long scannedFacts;
+    private long matchedFacts;
+    private int groups;
+    private long elapsedMicros;
+    private Instant loadedAt;
+    private List<Row> rows;
+
+    @Data
+    @Builder
+    public static class Row {
+        // One value per groupBy dimension, in the same order
+        private List<String> key;
+        private BigDecimal revenue;
+        private long units;
+        private long lines;
+    }
+}
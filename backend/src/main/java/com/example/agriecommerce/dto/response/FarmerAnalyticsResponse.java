@@ -0,0 +1,53 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+public class FarmerAnalyticsResponse {
+    private LocalDate from;
+    private LocalDate to;
+    private BigDecimal revenue;
+    private long units;
+    private List<ProductSales> topProducts;
+    private List<DailySales> daily;
+    private List<StockTurnover> stockTurnover;
+
+    @Data
+    @Builder
+    public static class ProductSales {
+        private Long productId;
+        private String productName;
+        private BigDecimal revenue;
+        private long units;
+        private long orders;
+    }
+
+    @Data
+    @Builder
+    public static class DailySales {
+        private LocalDate day;
+        private Long productId;
+        private BigDecimal revenue;
+        private long units;
+        private long orders;
+    }
+
+    @Data
+    @Builder
+    public static class StockTurnover {
+        private Long productId;
+        private String productName;
+        private long unitsSold;
+        private int currentStock;
+        // Share of the available units (sold plus on hand) that sold in the range
+        private double sellThrough;
+        // Days the current stock lasts at the range's average daily sales; null when nothing sold
+        private Double daysOfCover;
+    }
+}
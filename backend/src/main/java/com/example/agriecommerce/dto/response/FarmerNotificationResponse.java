@@ -0,0 +1,27 @@
+package com.example.agriecommerce.dto.response;
+
+import com.example.agriecommerce.model.FarmerNotification;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class FarmerNotificationResponse {
+    private Long id;
+    private String type;
+    private String message;
+    private Instant createdAt;
+    private Instant readAt;
+
+    public static FarmerNotificationResponse from(FarmerNotification notification) {
+        return FarmerNotificationResponse.builder()
+                .id(notification.getId())
+                .type(notification.getType().name())
+                .message(notification.getMessage())
+                .createdAt(notification.getCreatedAt())
+                .readAt(notification.getReadAt())
+                .build();
+    }
+}
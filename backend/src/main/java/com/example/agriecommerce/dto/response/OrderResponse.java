@@ -1,14 +1,19 @@
 package com.example.agriecommerce.dto.response;
 
+import com.example.agriecommerce.model.CheckoutState;
 import com.example.agriecommerce.model.OrderStatus;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class OrderResponse {
     private String id;
     private CustomerInfo customerInfo;
@@ -20,6 +25,8 @@ public class OrderResponse {
     private OrderStatus status;
     private String paymentReference;
     private Date orderDate;
+    private CheckoutState checkoutState;
+    private String checkoutError;
 
     @Data
     @Builder
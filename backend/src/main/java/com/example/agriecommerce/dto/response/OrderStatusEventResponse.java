@@ -0,0 +1,16 @@
+package com.example.agriecommerce.dto.response;
+
+import com.example.agriecommerce.model.OrderStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@Builder
+public class OrderStatusEventResponse {
+    private String orderId;
+    private OrderStatus status;
+    private OrderStatus previousStatus;
+    private Date changedAt;
+}
@@ -0,0 +1,26 @@
+package com.example.agriecommerce.dto.response;
+
+import com.example.agriecommerce.model.OrderStatus;
+import com.example.agriecommerce.model.OrderStatusHistory;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@Builder
+public class OrderStatusHistoryResponse {
+    private OrderStatus fromStatus;
+    private OrderStatus toStatus;
+    private String source;
+    private Date changedAt;
+
+    public static OrderStatusHistoryResponse from(OrderStatusHistory history) {
+        return OrderStatusHistoryResponse.builder()
+                .fromStatus(history.getFromStatus())
+                .toStatus(history.getToStatus())
+                .source(history.getSource())
+                .changedAt(history.getChangedAt())
+                .build();
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.agriecommerce.dto.response;
 
+import com.example.agriecommerce.model.Payment;
 import com.example.agriecommerce.model.PaymentMethod;
 import com.example.agriecommerce.model.PaymentStatus;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.Date;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class PaymentResponse {
     private Long id;
     private String orderId;
@@ -17,6 +22,24 @@ public class PaymentResponse {
     private PaymentMethod paymentMethod;
     private PaymentStatus status;
     private String transactionId;
+    // M-Pesa STK push ids; checkoutRequestId is the key for the status endpoint
+    private String merchantRequestId;
+    private String checkoutRequestId;
     private String receiptNumber;
     private Date paymentDate;
+
+    public static PaymentResponse from(Payment payment) {
+        return PaymentResponse.builder()
+                .id(payment.getId())
+                .orderId(payment.getOrder().getId())
+                .amount(payment.getAmount())
+                .paymentMethod(payment.getPaymentMethod())
+                .status(payment.getStatus())
+                .transactionId(payment.getTransactionId())
+                .merchantRequestId(payment.getMerchantRequestId())
+                .checkoutRequestId(payment.getCheckoutRequestId())
+                .receiptNumber(payment.getReceiptNumber())
+                .paymentDate(payment.getPaymentDate())
+                .build();
+    }
 }
\ No newline at end of file
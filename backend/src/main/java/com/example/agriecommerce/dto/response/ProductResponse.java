@@ -16,6 +16,7 @@ public class ProductResponse {
     private String category;
     private String subcategory;
     private Integer stock;
+    private Integer reorderThreshold;
     private String origin;
     private String nutritionalInfo;
     private Boolean isOrganic;
@@ -0,0 +1,24 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class RateLimitStatsResponse {
+    private int trackedClients;
+    private int maxTrackedClients;
+    private List<PolicyStats> policies;
+
+    @Data
+    @Builder
+    public static class PolicyStats {
+        private String name;
+        private int capacity;
+        private int perMinute;
+        private long allowed;
+        private long throttled;
+    }
+}
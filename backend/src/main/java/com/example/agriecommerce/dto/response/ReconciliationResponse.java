@@ -0,0 +1,27 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@Builder
+public class ReconciliationResponse {
+    private String runId;
+    private String file;
+    private LocalDate from;
+    private LocalDate to;
+    private int paymentsLoaded;
+    private long statementRows;
+    private long unreadableRows;
+    private long matched;
+    private long amountMismatches;
+    private long orphans;
+    private long missing;
+    private int chunks;
+    private long elapsedMs;
+    // Report name -> download path
+    private Map<String, String> reports;
+}
@@ -0,0 +1,25 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ReplicaStatsResponse {
+    private long maxLagMs;
+    private long primaryReads;
+    private long pinnedReads;
+    private int pinnedUsers;
+    private List<ReplicaStats> replicas;
+
+    @Data
+    @Builder
+    public static class ReplicaStats {
+        private String url;
+        private boolean usable;
+        private long lagMs;
+        private long reads;
+    }
+}
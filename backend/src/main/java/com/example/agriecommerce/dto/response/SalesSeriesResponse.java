@@ -0,0 +1,25 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class SalesSeriesResponse {
+    private String granularity;
+    private String timeZone;
+    private List<Bucket> buckets;
+
+    @Data
+    @Builder
+    public static class Bucket {
+        // Local time in the business time zone
+        private LocalDateTime start;
+        private BigDecimal revenue;
+        private long orderCount;
+    }
+}
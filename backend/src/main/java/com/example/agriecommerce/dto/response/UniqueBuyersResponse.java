@@ -0,0 +1,30 @@
+package com.example.agriecommerce.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+public class UniqueBuyersResponse {
+    private String dimension;
+    private String key;
+    private LocalDate from;
+    private LocalDate to;
+    // Distinct buyers over the whole range, not the sum of the days
+    private long estimate;
+    private double relativeStandardError;
+    // About 95% of estimates fall within two standard errors of the true count
+    private long lowerBound;
+    private long upperBound;
+    private List<Day> days;
+
+    @Data
+    @Builder
+    public static class Day {
+        private LocalDate day;
+        private long estimate;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.agriecommerce.exception;
+
+/**
+ * The provider did not answer in time, so it may or may not have accepted the
+ * request. Unlike other {@link PaymentGatewayException}s this is not a rejection.
+ */
+public class PaymentGatewayTimeoutException extends PaymentGatewayException {
+    public PaymentGatewayTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.agriecommerce.model;
+
+public enum CheckoutState {
+    QUEUED,
+    COMPLETED,
+    FAILED
+}
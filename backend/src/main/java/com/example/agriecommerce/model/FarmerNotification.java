@@ -0,0 +1,43 @@
+package com.example.agriecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/** A message for a farmer, such as a batched low-stock alert. */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "farmer_notifications",
+        indexes = @Index(name = "idx_farmer_notifications_farmer_created", columnList = "farmer_id, created_at"))
+public class FarmerNotification {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "farmer_id", nullable = false)
+    private Long farmerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 20)
+    private FarmerNotificationType type;
+
+    @Column(name = "message", nullable = false, columnDefinition = "text")
+    private String message;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "read_at")
+    private Instant readAt;
+
+    public static FarmerNotification of(Long farmerId, FarmerNotificationType type, String message) {
+        FarmerNotification notification = new FarmerNotification();
+        notification.setFarmerId(farmerId);
+        notification.setType(type);
+        notification.setMessage(message);
+        return notification;
+    }
+}
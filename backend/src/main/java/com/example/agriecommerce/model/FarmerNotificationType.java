@@ -0,0 +1,5 @@
+package com.example.agriecommerce.model;
+
+public enum FarmerNotificationType {
+    LOW_STOCK
+}
@@ -0,0 +1,61 @@
+package com.example.agriecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Inbox of M-Pesa STK callbacks, one row per checkout request. The unique key is
+ * what makes ingestion idempotent across retries, restarts and instances; rows
+ * are written in batches by {@code MpesaCallbackIngestor} with plain JDBC.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "mpesa_callbacks",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_mpesa_callbacks_checkout_request_id",
+                columnNames = {"checkout_request_id"}),
+        indexes = @Index(name = "idx_mpesa_callbacks_unapplied", columnList = "applied_at, received_at"))
+public class MpesaCallback {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "checkout_request_id", nullable = false)
+    private String checkoutRequestId;
+
+    @Column(name = "merchant_request_id")
+    private String merchantRequestId;
+
+    @Column(name = "result_code", nullable = false)
+    private Integer resultCode;
+
+    @Column(name = "result_desc", length = 500)
+    private String resultDesc;
+
+    private BigDecimal amount;
+
+    @Column(name = "receipt_number")
+    private String receiptNumber;
+
+    @Column(name = "phone_number", length = 20)
+    private String phoneNumber;
+
+    // Raw body as received, kept for replay
+    @Column(columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "received_at", nullable = false)
+    private Date receivedAt;
+
+    // Null until a matching payment has been updated
+    @Column(name = "applied_at")
+    private Date appliedAt;
+
+    @Column(nullable = false, columnDefinition = "integer default 0 not null")
+    private Integer attempts = 0;
+}
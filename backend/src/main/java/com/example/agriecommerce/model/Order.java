@@ -10,7 +10,17 @@ import java.util.Set;
 
 @Data
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date", columnList = "order_date"),
+        @Index(name = "idx_orders_status_order_date", columnList = "status, order_date"),
+        // Admin order grid (OrderService.ORDER_GRID)
+        @Index(name = "idx_orders_county_order_date", columnList = "delivery_county, order_date"),
+        @Index(name = "idx_orders_status_county_order_date", columnList = "status, delivery_county, order_date"),
+        @Index(name = "idx_orders_email_order_date", columnList = "customer_email, order_date"),
+        @Index(name = "idx_orders_phone_order_date", columnList = "customer_phone, order_date"),
+        @Index(name = "idx_orders_user_order_date", columnList = "user_id, order_date"),
+        @Index(name = "idx_orders_user_status_order_date", columnList = "user_id, status, order_date")
+})
 public class Order {
     @Id
     private String id;
@@ -30,10 +40,12 @@ public class Order {
     @NotBlank
     @Email
     @Size(max = 255)
+    @Column(name = "customer_email")
     private String customerEmail;
 
     @NotBlank
     @Size(max = 20)
+    @Column(name = "customer_phone")
     private String customerPhone;
 
     @NotBlank
@@ -46,6 +58,7 @@ public class Order {
 
     @NotBlank
     @Size(max = 100)
+    @Column(name = "delivery_county")
     private String deliveryCounty;
 
     @Size(max = 20)
@@ -81,6 +94,20 @@ public class Order {
     @Column(name = "order_date")
     private Date orderDate = new Date();
 
+    // Null for orders placed through the synchronous checkout
+    @Enumerated(EnumType.STRING)
+    @Column(name = "checkout_state", length = 20)
+    private CheckoutState checkoutState;
+
+    @Size(max = 500)
+    @Column(name = "checkout_error")
+    private String checkoutError;
+
+    // Existing rows start at 0; new orders get their first version on insert
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     // Constructors
     public Order() {}
 
@@ -1,5 +1,8 @@
 package com.example.agriecommerce.model;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum OrderStatus {
     PENDING,
     CONFIRMED,
@@ -7,5 +10,29 @@ public enum OrderStatus {
     SHIPPED,
     DELIVERED,
     CANCELLED,
-    RETURNED
-}
\ No newline at end of file
+    RETURNED;
+
+    /**
+     * Statuses an order may move to from this one. CANCELLED and RETURNED are final.
+     */
+    public Set<OrderStatus> allowedTransitions() {
+        switch (this) {
+            case PENDING:
+                return EnumSet.of(CONFIRMED, PROCESSING, CANCELLED);
+            case CONFIRMED:
+                return EnumSet.of(PROCESSING, CANCELLED);
+            case PROCESSING:
+                return EnumSet.of(SHIPPED, CANCELLED);
+            case SHIPPED:
+                return EnumSet.of(DELIVERED, RETURNED);
+            case DELIVERED:
+                return EnumSet.of(RETURNED);
+            default:
+                return EnumSet.noneOf(OrderStatus.class);
+        }
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return allowedTransitions().contains(target);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.agriecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.util.Date;
+
+/**
+ * One row per order status transition. Rows are only ever inserted; the order id
+ * is a plain column so history survives the order being archived.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Immutable
+@Table(name = "order_status_history", indexes = {
+        @Index(name = "idx_order_status_history_order", columnList = "order_id, changed_at")
+})
+public class OrderStatusHistory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_status_history_seq")
+    @SequenceGenerator(name = "order_status_history_seq", sequenceName = "order_status_history_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false, length = 255)
+    private String orderId;
+
+    // Null for the row written when the order is created
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", length = 20)
+    private OrderStatus fromStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", nullable = false, length = 20)
+    private OrderStatus toStatus;
+
+    @Column(nullable = false, length = 20)
+    private String source;
+
+    @Column(name = "changed_at", nullable = false)
+    private Date changedAt;
+}
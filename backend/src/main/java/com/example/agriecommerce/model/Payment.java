@@ -11,7 +11,10 @@ import java.util.Date;
 
 @Data
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", uniqueConstraints = @UniqueConstraint(
+        name = "uk_payments_checkout_request_id",
+        columnNames = {"checkout_request_id"}),
+        indexes = @Index(name = "idx_payments_date", columnList = "payment_date"))
 public class Payment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -42,11 +45,17 @@ public class Payment {
     private String merchantRequestId;
 
     @Size(max = 255)
+    @Column(name = "checkout_request_id")
     private String checkoutRequestId;
 
     @Size(max = 255)
     private String receiptNumber;
 
+    // Number the STK push went to; pairs callbacks with pushes that were never acknowledged
+    @Size(max = 20)
+    @Column(name = "phone_number")
+    private String phoneNumber;
+
     @Column(name = "payment_date")
     private Date paymentDate = new Date();
 
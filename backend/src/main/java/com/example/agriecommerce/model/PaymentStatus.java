@@ -1,5 +1,7 @@
 package com.example.agriecommerce.model;
 
 public enum PaymentStatus {
-    PENDING, SUCCESS, FAILED, CANCELLED, REFUNDED
+    PENDING, SUCCESS, FAILED, CANCELLED, REFUNDED,
+    // Provider reported success for a different amount; needs manual reconciliation
+    UNDER_REVIEW
 }
\ No newline at end of file
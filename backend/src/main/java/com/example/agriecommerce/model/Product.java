@@ -9,7 +9,13 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        // Admin product grid (AdminProductService.PRODUCT_GRID)
+        @Index(name = "idx_products_created_at", columnList = "created_at"),
+        @Index(name = "idx_products_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_products_farmer_created_at", columnList = "farmer_id, created_at"),
+        @Index(name = "idx_products_farmer_status_created_at", columnList = "farmer_id, status, created_at")
+})
 public class Product {
 
     private String subcategory;
@@ -44,6 +50,15 @@ public class Product {
     @Min(0)
     private Integer stock;
 
+    // Stock at or below this is low (see StockAlertService)
+    @Min(0)
+    @Column(name = "reorder_threshold", columnDefinition = "integer default 10 not null")
+    private Integer reorderThreshold = 10;
+
+    // Whether the farmer has been alerted about the current low-stock spell
+    @Column(name = "low_stock_alerted", columnDefinition = "boolean default false not null")
+    private boolean lowStockAlerted;
+
     private String imageUrl;
 
     private Boolean isOrganic = false;
@@ -51,6 +66,11 @@ public class Product {
     @Enumerated(EnumType.STRING)
     private ProductStatus status = ProductStatus.PENDING; // Changed default to PENDING
 
+    // Set only while StockAlertService has the product hidden as OUT_OF_STOCK
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_before_out_of_stock", length = 20)
+    private ProductStatus statusBeforeOutOfStock;
+
     @Column(name = "created_at")
     private Date createdAt = new Date();
 
@@ -148,6 +168,22 @@ public class Product {
         this.stock = stock;
     }
 
+    public Integer getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public void setReorderThreshold(Integer reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
+
+    public boolean isLowStockAlerted() {
+        return lowStockAlerted;
+    }
+
+    public void setLowStockAlerted(boolean lowStockAlerted) {
+        this.lowStockAlerted = lowStockAlerted;
+    }
+
     public String getImageUrl() {
         return imageUrl;
     }
@@ -170,6 +206,12 @@ public class Product {
 
     public void setStatus(ProductStatus status) {
         this.status = status;
+        // An explicit status change overrides whatever the stock job would restore
+        this.statusBeforeOutOfStock = null;
+    }
+
+    public ProductStatus getStatusBeforeOutOfStock() {
+        return statusBeforeOutOfStock;
     }
 
     public Date getCreatedAt() {
@@ -5,20 +5,29 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
 
+/**
+ * One refresh token in a family. A family is one signed-in device: each refresh
+ * marks the presented token rotated and issues its successor in the same family.
+ * Only the SHA-256 of the token is stored. Rotated rows are kept until expiry so
+ * that replaying one can be detected and the whole family revoked.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "refresh_tokens",
+@Table(name = "user_refresh_tokens",
         uniqueConstraints = @UniqueConstraint(
-                name = "uk_refresh_token_user",
-                columnNames = {"user_id"}))
+                name = "uk_user_refresh_tokens_hash",
+                columnNames = {"token_hash"}),
+        indexes = {
+                @Index(name = "idx_user_refresh_tokens_family", columnList = "family_id"),
+                @Index(name = "idx_user_refresh_tokens_user", columnList = "user_id"),
+                @Index(name = "idx_user_refresh_tokens_expires_at", columnList = "expires_at")
+        })
 public class RefreshToken {
 
     @Id
@@ -26,36 +35,27 @@ public class RefreshToken {
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(nullable = false, unique = true, length = 500)
-    private String token;
+    // Hex SHA-256 of the token handed to the client
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
 
-    @Column(nullable = false, name = "expiry_date")
-    private Instant expiryDate;
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
 
-    @CreationTimestamp
-    @Column(updatable = false, name = "created_at")
-    private Instant createdAt;
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
 
-    @UpdateTimestamp
-    @Column(name = "updated_at")
-    private Instant updatedAt;
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
 
-    @Version
-    private Integer version;
+    // Set once the token has been exchanged for its successor
+    @Column(name = "rotated_at")
+    private Instant rotatedAt;
 
-    // Business methods
     public boolean isExpired() {
-        return expiryDate.isBefore(Instant.now());
-    }
-
-    @PrePersist
-    @PreUpdate
-    private void validate() {
-        if (expiryDate.isBefore(Instant.now())) {
-            throw new IllegalStateException("Expiry date must be in the future");
-        }
+        return expiresAt.isBefore(Instant.now());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package com.example.agriecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A revoked access token (by jti) or, when {@code jti} is null, a user-wide
+ * watermark revoking every token issued before {@code revokedBefore}. Rows are
+ * only needed until the tokens they cover would have expired anyway.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "token_revocations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_token_revocations_jti", columnNames = {"jti"}),
+        indexes = {
+                @Index(name = "idx_token_revocations_expires_at", columnList = "expires_at"),
+                @Index(name = "idx_token_revocations_created_at", columnList = "created_at")
+        })
+public class TokenRevocation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "jti", length = 36)
+    private String jti;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "revoked_before")
+    private Instant revokedBefore;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    public static TokenRevocation ofToken(String jti, Long userId, Instant expiresAt) {
+        TokenRevocation revocation = new TokenRevocation();
+        revocation.setJti(jti);
+        revocation.setUserId(userId);
+        revocation.setExpiresAt(expiresAt);
+        return revocation;
+    }
+
+    public static TokenRevocation ofUser(Long userId, Instant revokedBefore, Instant expiresAt) {
+        TokenRevocation revocation = new TokenRevocation();
+        revocation.setUserId(userId);
+        revocation.setRevokedBefore(revokedBefore);
+        revocation.setExpiresAt(expiresAt);
+        return revocation;
+    }
+}
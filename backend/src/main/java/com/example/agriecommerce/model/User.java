@@ -15,6 +15,12 @@ import java.util.Set;
 @Table(name = "users", uniqueConstraints = {
         @UniqueConstraint(columnNames = "email"),
         @UniqueConstraint(columnNames = "phone")
+}, indexes = {
+        // Admin user grid (UserService.USER_GRID)
+        @Index(name = "idx_users_created_at", columnList = "created_at"),
+        @Index(name = "idx_users_role_created_at", columnList = "role, created_at"),
+        @Index(name = "idx_users_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_users_role_status_created_at", columnList = "role, status, created_at")
 })
 @Getter
 @Setter
@@ -8,4 +8,6 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     void deleteByCart(Cart cart);  // Changed from deleteAllByCart to deleteByCart
+
+    boolean existsByCartUserId(Long userId);
 }
\ No newline at end of file
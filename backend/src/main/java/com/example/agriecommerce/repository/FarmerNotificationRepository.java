@@ -0,0 +1,22 @@
+package com.example.agriecommerce.repository;
+
+import com.example.agriecommerce.model.FarmerNotification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface FarmerNotificationRepository extends JpaRepository<FarmerNotification, Long> {
+    List<FarmerNotification> findByFarmerIdOrderByCreatedAtDesc(Long farmerId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FarmerNotification n SET n.readAt = ?2 WHERE n.farmerId = ?1 AND n.readAt IS NULL")
+    int markAllRead(Long farmerId, Instant readAt);
+}
@@ -0,0 +1,21 @@
+package com.example.agriecommerce.repository;
+
+import com.example.agriecommerce.model.MpesaCallback;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface MpesaCallbackRepository extends JpaRepository<MpesaCallback, Long> {
+
+    @Query("SELECT c FROM MpesaCallback c WHERE c.appliedAt IS NULL AND c.receivedAt < ?1 AND c.attempts < ?2 " +
+            "ORDER BY c.receivedAt")
+    List<MpesaCallback> findUnapplied(Date receivedBefore, int maxAttempts, Pageable pageable);
+
+    @Query("SELECT c.payload FROM MpesaCallback c WHERE c.payload IS NOT NULL ORDER BY c.receivedAt DESC")
+    List<String> findRecentPayloads(Pageable pageable);
+}
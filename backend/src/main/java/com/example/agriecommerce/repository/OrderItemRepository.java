@@ -3,11 +3,18 @@ package com.example.agriecommerce.repository;
 import com.example.agriecommerce.model.Order;
 import com.example.agriecommerce.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     List<OrderItem> findByOrder(Order order);
+
+    @Modifying
+    @Query("DELETE FROM OrderItem oi WHERE oi.order.id IN ?1")
+    void deleteByOrderIdIn(Collection<String> orderIds);
 }
\ No newline at end of file
@@ -1,21 +1,25 @@
 package com.example.agriecommerce.repository;
 
+import com.example.agriecommerce.model.CheckoutState;
 import com.example.agriecommerce.model.Order;
 import com.example.agriecommerce.model.OrderStatus;
 import com.example.agriecommerce.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, String>, JpaSpecificationExecutor<Order>, OrderRepositoryCustom {
     Page<Order> findByUser(User user, Pageable pageable);
     Page<Order> findByStatus(OrderStatus status, Pageable pageable);
 
@@ -30,11 +34,34 @@ public interface OrderRepository extends JpaRepository<Order, String> {
 
     long countByStatus(OrderStatus status);
 
+    @Query("SELECT o.id FROM Order o WHERE o.checkoutState = ?1")
+    List<String> findIdsByCheckoutState(CheckoutState checkoutState);
+
+    @Query("SELECT o.id, o.status FROM Order o WHERE o.id IN ?1")
+    List<Object[]> findStatusesByIdIn(Collection<String> ids);
+
+    @Query("SELECT o.id, o.status FROM Order o WHERE o.status = ?1 AND o.orderDate BETWEEN ?2 AND ?3 ORDER BY o.orderDate")
+    List<Object[]> findStatusesByStatusAndOrderDateBetween(OrderStatus status, Date from, Date to, Pageable pageable);
+
+    @Query("SELECT o.user.id FROM Order o WHERE o.id = ?1")
+    Optional<Long> findUserIdById(String id);
+
+    @Query("SELECT o.status FROM Order o WHERE o.id = ?1")
+    Optional<OrderStatus> findStatusById(String id);
+
     @Query("SELECT o FROM Order o ORDER BY o.orderDate DESC LIMIT 10")
     List<Order> findTop10ByOrderByOrderDateDesc();
     @Query("SELECT COUNT(o) FROM Order o WHERE o.orderDate BETWEEN :start AND :end")
     long countByOrderDateBetween(Date start, Date end);
 
+    @Query("SELECT o FROM Order o WHERE o.status IN ?1 AND o.orderDate < ?2 ORDER BY o.orderDate")
+    List<Order> findArchivable(Collection<OrderStatus> statuses, Date cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Order o WHERE o.id IN ?1")
+    void deleteAllByIdIn(Collection<String> ids);
+
+    // Rows of [OrderStatus, Long]
     @Query("SELECT o.status, COUNT(o) FROM Order o GROUP BY o.status")
-    Map<OrderStatus, Long> countByStatusGroupByStatus();
+    List<Object[]> countByStatusGroupByStatus();
 }
\ No newline at end of file
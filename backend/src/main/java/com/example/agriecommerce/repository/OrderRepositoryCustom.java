@@ -0,0 +1,17 @@
+package com.example.agriecommerce.repository;
+
+import com.example.agriecommerce.model.OrderStatus;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Moves the given orders from one status to another in a single UPDATE,
+     * skipping any whose status is no longer {@code from}. Returns the ids
+     * that were actually changed. Bumps the version so concurrent
+     * entity-level writers see the change as a conflict.
+     */
+    List<String> updateStatusReturningIds(Collection<String> orderIds, OrderStatus from, OrderStatus to);
+}
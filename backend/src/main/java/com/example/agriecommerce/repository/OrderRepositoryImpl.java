@@ -0,0 +1,28 @@
+package com.example.agriecommerce.repository;
+
+import com.example.agriecommerce.model.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<String> updateStatusReturningIds(Collection<String> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                "UPDATE orders SET status = ?, version = version + 1 WHERE status = ? AND id = ANY(?) RETURNING id",
+                ps -> {
+                    ps.setString(1, to.name());
+                    ps.setString(2, from.name());
+                    ps.setArray(3, ps.getConnection().createArrayOf("varchar", orderIds.toArray()));
+                },
+                (rs, rowNum) -> rs.getString(1));
+    }
+}
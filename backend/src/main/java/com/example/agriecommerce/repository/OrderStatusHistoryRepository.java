@@ -0,0 +1,12 @@
+package com.example.agriecommerce.repository;
+
+import com.example.agriecommerce.model.OrderStatusHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderStatusHistoryRepository extends JpaRepository<OrderStatusHistory, Long> {
+    List<OrderStatusHistory> findByOrderIdOrderByChangedAtAscIdAsc(String orderId);
+}
@@ -1,12 +1,56 @@
 package com.example.agriecommerce.repository;
 
 import com.example.agriecommerce.model.Payment;
+import com.example.agriecommerce.model.PaymentMethod;
+import com.example.agriecommerce.model.PaymentStatus;
+import com.example.agriecommerce.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByTransactionId(String transactionId);
+
+    Optional<Payment> findByCheckoutRequestId(String checkoutRequestId);
+
+    Optional<Payment> findByOrderId(String orderId);
+
+    // Claims a settled payment for another attempt; 0 when a concurrent retry got there first
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = com.example.agriecommerce.model.PaymentStatus.PENDING, p.user = ?2, " +
+            "p.amount = ?3, p.paymentMethod = ?4, p.paymentDate = ?5, p.phoneNumber = ?6, p.transactionId = NULL, " +
+            "p.merchantRequestId = NULL, p.checkoutRequestId = NULL, p.receiptNumber = NULL " +
+            "WHERE p.id = ?1 AND p.status IN ?7")
+    int resetForRetry(Long id, User user, BigDecimal amount, PaymentMethod paymentMethod, Date paymentDate,
+                      String phoneNumber, Collection<PaymentStatus> retryable);
+
+    List<Payment> findByCheckoutRequestIdIn(Collection<String> checkoutRequestIds);
+
+    // M-Pesa payments whose STK push timed out before the provider returned a checkout request id
+    @Query("SELECT p FROM Payment p WHERE p.status = com.example.agriecommerce.model.PaymentStatus.PENDING " +
+            "AND p.paymentMethod = com.example.agriecommerce.model.PaymentMethod.MPESA " +
+            "AND p.checkoutRequestId IS NULL AND p.paymentDate >= ?1")
+    List<Payment> findUnacknowledgedMpesaSince(Date since);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = com.example.agriecommerce.model.PaymentStatus.FAILED " +
+            "WHERE p.status = com.example.agriecommerce.model.PaymentStatus.PENDING " +
+            "AND p.paymentMethod = com.example.agriecommerce.model.PaymentMethod.MPESA " +
+            "AND p.checkoutRequestId IS NULL AND p.paymentDate < ?1")
+    int failUnacknowledgedMpesaBefore(Date cutoff);
+
+    @Modifying
+    @Query("DELETE FROM Payment p WHERE p.order.id IN ?1")
+    void deleteByOrderIdIn(Collection<String> orderIds);
 }
\ No newline at end of file
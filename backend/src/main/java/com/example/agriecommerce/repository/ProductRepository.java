@@ -3,6 +3,7 @@ package com.example.agriecommerce.repository;
 import com.example.agriecommerce.model.Product;
 import com.example.agriecommerce.model.ProductStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -13,7 +14,7 @@ import java.util.Map;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
     List<Product> findByCategory(String category);
     List<Product> findByStockLessThan(Integer stock);
 
@@ -48,4 +49,11 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     long countByStatus(ProductStatus status);
 
+    // Rows of [status, total, out of stock, low stock]
+    @Query(value = "SELECT COALESCE(status, 'PENDING'), COUNT(*), " +
+            "COUNT(*) FILTER (WHERE COALESCE(stock, 0) <= 0), " +
+            "COUNT(*) FILTER (WHERE stock > 0 AND stock <= reorder_threshold) " +
+            "FROM products GROUP BY status", nativeQuery = true)
+    List<Object[]> countByStatusAndStockBand();
+
 }
\ No newline at end of file
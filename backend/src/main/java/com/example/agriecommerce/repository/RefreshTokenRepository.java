@@ -1,39 +1,61 @@
 package com.example.agriecommerce.repository;
 
 import com.example.agriecommerce.model.RefreshToken;
-import com.example.agriecommerce.model.User;
+import com.example.agriecommerce.model.UserRole;
+import com.example.agriecommerce.model.UserStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    // Find token by token string
-    Optional<RefreshToken> findByToken(String token);
-
-    // Find token by user ID
-    Optional<RefreshToken> findByUserId(Long userId);
-
-    // Delete all tokens for a specific user
+    /** What a refresh needs, from the token row and the handful of user columns in the response. */
+    interface TokenLookup {
+        Long getId();
+        String getFamilyId();
+        Instant getExpiresAt();
+        Instant getRotatedAt();
+        Long getUserId();
+        String getFirstName();
+        String getLastName();
+        String getEmail();
+        String getPhone();
+        UserRole getRole();
+        UserStatus getStatus();
+    }
+
+    @Query("SELECT t.id AS id, t.familyId AS familyId, t.expiresAt AS expiresAt, t.rotatedAt AS rotatedAt, " +
+            "u.id AS userId, u.firstName AS firstName, u.lastName AS lastName, u.email AS email, " +
+            "u.phone AS phone, u.role AS role, u.status AS status " +
+            "FROM RefreshToken t JOIN t.user u WHERE t.tokenHash = :tokenHash")
+    Optional<TokenLookup> findLookupByTokenHash(@Param("tokenHash") String tokenHash);
+
+    // Claims the token for rotation; 0 means it was already used
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
-    void deleteByUserId(@Param("userId") Long userId);
+    @Query("UPDATE RefreshToken t SET t.rotatedAt = :now WHERE t.id = :id AND t.rotatedAt IS NULL")
+    int markRotated(@Param("id") Long id, @Param("now") Instant now);
 
-    // Delete token by User entity
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user")
-    void deleteByUser(@Param("user") User user);
+    @Query("DELETE FROM RefreshToken t WHERE t.familyId = :familyId")
+    int deleteByFamilyId(@Param("familyId") String familyId);
 
-    // Delete token by token string
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.token = :token")
-    void deleteByToken(@Param("token") String token);
+    @Query("DELETE FROM RefreshToken t WHERE t.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
 
-    // Check if token exists for user
-    boolean existsByUserId(Long userId);
-}
\ No newline at end of file
+    @Query("SELECT t.familyId FROM RefreshToken t WHERE t.tokenHash = :tokenHash")
+    Optional<String> findFamilyIdByTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_refresh_tokens WHERE id IN " +
+            "(SELECT id FROM user_refresh_tokens WHERE expires_at < :now LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredChunk(@Param("now") Instant now, @Param("limit") int limit);
+}
@@ -0,0 +1,23 @@
+package com.example.agriecommerce.repository;
+
+import com.example.agriecommerce.model.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+    boolean existsByJti(String jti);
+
+    List<TokenRevocation> findByExpiresAtAfter(Instant now);
+
+    List<TokenRevocation> findByCreatedAtAfterOrderByCreatedAtAsc(Instant createdAt);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.expiresAt < ?1")
+    int deleteExpired(Instant now);
+}
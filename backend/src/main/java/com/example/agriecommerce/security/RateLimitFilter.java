@@ -0,0 +1,66 @@
+package com.example.agriecommerce.security;
+
+import com.example.agriecommerce.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link RateLimiter} policies. Runs after {@link JwtAuthenticationFilter}
+ * so signed-in clients are limited by user id wherever they connect from; anyone
+ * else by remote address.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final byte[] BODY = "{\"success\":false,\"message\":\"Too many requests, please slow down\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+        RateLimiter.Policy policy = rateLimiter.policyFor(request.getRequestURI());
+        if (policy != null) {
+            long waitNanos = rateLimiter.tryAcquire(policy, clientKey(request));
+            if (waitNanos != RateLimiter.ALLOWED) {
+                long retryAfter = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                response.setStatus(429);
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+                response.setContentType("application/json");
+                response.getOutputStream().write(BODY);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // The M-Pesa callback comes from the provider's fixed addresses and must never be refused here
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().equals("/api/v1/payments/mpesa/callback");
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return "u" + principal.getId();
+        }
+        // Behind a proxy this relies on server.forward-headers-strategy to resolve the client address
+        return "ip" + request.getRemoteAddr();
+    }
+}
@@ -7,8 +7,10 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 @Getter
 public class UserPrincipal implements UserDetails {
@@ -37,6 +39,17 @@ public class UserPrincipal implements UserDetails {
         );
     }
 
+    /** Principal for an already-verified access token; carries no password. */
+    public static UserPrincipal fromClaims(Long id, String email, String authorities) {
+        List<GrantedAuthority> granted = new ArrayList<>();
+        for (String authority : authorities.split(",")) {
+            if (!authority.isBlank()) {
+                granted.add(new SimpleGrantedAuthority(authority.trim()));
+            }
+        }
+        return new UserPrincipal(id, email, null, granted);
+    }
+
     @Override
     public String getUsername() {
         return email;
@@ -0,0 +1,179 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.*;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Builds the whole admin dashboard in one call. Each widget is an independent
+ * {@link AdminService} computation run on a small bounded pool, so the page
+ * costs its slowest widget rather than the sum of all of them. A widget that
+ * fails or misses the deadline is left out and named in
+ * {@link AdminDashboardResponse#getUnavailable()}.
+ * <p>
+ * Widget results are cached with stale-while-revalidate: a fresh value is
+ * served as is, a stale one is served while a single background refresh runs,
+ * and admins arriving while a widget is being computed share that computation.
+ */
+@Slf4j
+@Service
+public class AdminDashboardService {
+    private static final Set<String> SALES_PERIODS = Set.of("day", "week", "month", "year");
+
+    private final ThreadPoolExecutor workers;
+    private final long timeoutMs;
+    private final long freshNanos;
+    private final long staleNanos;
+
+    private final CachedWidget<AdminStatsResponse> stats;
+    private final CachedWidget<List<RecentOrderResponse>> recentOrders;
+    private final CachedWidget<List<PopularProductResponse>> popularProducts;
+    private final ConcurrentHashMap<String, CachedWidget<SalesTrendResponse>> salesTrends = new ConcurrentHashMap<>();
+    private final CachedWidget<UserStatsResponse> userStats;
+    private final CachedWidget<ProductStatsResponse> productStats;
+    private final CachedWidget<List<RevenueByCategoryResponse>> revenueByCategory;
+    private final CachedWidget<OrderStatusDistributionResponse> orderStatusDistribution;
+    private final AdminService adminService;
+
+    public AdminDashboardService(AdminService adminService,
+                                 @Value("${app.admin.dashboard.threads:4}") int threads,
+                                 @Value("${app.admin.dashboard.queue-capacity:32}") int queueCapacity,
+                                 @Value("${app.admin.dashboard.widget-timeout-ms:2000}") long timeoutMs,
+                                 @Value("${app.admin.dashboard.fresh-ms:15000}") long freshMs,
+                                 @Value("${app.admin.dashboard.stale-ms:120000}") long staleMs) {
+        this.adminService = adminService;
+        this.timeoutMs = timeoutMs;
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos(freshMs);
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(freshMs, staleMs));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "admin-dashboard-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.stats = new CachedWidget<>(adminService::getDashboardStats);
+        this.recentOrders = new CachedWidget<>(adminService::getRecentOrders);
+        this.popularProducts = new CachedWidget<>(adminService::getPopularProducts);
+        this.userStats = new CachedWidget<>(adminService::getUserStats);
+        this.productStats = new CachedWidget<>(adminService::getProductStats);
+        this.revenueByCategory = new CachedWidget<>(adminService::getRevenueByCategory);
+        this.orderStatusDistribution = new CachedWidget<>(adminService::getOrderStatusDistribution);
+    }
+
+    public AdminDashboardResponse getDashboard(String salesPeriod) {
+        String period = salesPeriod != null && SALES_PERIODS.contains(salesPeriod.toLowerCase(Locale.ROOT))
+                ? salesPeriod.toLowerCase(Locale.ROOT) : "month";
+
+        // Start every widget before waiting on any of them
+        CompletableFuture<AdminStatsResponse> statsResult = stats.get();
+        CompletableFuture<List<RecentOrderResponse>> recentOrdersResult = recentOrders.get();
+        CompletableFuture<List<PopularProductResponse>> popularProductsResult = popularProducts.get();
+        CompletableFuture<SalesTrendResponse> salesTrendResult = salesTrends
+                .computeIfAbsent(period, key -> new CachedWidget<>(() -> adminService.getSalesTrend(key))).get();
+        CompletableFuture<UserStatsResponse> userStatsResult = userStats.get();
+        CompletableFuture<ProductStatsResponse> productStatsResult = productStats.get();
+        CompletableFuture<List<RevenueByCategoryResponse>> revenueByCategoryResult = revenueByCategory.get();
+        CompletableFuture<OrderStatusDistributionResponse> distributionResult = orderStatusDistribution.get();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<String> unavailable = new ArrayList<>();
+        return AdminDashboardResponse.builder()
+                .stats(await("stats", statsResult, deadline, unavailable))
+                .recentOrders(await("recentOrders", recentOrdersResult, deadline, unavailable))
+                .popularProducts(await("popularProducts", popularProductsResult, deadline, unavailable))
+                .salesTrend(await("salesTrend", salesTrendResult, deadline, unavailable))
+                .userStats(await("userStats", userStatsResult, deadline, unavailable))
+                .productStats(await("productStats", productStatsResult, deadline, unavailable))
+                .revenueByCategory(await("revenueByCategory", revenueByCategoryResult, deadline, unavailable))
+                .orderStatusDistribution(await("orderStatusDistribution", distributionResult, deadline, unavailable))
+                .unavailable(unavailable)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // The widgets run concurrently, so one shared deadline gives each the full timeout
+    private static <T> T await(String widget, CompletableFuture<T> result, long deadline, List<String> unavailable) {
+        try {
+            return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Dashboard widget {} did not finish in time", widget);
+        } catch (ExecutionException e) {
+            log.warn("Dashboard widget {} failed", widget, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unavailable.add(widget);
+        return null;
+    }
+
+    private final class CachedWidget<T> {
+        private final Supplier<T> loader;
+        private volatile Snapshot<T> snapshot;
+        private final AtomicReference<CompletableFuture<T>> inFlight = new AtomicReference<>();
+
+        CachedWidget(Supplier<T> loader) {
+            this.loader = loader;
+        }
+
+        CompletableFuture<T> get() {
+            Snapshot<T> current = snapshot;
+            long age = current != null ? System.nanoTime() - current.loadedAt() : Long.MAX_VALUE;
+            if (age < freshNanos) {
+                return CompletableFuture.completedFuture(current.value());
+            }
+            CompletableFuture<T> refresh = refresh();
+            return age < staleNanos ? CompletableFuture.completedFuture(current.value()) : refresh;
+        }
+
+        // Single flight: callers that find a load running join it
+        private CompletableFuture<T> refresh() {
+            while (true) {
+                CompletableFuture<T> running = inFlight.get();
+                if (running != null) {
+                    return running;
+                }
+                CompletableFuture<T> load = new CompletableFuture<>();
+                if (!inFlight.compareAndSet(null, load)) {
+                    continue;
+                }
+                try {
+                    workers.execute(() -> {
+                        try {
+                            T value = loader.get();
+                            snapshot = new Snapshot<>(value, System.nanoTime());
+                            load.complete(value);
+                        } catch (Throwable e) {
+                            load.completeExceptionally(e);
+                        } finally {
+                            inFlight.compareAndSet(load, null);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.compareAndSet(load, null);
+                    load.completeExceptionally(e);
+                }
+                return load;
+            }
+        }
+    }
+
+    private record Snapshot<T>(T value, long loadedAt) {}
+}
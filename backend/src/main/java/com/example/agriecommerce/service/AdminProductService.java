@@ -6,16 +6,32 @@ import com.example.agriecommerce.model.Product;
 import com.example.agriecommerce.model.ProductStatus;
 import com.example.agriecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AdminProductService {
+    private static final GridDefinition<Product> PRODUCT_GRID = GridDefinition.<Product>builder("products")
+            .equality("farmerId", "farmer_id", "farmer.id", Long::valueOf)
+            .equality("status", "status", "status", ProductStatus::valueOf)
+            .range("createdAt", "created_at", "createdAt")
+            .index("idx_products_created_at", "created_at")
+            .index("idx_products_status_created_at", "created_at", "status")
+            .index("idx_products_farmer_created_at", "created_at", "farmer_id")
+            .index("idx_products_farmer_status_created_at", "created_at", "farmer_id", "status")
+            .fetch("farmer")
+            .build();
+
     private final ProductRepository productRepository;
+    private final BusinessCounters businessCounters;
+    private final BusinessClock businessClock;
 
     public List<ProductResponse> getPendingProducts() {
         return productRepository.findByStatus(ProductStatus.PENDING)
@@ -27,27 +43,37 @@ public class AdminProductService {
     public ProductResponse approveProduct(Long productId) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        BusinessCounters.ProductState before = BusinessCounters.ProductState.of(product);
 
         product.setStatus(ProductStatus.APPROVED);
         product.setReviewedAt(LocalDateTime.now());
         product.setRejectionReason(null);
 
         Product updatedProduct = productRepository.save(product);
+        businessCounters.productChanged(before, BusinessCounters.ProductState.of(updatedProduct));
         return mapToProductResponse(updatedProduct);
     }
 
     public ProductResponse rejectProduct(Long productId, String rejectionReason) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        BusinessCounters.ProductState before = BusinessCounters.ProductState.of(product);
 
         product.setStatus(ProductStatus.REJECTED);
         product.setReviewedAt(LocalDateTime.now());
         product.setRejectionReason(rejectionReason);
 
         Product updatedProduct = productRepository.save(product);
+        businessCounters.productChanged(before, BusinessCounters.ProductState.of(updatedProduct));
         return mapToProductResponse(updatedProduct);
     }
 
+    public Page<ProductResponse> searchProducts(Map<String, String> filters, Pageable pageable) {
+        GridDefinition.Query<Product> query = PRODUCT_GRID.parse(filters, pageable, businessClock.getZone());
+        return productRepository.findAll(query.specification(), query.pageable())
+                .map(this::mapToProductResponse);
+    }
+
     public List<ProductResponse> getAllProducts() {
         return productRepository.findByStatusIn(List.of(ProductStatus.APPROVED, ProductStatus.ACTIVE))
                 .stream()
@@ -65,6 +91,7 @@ public class AdminProductService {
                 .category(product.getCategory())
                 .subcategory(product.getSubcategory())
                 .stock(product.getStock())
+                .reorderThreshold(product.getReorderThreshold())
                 .origin(product.getOrigin())
                 .nutritionalInfo(product.getNutritionalInfo())
                 .isOrganic(product.getOrganic())
@@ -5,67 +5,58 @@ import com.example.agriecommerce.model.OrderStatus;
 import com.example.agriecommerce.repository.OrderRepository;
 import com.example.agriecommerce.repository.ProductRepository;
 import com.example.agriecommerce.repository.UserRepository;
+import com.example.agriecommerce.service.DashboardRollupService.Totals;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+// Widgets also run on AdminDashboardService's pool, outside any open-in-view session
+@Transactional(readOnly = true)
 public class AdminService {
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final DashboardRollupService dashboardRollupService;
+    private final BusinessCounters businessCounters;
+    private final BusinessClock businessClock;
 
     public AdminStatsResponse getDashboardStats() {
-        // Basic counts
-        long totalUsers = userRepository.count();
-        long totalProducts = productRepository.count();
-        long totalOrders = orderRepository.count();
-        long pendingOrders = orderRepository.countByStatus(OrderStatus.PENDING);
-        long lowStockProducts = productRepository.countByStockLessThan(10);
-
-        // Revenue calculation
-        BigDecimal totalRevenue = orderRepository.sumTotalAmount() != null ?
-                orderRepository.sumTotalAmount() : BigDecimal.ZERO;
+        // Totals and growth come from the dashboard rollups, current state from the live counters
+        Map<String, Totals> allTime = dashboardRollupService.allTime();
+        Totals orders = DashboardRollupService.orders(allTime);
+        long lowStockProducts = businessCounters.products(BusinessCounters.StockBand.OUT_OF_STOCK)
+                + businessCounters.products(BusinessCounters.StockBand.LOW);
 
         // Monthly growth calculations
-        LocalDate now = LocalDate.now();
-        LocalDate lastMonth = now.minusMonths(1);
-
-        Date startOfCurrentMonth = Date.from(now.withDayOfMonth(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date startOfLastMonth = Date.from(lastMonth.withDayOfMonth(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
-        Date endOfLastMonth = Date.from(lastMonth.withDayOfMonth(lastMonth.lengthOfMonth()).atTime(23, 59, 59)
-                .atZone(ZoneId.systemDefault()).toInstant());
-
-        // Product growth
-        long currentMonthProducts = productRepository.countByCreatedAtAfter(startOfCurrentMonth);
-        long lastMonthProducts = productRepository.countByCreatedAtBetween(startOfLastMonth, endOfLastMonth);
-        double productGrowth = calculateGrowthPercentage(currentMonthProducts, lastMonthProducts);
-
-        // Order growth
-        BigDecimal currentMonthRevenue = orderRepository.sumTotalAmountByCreatedAtAfter(startOfCurrentMonth) != null ?
-                orderRepository.sumTotalAmountByCreatedAtAfter(startOfCurrentMonth) : BigDecimal.ZERO;
-        BigDecimal lastMonthRevenue = orderRepository.sumTotalAmountByCreatedAtBetween(startOfLastMonth, endOfLastMonth) != null ?
-                orderRepository.sumTotalAmountByCreatedAtBetween(startOfLastMonth, endOfLastMonth) : BigDecimal.ZERO;
-        double revenueGrowth = calculateRevenueGrowthPercentage(currentMonthRevenue, lastMonthRevenue);
-
-        // User growth
-        long currentMonthUsers = userRepository.countByCreatedAtAfter(startOfCurrentMonth);
-        long lastMonthUsers = userRepository.countByCreatedAtBetween(startOfLastMonth, endOfLastMonth);
-        double userGrowth = calculateGrowthPercentage(currentMonthUsers, lastMonthUsers);
+        LocalDate now = businessClock.today();
+        LocalDate startOfCurrentMonth = now.withDayOfMonth(1);
+        Map<String, Totals> currentMonth = dashboardRollupService.between(startOfCurrentMonth, now.plusDays(1));
+        Map<String, Totals> lastMonth = dashboardRollupService.between(startOfCurrentMonth.minusMonths(1), startOfCurrentMonth);
+
+        double productGrowth = calculateGrowthPercentage(
+                DashboardRollupService.get(currentMonth, DashboardRollupService.PRODUCTS).count(),
+                DashboardRollupService.get(lastMonth, DashboardRollupService.PRODUCTS).count());
+        double revenueGrowth = calculateRevenueGrowthPercentage(
+                DashboardRollupService.orders(currentMonth).amount(),
+                DashboardRollupService.orders(lastMonth).amount());
+        double userGrowth = calculateGrowthPercentage(
+                DashboardRollupService.get(currentMonth, DashboardRollupService.USERS).count(),
+                DashboardRollupService.get(lastMonth, DashboardRollupService.USERS).count());
 
         return AdminStatsResponse.builder()
-                .totalUsers(totalUsers)
-                .totalProducts(totalProducts)
-                .totalOrders(totalOrders)
-                .totalRevenue(totalRevenue)
-                .pendingOrders(pendingOrders)
+                .totalUsers(DashboardRollupService.get(allTime, DashboardRollupService.USERS).count())
+                .totalProducts(DashboardRollupService.get(allTime, DashboardRollupService.PRODUCTS).count())
+                .totalOrders(orders.count())
+                .totalRevenue(orders.amount())
+                .pendingOrders(businessCounters.orders(OrderStatus.PENDING))
                 .lowStockProducts(lowStockProducts)
                 .productGrowth(productGrowth)
                 .revenueGrowth(revenueGrowth)
@@ -100,25 +91,23 @@ public class AdminService {
     }
 
     public SalesTrendResponse getSalesTrend(String period) {
-        LocalDate now = LocalDate.now();
-        Date startDate = calculateStartDate(period, now);
-        Date endDate = Date.from(now.atTime(23, 59, 59).atZone(ZoneId.systemDefault()).toInstant());
-
-        BigDecimal totalSales = orderRepository.sumTotalAmountByCreatedAtBetween(startDate, endDate);
-        long orderCount = orderRepository.countByOrderDateBetween(startDate, endDate);
+        LocalDate now = businessClock.today();
+        Totals orders = DashboardRollupService.orders(
+                dashboardRollupService.between(calculateStartDate(period, now), now.plusDays(1)));
 
         return SalesTrendResponse.builder()
-                .totalSales(totalSales != null ? totalSales : BigDecimal.ZERO)
-                .orderCount(orderCount)
+                .totalSales(orders.amount())
+                .orderCount(orders.count())
                 .period(period)
                 .build();
     }
 
     public UserStatsResponse getUserStats() {
-        long totalUsers = userRepository.count();
+        LocalDate today = businessClock.today();
+        long totalUsers = DashboardRollupService.get(dashboardRollupService.allTime(), DashboardRollupService.USERS).count();
         long activeUsers = userRepository.countByStatus("ACTIVE");
-        long newUsers = userRepository.countByCreatedAtAfter(
-                Date.from(LocalDate.now().minusDays(7).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        long newUsers = DashboardRollupService.get(
+                dashboardRollupService.between(today.minusDays(7), today.plusDays(1)), DashboardRollupService.USERS).count();
 
         return UserStatsResponse.builder()
                 .totalUsers(totalUsers)
@@ -128,9 +117,9 @@ public class AdminService {
     }
 
     public ProductStatsResponse getProductStats() {
-        long totalProducts = productRepository.count();
-        long outOfStock = productRepository.countByStock(0);
-        long lowStock = productRepository.countByStockLessThan(10);
+        long totalProducts = businessCounters.products();
+        long outOfStock = businessCounters.products(BusinessCounters.StockBand.OUT_OF_STOCK);
+        long lowStock = outOfStock + businessCounters.products(BusinessCounters.StockBand.LOW);
 
         return ProductStatsResponse.builder()
                 .totalProducts(totalProducts)
@@ -165,14 +154,12 @@ public class AdminService {
     }
 
     public OrderStatusDistributionResponse getOrderStatusDistribution() {
-        Map<OrderStatus, Long> statusCounts = orderRepository.countByStatusGroupByStatus();
-
         return OrderStatusDistributionResponse.builder()
-                .pending(statusCounts.getOrDefault(OrderStatus.PENDING, 0L))
-                .processing(statusCounts.getOrDefault(OrderStatus.PROCESSING, 0L))
-                .shipped(statusCounts.getOrDefault(OrderStatus.SHIPPED, 0L))
-                .delivered(statusCounts.getOrDefault(OrderStatus.DELIVERED, 0L))
-                .cancelled(statusCounts.getOrDefault(OrderStatus.CANCELLED, 0L))
+                .pending(businessCounters.orders(OrderStatus.PENDING))
+                .processing(businessCounters.orders(OrderStatus.PROCESSING))
+                .shipped(businessCounters.orders(OrderStatus.SHIPPED))
+                .delivered(businessCounters.orders(OrderStatus.DELIVERED))
+                .cancelled(businessCounters.orders(OrderStatus.CANCELLED))
                 .build();
     }
 
@@ -196,18 +183,18 @@ public class AdminService {
                         .doubleValue() : 0;
     }
 
-    private Date calculateStartDate(String period, LocalDate now) {
+    private LocalDate calculateStartDate(String period, LocalDate now) {
         switch (period.toLowerCase()) {
             case "week":
-                return Date.from(now.minusWeeks(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                return now.minusWeeks(1);
             case "month":
-                return Date.from(now.minusMonths(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                return now.minusMonths(1);
             case "year":
-                return Date.from(now.minusYears(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                return now.minusYears(1);
             case "day":
-                return Date.from(now.minusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                return now.minusDays(1);
             default:
-                return Date.from(now.minusMonths(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                return now.minusMonths(1);
         }
     }
 }
\ No newline at end of file
@@ -5,23 +5,28 @@ import com.example.agriecommerce.dto.request.LoginRequest;
 import com.example.agriecommerce.dto.request.RefreshTokenRequest;
 import com.example.agriecommerce.dto.request.RegisterRequest;
 import com.example.agriecommerce.dto.response.AuthResponse;
+import com.example.agriecommerce.dto.response.UserResponse;
 import com.example.agriecommerce.exception.BadRequestException;
 import com.example.agriecommerce.exception.TokenRefreshException;
-import com.example.agriecommerce.model.RefreshToken;
 import com.example.agriecommerce.model.User;
 import com.example.agriecommerce.model.UserRole;
+import com.example.agriecommerce.model.UserStatus;
+import com.example.agriecommerce.repository.RefreshTokenRepository;
 import com.example.agriecommerce.repository.UserRepository;
 import com.example.agriecommerce.security.JwtTokenProvider;
 import com.example.agriecommerce.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 @Transactional
@@ -33,6 +38,8 @@ public class AuthService {
     private final JwtTokenProvider tokenProvider;
     private final RefreshTokenService refreshTokenService;
     private final JwtConfig jwtConfig;
+    private final TokenRevocationService tokenRevocationService;
+    private final DashboardRollupService dashboardRollupService;
 
     /**
      * Authenticate user with email and password, and return access + refresh token.
@@ -46,16 +53,18 @@ public class AuthService {
                     )
             );
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
 
-            String accessToken = tokenProvider.generateToken(userPrincipal);
-            String refreshToken = refreshTokenService.createRefreshToken(userPrincipal.getId()).getToken();
-
             User user = userRepository.findById(userPrincipal.getId())
                     .orElseThrow(() -> new RuntimeException("User not found"));
+            requireActive(user);
+
+            String accessToken = tokenProvider.generateToken(userPrincipal);
+            String refreshToken = refreshTokenService.createRefreshToken(userPrincipal.getId());
 
             return AuthResponse.of(user, accessToken, refreshToken);
+        } catch (BadRequestException e) {
+            throw e;
         } catch (Exception e) {
             throw new BadRequestException("Invalid email or password");
         }
@@ -79,30 +88,60 @@ public class AuthService {
                 .build();
 
         User savedUser = userRepository.save(user);
+        dashboardRollupService.userCreated(savedUser.getCreatedAt());
         UserPrincipal userPrincipal = UserPrincipal.create(savedUser);
 
         String accessToken = tokenProvider.generateToken(userPrincipal);
-        String refreshToken = refreshTokenService.createRefreshToken(savedUser.getId()).getToken();
+        String refreshToken = refreshTokenService.createRefreshToken(savedUser.getId());
 
         return AuthResponse.of(savedUser, accessToken, refreshToken);
     }
 
     /**
-     * Refresh access token using a valid refresh token.
+     * Refresh access token using a valid refresh token. The refresh token is
+     * rotated: the one presented stops working and its successor is returned.
      */
+    @Transactional(noRollbackFor = TokenRefreshException.class)
     public AuthResponse refreshToken(RefreshTokenRequest refreshTokenRequest) {
-        RefreshToken refreshToken = refreshTokenService.findByToken(refreshTokenRequest.getRefreshToken())
-                .orElseThrow(() -> new TokenRefreshException(
-                        refreshTokenRequest.getRefreshToken(),
-                        "Refresh token not found"
-                ));
-
-        refreshTokenService.verifyExpiration(refreshToken);
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshTokenRequest.getRefreshToken());
+        RefreshTokenRepository.TokenLookup account = rotation.previous();
+        if (account.getStatus() != UserStatus.ACTIVE) {
+            throw new BadRequestException("Account is " + account.getStatus().name().toLowerCase());
+        }
 
-        User user = refreshToken.getUser();
-        UserPrincipal userPrincipal = UserPrincipal.create(user);
+        UserPrincipal userPrincipal = new UserPrincipal(account.getUserId(), account.getEmail(), null,
+                List.of(new SimpleGrantedAuthority(account.getRole().name())));
         String accessToken = tokenProvider.generateToken(userPrincipal);
 
-        return AuthResponse.of(user, accessToken, refreshToken.getToken());
+        UserResponse user = new UserResponse();
+        user.setId(account.getUserId());
+        user.setFirstName(account.getFirstName());
+        user.setLastName(account.getLastName());
+        user.setEmail(account.getEmail());
+        user.setPhone(account.getPhone());
+        user.setRole(account.getRole());
+        user.setStatus(account.getStatus());
+        return new AuthResponse(user, accessToken, rotation.token());
+    }
+
+    /**
+     * Deletes the refresh token and, when the caller presented its access token,
+     * revokes that too so it stops working before it expires.
+     */
+    public void logout(String refreshToken, String accessToken) {
+        refreshTokenService.deleteByToken(refreshToken);
+        Claims claims = accessToken != null ? tokenProvider.parseClaims(accessToken) : null;
+        if (claims != null) {
+            UserPrincipal principal = tokenProvider.toPrincipal(claims);
+            if (principal != null) {
+                tokenRevocationService.revokeToken(claims.getId(), principal.getId(), claims.getExpiration());
+            }
+        }
+    }
+
+    private static void requireActive(User user) {
+        if (user.getStatus() != UserStatus.ACTIVE) {
+            throw new BadRequestException("Account is " + user.getStatus().name().toLowerCase());
+        }
     }
-}
\ No newline at end of file
+}
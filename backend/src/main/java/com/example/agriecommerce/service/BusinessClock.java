@@ -0,0 +1,54 @@
+package com.example.agriecommerce.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.*;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * The time zone business days, weeks and months are reckoned in
+ * ({@code app.business.time-zone}), independent of the zone the server runs in.
+ * Timestamp columns hold wall-clock time in the JVM's zone, which is how
+ * Hibernate writes {@link Date} values, so SQL that buckets by business day
+ * converts them with {@link #localTime(String)}.
+ */
+@Component
+public class BusinessClock {
+    private final ZoneId zone;
+    private final String storageZone;
+
+    public BusinessClock(@Value("${app.business.time-zone:}") String timeZone) {
+        this.zone = timeZone == null || timeZone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(timeZone);
+        this.storageZone = TimeZone.getDefault().getID();
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public LocalDate today() {
+        return LocalDate.now(zone);
+    }
+
+    public LocalDateTime now() {
+        return LocalDateTime.now(zone);
+    }
+
+    public LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(zone).toLocalDate();
+    }
+
+    public Instant toInstant(LocalDateTime localTime) {
+        return localTime.atZone(zone).toInstant();
+    }
+
+    /**
+     * SQL expression for a timestamp column as business wall-clock time. Zone
+     * ids are validated by {@link ZoneId}, so inlining them is safe.
+     */
+    public String localTime(String column) {
+        return "((" + column + " AT TIME ZONE '" + storageZone + "') AT TIME ZONE '" + zone.getId() + "')";
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderStatus;
+import com.example.agriecommerce.model.Product;
+import com.example.agriecommerce.model.ProductStatus;
+import com.example.agriecommerce.repository.OrderRepository;
+import com.example.agriecommerce.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counts of orders per status (including archived orders) and of products
+ * per status and stock band, so the admin dashboard can answer them without a
+ * query. Services report each change; it is applied once the transaction
+ * commits.
+ * <p>
+ * Changes made by other instances, and any drift, are corrected by a periodic
+ * reconciliation against the database. A change that commits while the
+ * reconciliation query runs may be counted twice until the next pass.
+ */
+@Slf4j
+@Component
+public class BusinessCounters implements OrderStatusListener {
+    public enum StockBand {
+        OUT_OF_STOCK, LOW, IN_STOCK;
+
+        /** LOW means at or below the product's reorder threshold. */
+        public static StockBand of(Integer stock, Integer reorderThreshold) {
+            if (stock == null || stock <= 0) {
+                return OUT_OF_STOCK;
+            }
+            return reorderThreshold != null && stock <= reorderThreshold ? LOW : IN_STOCK;
+        }
+    }
+
+    /** What the counters know about one product; null stands for "does not exist". */
+    public record ProductState(ProductStatus status, StockBand band) {
+        public static ProductState of(Product product) {
+            return new ProductState(product.getStatus(), StockBand.of(product.getStock(), product.getReorderThreshold()));
+        }
+    }
+
+    private final OrderRepository orderRepository;
+    private final OrderArchiveService orderArchiveService;
+    private final ProductRepository productRepository;
+
+    private final Map<OrderStatus, LongAdder> orders = adders(OrderStatus.class);
+    private final Map<ProductStatus, LongAdder> products = adders(ProductStatus.class);
+    private final Map<StockBand, LongAdder> stockBands = adders(StockBand.class);
+
+    public BusinessCounters(OrderRepository orderRepository,
+                            OrderArchiveService orderArchiveService,
+                            ProductRepository productRepository) {
+        this.orderRepository = orderRepository;
+        this.orderArchiveService = orderArchiveService;
+        this.productRepository = productRepository;
+    }
+
+    // ---- updates -----------------------------------------------------------------
+
+    @Override
+    public void orderStatusChanged(Order order, OrderStatus from, OrderStatus to) {
+        ordersChanged(from, to, 1);
+    }
+
+    @Override
+    public void ordersTransitioned(Collection<String> orderIds, OrderStatus from, OrderStatus to) {
+        ordersChanged(from, to, orderIds.size());
+    }
+
+    /** {@code count} orders moved from {@code from} (null when created) to {@code to}. */
+    public void ordersChanged(OrderStatus from, OrderStatus to, long count) {
+        if (count == 0 || from == to) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            if (from != null) {
+                orders.get(from).add(-count);
+            }
+            orders.get(to).add(count);
+        });
+    }
+
+    public void productChanged(ProductState before, ProductState after) {
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            if (before != null) {
+                products.get(before.status()).decrement();
+                stockBands.get(before.band()).decrement();
+            }
+            if (after != null) {
+                products.get(after.status()).increment();
+                stockBands.get(after.band()).increment();
+            }
+        });
+    }
+
+    // ---- reads -------------------------------------------------------------------
+
+    public long orders(OrderStatus status) {
+        return orders.get(status).sum();
+    }
+
+    public long products() {
+        long total = 0;
+        for (LongAdder adder : products.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public long products(StockBand band) {
+        return stockBands.get(band).sum();
+    }
+
+    // ---- reconciliation ----------------------------------------------------------
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.counters.reconcile-interval-ms:300000}",
+            fixedDelayString = "${app.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<OrderStatus, Long> orderCounts = new EnumMap<>(OrderStatus.class);
+        Map<ProductStatus, Long> productCounts = new EnumMap<>(ProductStatus.class);
+        Map<StockBand, Long> bandCounts = new EnumMap<>(StockBand.class);
+
+        // Sample the counters right before each query, so that local changes made
+        // while it runs survive the correction
+        Map<OrderStatus, Long> ordersBefore = snapshot(orders);
+        for (Object[] row : orderRepository.countByStatusGroupByStatus()) {
+            orderCounts.merge((OrderStatus) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        orderArchiveService.countByStatus().forEach((status, count) -> orderCounts.merge(status, count, Long::sum));
+
+        Map<ProductStatus, Long> productsBefore = snapshot(products);
+        Map<StockBand, Long> bandsBefore = snapshot(stockBands);
+        long total = 0;
+        long outOfStock = 0;
+        long lowStock = 0;
+        for (Object[] row : productRepository.countByStatusAndStockBand()) {
+            productCounts.merge(ProductStatus.valueOf((String) row[0]), ((Number) row[1]).longValue(), Long::sum);
+            total += ((Number) row[1]).longValue();
+            outOfStock += ((Number) row[2]).longValue();
+            lowStock += ((Number) row[3]).longValue();
+        }
+        bandCounts.put(StockBand.OUT_OF_STOCK, outOfStock);
+        bandCounts.put(StockBand.LOW, lowStock);
+        bandCounts.put(StockBand.IN_STOCK, total - outOfStock - lowStock);
+
+        long drift = correct(orders, ordersBefore, orderCounts)
+                + correct(products, productsBefore, productCounts)
+                + correct(stockBands, bandsBefore, bandCounts);
+        if (drift != 0) {
+            log.debug("Reconciled business counters, corrected a total drift of {}", drift);
+        }
+    }
+
+    private static <K extends Enum<K>> Map<K, LongAdder> adders(Class<K> type) {
+        Map<K, LongAdder> adders = new EnumMap<>(type);
+        for (K key : type.getEnumConstants()) {
+            adders.put(key, new LongAdder());
+        }
+        return adders;
+    }
+
+    private static <K extends Enum<K>> Map<K, Long> snapshot(Map<K, LongAdder> adders) {
+        Map<K, Long> values = new EnumMap<>(adders.keySet().iterator().next().getDeclaringClass());
+        adders.forEach((key, adder) -> values.put(key, adder.sum()));
+        return values;
+    }
+
+    private static <K extends Enum<K>> long correct(Map<K, LongAdder> adders, Map<K, Long> before, Map<K, Long> actual) {
+        long drift = 0;
+        for (Map.Entry<K, LongAdder> entry : adders.entrySet()) {
+            long delta = actual.getOrDefault(entry.getKey(), 0L) - before.get(entry.getKey());
+            if (delta != 0) {
+                entry.getValue().add(delta);
+                drift += Math.abs(delta);
+            }
+        }
+        return drift;
+    }
+}
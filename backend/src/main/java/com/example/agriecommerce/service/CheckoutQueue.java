@@ -0,0 +1,107 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.request.OrderRequest;
+import com.example.agriecommerce.dto.response.OrderResponse;
+import com.example.agriecommerce.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded work queue for asynchronous checkout. The request thread only persists
+ * the order shell; cart conversion, stock updates and cart clearing run on a
+ * fixed set of workers. When every slot is taken new checkouts are refused with
+ * 429 before anything is written.
+ */
+@Slf4j
+@Component
+public class CheckoutQueue {
+    private final OrderService orderService;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore slots;
+    private final long retryAfterSeconds;
+
+    public CheckoutQueue(OrderService orderService,
+                         @Value("${app.orders.checkout.workers:4}") int workerCount,
+                         @Value("${app.orders.checkout.queue-capacity:200}") int queueCapacity,
+                         @Value("${app.orders.checkout.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.orderService = orderService;
+        this.retryAfterSeconds = retryAfterSeconds;
+        // One permit per queued or running checkout, so execute() can never be rejected
+        this.slots = new Semaphore(workerCount + queueCapacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "checkout-worker-" + threadCount.incrementAndGet()));
+    }
+
+    public OrderResponse submit(Long userId, OrderRequest orderRequest) {
+        if (!slots.tryAcquire()) {
+            throw new TooManyRequestsException("Checkout is busy, please retry shortly", retryAfterSeconds);
+        }
+        OrderResponse shell;
+        try {
+            shell = orderService.placeOrderShell(userId, orderRequest);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        enqueue(shell.getId(), userId);
+        return shell;
+    }
+
+    public int getQueuedCount() {
+        return workers.getQueue().size();
+    }
+
+    // A restart drops whatever was in memory; pick those shells back up.
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeQueuedCheckouts() {
+        for (String orderId : orderService.findQueuedCheckouts()) {
+            if (!slots.tryAcquire()) {
+                log.warn("Checkout queue full while resuming; remaining queued orders wait for the next restart");
+                return;
+            }
+            enqueue(orderId, null);
+        }
+    }
+
+    private void enqueue(String orderId, Long userId) {
+        try {
+            workers.execute(() -> {
+                try {
+                    process(orderId, userId);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            orderService.failCheckout(orderId, "Checkout could not be queued");
+        }
+    }
+
+    private void process(String orderId, Long userId) {
+        try {
+            Long owner = userId != null ? userId : orderService.findOrderOwnerId(orderId);
+            orderService.completeCheckout(orderId, owner);
+        } catch (Exception e) {
+            log.warn("Checkout for order {} failed: {}", orderId, e.getMessage());
+            orderService.failCheckout(orderId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(20, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.PaymentGatewayException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Safaricom Daraja STK push client. Uses the JDK's asynchronous HTTP client, which
+ * keeps a pool of keep-alive connections to the provider, and caches the OAuth
+ * token until shortly before it expires.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.payments.gateway.provider", havingValue = "daraja")
+public class DarajaMpesaGateway implements PaymentGateway {
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final ZoneId NAIROBI = ZoneId.of("Africa/Nairobi");
+
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String consumerKey;
+    private final String consumerSecret;
+    private final String shortCode;
+    private final String passkey;
+    private final String callbackUrl;
+    private final Duration requestTimeout;
+
+    private volatile CompletableFuture<AccessToken> accessToken;
+
+    public DarajaMpesaGateway(ObjectMapper objectMapper,
+                              @Value("${app.payments.daraja.base-url:https://sandbox.safaricom.co.ke}") String baseUrl,
+                              @Value("${app.payments.daraja.consumer-key}") String consumerKey,
+                              @Value("${app.payments.daraja.consumer-secret}") String consumerSecret,
+                              @Value("${app.payments.daraja.short-code}") String shortCode,
+                              @Value("${app.payments.daraja.passkey}") String passkey,
+                              @Value("${app.payments.daraja.callback-url}") String callbackUrl,
+                              @Value("${app.payments.callbacks.token:}") String callbackToken,
+                              @Value("${app.payments.daraja.connect-timeout-ms:2000}") long connectTimeoutMs,
+                              @Value("${app.payments.gateway.timeout-ms:5000}") long requestTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.consumerKey = consumerKey;
+        this.consumerSecret = consumerSecret;
+        this.shortCode = shortCode;
+        this.passkey = passkey;
+        // The ingestor only trusts callbacks that echo this token back
+        this.callbackUrl = callbackToken.isBlank() ? callbackUrl
+                : UriComponentsBuilder.fromUriString(callbackUrl).queryParam("token", callbackToken).build().toUriString();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<StkPushAck> initiateStkPush(StkPushRequest request) {
+        return token().thenCompose(token -> {
+            String timestamp = LocalDateTime.now(NAIROBI).format(TIMESTAMP);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("BusinessShortCode", shortCode);
+            body.put("Password", base64(shortCode + passkey + timestamp));
+            body.put("Timestamp", timestamp);
+            body.put("TransactionType", "CustomerPayBillOnline");
+            body.put("Amount", request.amount().setScale(0, RoundingMode.CEILING).toPlainString());
+            body.put("PartyA", request.phoneNumber());
+            body.put("PartyB", shortCode);
+            body.put("PhoneNumber", request.phoneNumber());
+            body.put("CallBackURL", callbackUrl);
+            body.put("AccountReference", request.accountReference());
+            body.put("TransactionDesc", request.description());
+
+            HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/mpesa/stkpush/v1/processrequest"))
+                    .timeout(requestTimeout)
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(toJson(body)))
+                    .build();
+            return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString());
+        }).thenApply(response -> {
+            JsonNode json = parse(response.body());
+            if (response.statusCode() != 200 || !"0".equals(json.path("ResponseCode").asText())) {
+                if (response.statusCode() == 401) {
+                    accessToken = null;
+                }
+                throw new PaymentGatewayException("M-Pesa rejected the STK push: "
+                        + json.path("errorMessage").asText(json.path("ResponseDescription").asText("HTTP " + response.statusCode())));
+            }
+            return new StkPushAck(
+                    json.path("MerchantRequestID").asText(),
+                    json.path("CheckoutRequestID").asText(),
+                    json.path("CustomerMessage").asText(null));
+        });
+    }
+
+    @Override
+    public String name() {
+        return "M-Pesa Daraja";
+    }
+
+    private CompletableFuture<String> token() {
+        CompletableFuture<AccessToken> current = accessToken;
+        if (current != null && (!current.isDone() || isUsable(current))) {
+            return current.thenApply(AccessToken::value);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/oauth/v1/generate?grant_type=client_credentials"))
+                .timeout(requestTimeout)
+                .header("Authorization", "Basic " + base64(consumerKey + ":" + consumerSecret))
+                .GET()
+                .build();
+        CompletableFuture<AccessToken> refreshed = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new PaymentGatewayException("M-Pesa authentication failed: HTTP " + response.statusCode());
+                    }
+                    JsonNode json = parse(response.body());
+                    // Refresh a minute early so in-flight requests never carry an expired token
+                    long ttlSeconds = Math.max(0, json.path("expires_in").asLong(3599) - 60);
+                    return new AccessToken(json.path("access_token").asText(), System.currentTimeMillis() + ttlSeconds * 1000);
+                });
+        accessToken = refreshed;
+        return refreshed.thenApply(AccessToken::value);
+    }
+
+    private static boolean isUsable(CompletableFuture<AccessToken> token) {
+        return !token.isCompletedExceptionally() && token.join().expiresAt() > System.currentTimeMillis();
+    }
+
+    private JsonNode parse(String body) {
+        try {
+            return objectMapper.readTree(body == null || body.isBlank() ? "{}" : body);
+        } catch (IOException e) {
+            throw new PaymentGatewayException("Unreadable response from M-Pesa", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String base64(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record AccessToken(String value, long expiresAt) {}
+}
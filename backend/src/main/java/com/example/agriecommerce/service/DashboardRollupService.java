@@ -0,0 +1,273 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Daily and monthly rollups behind the admin dashboard (table
+ * {@code dashboard_rollups}, see schema.sql). Each row counts one metric over a
+ * period: orders per status with their revenue, new users, and new products.
+ * <p>
+ * Writers report their changes here; the deltas are collected per transaction
+ * and upserted just before it commits, in key order. The rollup rows are
+ * therefore locked only for the tail of the transaction, concurrent writers
+ * always lock them in the same order, and a rolled-back write leaves no trace.
+ */
+@Slf4j
+@Service
+public class DashboardRollupService implements OrderStatusListener {
+    public static final String USERS = "users";
+    public static final String PRODUCTS = "products";
+    private static final String ORDERS_PREFIX = "orders:";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO dashboard_rollups (grain, period_start, metric, item_count, amount) VALUES (?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (grain, period_start, metric) DO UPDATE SET " +
+                    "item_count = dashboard_rollups.item_count + EXCLUDED.item_count, " +
+                    "amount = dashboard_rollups.amount + EXCLUDED.amount";
+
+    // %1$s and %2$s are the business-day expressions for order_date and created_at
+    private static final String REBUILD_SQL =
+            "INSERT INTO dashboard_rollups (grain, period_start, metric, item_count, amount) " +
+                    "SELECT g.grain, CASE WHEN g.grain = 'D' THEN s.day ELSE CAST(date_trunc('month', s.day) AS date) END, " +
+                    "s.metric, SUM(s.item_count), SUM(s.amount) FROM (" +
+                    " SELECT CAST(%1$s AS date) AS day, 'orders:' || status AS metric, COUNT(*) AS item_count, SUM(total) AS amount" +
+                    " FROM orders WHERE order_date IS NOT NULL GROUP BY 1, 2" +
+                    " UNION ALL SELECT CAST(%1$s AS date), 'orders:' || status, COUNT(*), SUM(total)" +
+                    " FROM order_archive GROUP BY 1, 2" +
+                    " UNION ALL SELECT CAST(%2$s AS date), 'users', COUNT(*), 0" +
+                    " FROM users WHERE created_at IS NOT NULL GROUP BY 1" +
+                    " UNION ALL SELECT CAST(%2$s AS date), 'products', COUNT(*), 0" +
+                    " FROM products WHERE created_at IS NOT NULL GROUP BY 1" +
+                    ") s CROSS JOIN (VALUES ('D'), ('M')) AS g(grain) GROUP BY 1, 2, 3";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BusinessClock businessClock;
+    private final TransactionTemplate transactionTemplate;
+
+    public DashboardRollupService(JdbcTemplate jdbcTemplate, BusinessClock businessClock,
+                                  PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.businessClock = businessClock;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public record Totals(long count, BigDecimal amount) {
+        static final Totals ZERO = new Totals(0, BigDecimal.ZERO);
+    }
+
+    // ---- writes ------------------------------------------------------------------
+
+    @Override
+    public void orderStatusChanged(Order order, OrderStatus from, OrderStatus to) {
+        orderStatusChanged(order.getOrderDate(), order.getTotal(), from, to);
+    }
+
+    public void orderStatusChanged(java.util.Date orderDate, BigDecimal total, OrderStatus from, OrderStatus to) {
+        LocalDate day = toDay(orderDate);
+        BigDecimal amount = total != null ? total : BigDecimal.ZERO;
+        if (from != null) {
+            add(day, ORDERS_PREFIX + from.name(), -1, amount.negate());
+        }
+        add(day, ORDERS_PREFIX + to.name(), 1, amount);
+    }
+
+    public void orderTotalChanged(java.util.Date orderDate, OrderStatus status, BigDecimal delta) {
+        if (delta.signum() != 0) {
+            add(toDay(orderDate), ORDERS_PREFIX + status.name(), 0, delta);
+        }
+    }
+
+    /** For set-based transitions that changed rows without loading them. */
+    @Override
+    public void ordersTransitioned(Collection<String> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query("SELECT order_date, total FROM orders WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", orderIds.toArray())),
+                rs -> {
+                    orderStatusChanged(rs.getTimestamp(1), rs.getBigDecimal(2), from, to);
+                });
+    }
+
+    public void userCreated(java.util.Date createdAt) {
+        add(toDay(createdAt), USERS, 1, BigDecimal.ZERO);
+    }
+
+    public void productCreated(java.util.Date createdAt) {
+        add(toDay(createdAt), PRODUCTS, 1, BigDecimal.ZERO);
+    }
+
+    public void productDeleted(java.util.Date createdAt) {
+        add(toDay(createdAt), PRODUCTS, -1, BigDecimal.ZERO);
+    }
+
+    // ---- reads -------------------------------------------------------------------
+
+    /** All-time totals per metric, from the monthly rows. */
+    public Map<String, Totals> allTime() {
+        return query("SELECT metric, SUM(item_count), SUM(amount) FROM dashboard_rollups WHERE grain = 'M' GROUP BY metric");
+    }
+
+    /**
+     * Totals per metric for days in [from, toExclusive): whole months come from the
+     * monthly rows and only the partial months at either end from daily rows.
+     */
+    public Map<String, Totals> between(LocalDate from, LocalDate toExclusive) {
+        if (!from.isBefore(toExclusive)) {
+            return Map.of();
+        }
+        LocalDate firstWholeMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate endOfWholeMonths = toExclusive.withDayOfMonth(1);
+        if (!firstWholeMonth.isBefore(endOfWholeMonths)) {
+            return query("SELECT metric, SUM(item_count), SUM(amount) FROM dashboard_rollups " +
+                    "WHERE grain = 'D' AND period_start >= ? AND period_start < ? GROUP BY metric",
+                    Date.valueOf(from), Date.valueOf(toExclusive));
+        }
+        return query("SELECT metric, SUM(item_count), SUM(amount) FROM dashboard_rollups WHERE " +
+                        "(grain = 'M' AND period_start >= ? AND period_start < ?) OR " +
+                        "(grain = 'D' AND ((period_start >= ? AND period_start < ?) OR (period_start >= ? AND period_start < ?))) " +
+                        "GROUP BY metric",
+                Date.valueOf(firstWholeMonth), Date.valueOf(endOfWholeMonths),
+                Date.valueOf(from), Date.valueOf(firstWholeMonth),
+                Date.valueOf(endOfWholeMonths), Date.valueOf(toExclusive));
+    }
+
+    public static Totals get(Map<String, Totals> totals, String metric) {
+        return totals.getOrDefault(metric, Totals.ZERO);
+    }
+
+    public static Totals orders(Map<String, Totals> totals, OrderStatus status) {
+        return get(totals, ORDERS_PREFIX + status.name());
+    }
+
+    /** Orders in any status. */
+    public static Totals orders(Map<String, Totals> totals) {
+        long count = 0;
+        BigDecimal amount = BigDecimal.ZERO;
+        for (Map.Entry<String, Totals> entry : totals.entrySet()) {
+            if (entry.getKey().startsWith(ORDERS_PREFIX)) {
+                count += entry.getValue().count();
+                amount = amount.add(entry.getValue().amount());
+            }
+        }
+        return new Totals(count, amount);
+    }
+
+    // ---- backfill ----------------------------------------------------------------
+
+    /**
+     * Recomputes every rollup row from orders, the order archive, users and
+     * products. Writers block on the table lock until this commits, so none of
+     * their changes are counted twice or lost.
+     */
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("LOCK TABLE dashboard_rollups IN EXCLUSIVE MODE");
+            jdbcTemplate.update("DELETE FROM dashboard_rollups");
+            return jdbcTemplate.update(String.format(REBUILD_SQL,
+                    businessClock.localTime("order_date"), businessClock.localTime("created_at")));
+        });
+        log.info("Rebuilt {} dashboard rollup rows in {} ms", rows, System.currentTimeMillis() - started);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM dashboard_rollups)", Boolean.class);
+        if (Boolean.TRUE.equals(empty)) {
+            rebuild();
+        }
+    }
+
+    // ---- internals ---------------------------------------------------------------
+
+    private void add(LocalDate day, String metric, long count, BigDecimal amount) {
+        Map<Key, Totals> pending = new TreeMap<>();
+        Map<Key, Totals> target = TransactionSynchronizationManager.isSynchronizationActive() ? pendingForTransaction() : pending;
+        merge(target, new Key('D', day, metric), count, amount);
+        merge(target, new Key('M', day.withDayOfMonth(1), metric), count, amount);
+        if (target == pending) {
+            write(pending);
+        }
+    }
+
+    // Synchronizations are suspended along with their transaction, so a
+    // REQUIRES_NEW inner transaction gets its own set of deltas.
+    private Map<Key, Totals> pendingForTransaction() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingRollups pending) {
+                return pending.deltas;
+            }
+        }
+        PendingRollups pending = new PendingRollups();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending.deltas;
+    }
+
+    private static void merge(Map<Key, Totals> deltas, Key key, long count, BigDecimal amount) {
+        deltas.merge(key, new Totals(count, amount),
+                (a, b) -> new Totals(a.count() + b.count(), a.amount().add(b.amount())));
+    }
+
+    private void write(Map<Key, Totals> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, totals) -> {
+            if (totals.count() != 0 || totals.amount().signum() != 0) {
+                rows.add(new Object[]{String.valueOf(key.grain()), Date.valueOf(key.period()), key.metric(),
+                        totals.count(), totals.amount()});
+            }
+        });
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    private Map<String, Totals> query(String sql, Object... args) {
+        Map<String, Totals> totals = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            BigDecimal amount = rs.getBigDecimal(3);
+            totals.put(rs.getString(1), new Totals(rs.getLong(2), amount != null ? amount : BigDecimal.ZERO));
+        }, args);
+        return totals;
+    }
+
+    private LocalDate toDay(java.util.Date date) {
+        return businessClock.toLocalDate(date != null ? date : new java.util.Date());
+    }
+
+    private record Key(char grain, LocalDate period, String metric) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::grain)
+                .thenComparing(Key::period)
+                .thenComparing(Key::metric);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final class PendingRollups implements TransactionSynchronization {
+        private final Map<Key, Totals> deltas = new TreeMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write(deltas);
+        }
+    }
+}
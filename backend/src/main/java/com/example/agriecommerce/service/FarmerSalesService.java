@@ -0,0 +1,281 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.FarmerAnalyticsResponse;
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderItem;
+import com.example.agriecommerce.model.OrderStatus;
+import com.example.agriecommerce.model.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Sales per farmer, product and business day in {@code farmer_product_daily},
+ * so a farmer's analytics never join order items across all history. Items are
+ * added as checkout persists them and subtracted when their order is cancelled
+ * or returned. Like {@link DashboardRollupService}, deltas are collected per
+ * transaction and upserted in key order just before it commits.
+ */
+@Slf4j
+@Service
+public class FarmerSalesService implements OrderStatusListener {
+    private static final Set<OrderStatus> REVERSING_STATUSES = EnumSet.of(OrderStatus.CANCELLED, OrderStatus.RETURNED);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO farmer_product_daily (farmer_id, day, product_id, revenue, units, order_count) VALUES (?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (farmer_id, day, product_id) DO UPDATE SET " +
+                    "revenue = farmer_product_daily.revenue + EXCLUDED.revenue, " +
+                    "units = farmer_product_daily.units + EXCLUDED.units, " +
+                    "order_count = farmer_product_daily.order_count + EXCLUDED.order_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BusinessClock businessClock;
+    private final OrderArchiveService orderArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxRangeDays;
+    private final int fetchSize;
+
+    public FarmerSalesService(JdbcTemplate jdbcTemplate,
+                              BusinessClock businessClock,
+                              OrderArchiveService orderArchiveService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.farmer.analytics.max-range-days:400}") int maxRangeDays,
+                              @Value("${app.farmer.analytics.backfill-fetch-size:2000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.businessClock = businessClock;
+        this.orderArchiveService = orderArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxRangeDays = maxRangeDays;
+        this.fetchSize = fetchSize;
+    }
+
+    private record Key(long farmerId, LocalDate day, long productId) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparingLong(Key::farmerId)
+                .thenComparing(Key::day)
+                .thenComparingLong(Key::productId);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private record Sales(BigDecimal revenue, long units, long orders) {
+        Sales plus(Sales other) {
+            return new Sales(revenue.add(other.revenue), units + other.units, orders + other.orders);
+        }
+    }
+
+    // ---- writes ------------------------------------------------------------------
+
+    public void itemsSold(Order order, Collection<OrderItem> items) {
+        LocalDate day = businessClock.toLocalDate(order.getOrderDate());
+        for (OrderItem item : items) {
+            Product product = item.getProduct();
+            if (product.getFarmer() != null) {
+                add(new Key(product.getFarmer().getId(), day, product.getId()),
+                        new Sales(item.getTotalPrice(), item.getQuantity(), 1));
+            }
+        }
+    }
+
+    /** Subtracts the orders' items if {@code to} cancels or returns them. */
+    @Override
+    public void ordersTransitioned(Collection<String> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty() || !REVERSING_STATUSES.contains(to)) {
+            return;
+        }
+        jdbcTemplate.query("SELECT p.farmer_id, o.order_date, p.id, oi.total_price, oi.quantity " +
+                        "FROM order_items oi JOIN orders o ON o.id = oi.order_id JOIN products p ON p.id = oi.product_id " +
+                        "WHERE o.id = ANY(?) AND p.farmer_id IS NOT NULL",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", orderIds.toArray())),
+                rs -> {
+                    add(new Key(rs.getLong(1), businessClock.toLocalDate(rs.getTimestamp(2)), rs.getLong(3)),
+                            new Sales(rs.getBigDecimal(4).negate(), -rs.getLong(5), -1));
+                });
+    }
+
+    // ---- reads -------------------------------------------------------------------
+
+    /** Sales for the farmer's products over business days {@code from} to {@code to}, both inclusive. */
+    public FarmerAnalyticsResponse getAnalytics(Long farmerId, LocalDate from, LocalDate to, int top) {
+        LocalDate end = to != null ? to : businessClock.today();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (end.isBefore(start)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        if (start.plusDays(maxRangeDays).isBefore(end)) {
+            throw new BadRequestException("Range must not exceed " + maxRangeDays + " days");
+        }
+
+        List<FarmerAnalyticsResponse.DailySales> daily = new ArrayList<>();
+        Map<Long, Sales> byProduct = new HashMap<>();
+        jdbcTemplate.query("SELECT day, product_id, revenue, units, order_count FROM farmer_product_daily " +
+                        "WHERE farmer_id = ? AND day BETWEEN ? AND ? ORDER BY day, product_id",
+                (RowCallbackHandler) rs -> {
+                    Sales sales = new Sales(rs.getBigDecimal(3), rs.getLong(4), rs.getLong(5));
+                    if (sales.units() == 0 && sales.orders() == 0) {
+                        return;
+                    }
+                    daily.add(FarmerAnalyticsResponse.DailySales.builder()
+                            .day(rs.getDate(1).toLocalDate())
+                            .productId(rs.getLong(2))
+                            .revenue(sales.revenue())
+                            .units(sales.units())
+                            .orders(sales.orders())
+                            .build());
+                    byProduct.merge(rs.getLong(2), sales, Sales::plus);
+                },
+                farmerId, Date.valueOf(start), Date.valueOf(end));
+
+        // Current listings, including products that sold nothing in the range
+        Map<Long, String> names = new HashMap<>();
+        Map<Long, Integer> stock = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, name, stock FROM products WHERE farmer_id = ? ORDER BY id",
+                (RowCallbackHandler) rs -> {
+                    names.put(rs.getLong(1), rs.getString(2));
+                    stock.put(rs.getLong(1), rs.getInt(3));
+                },
+                farmerId);
+
+        BigDecimal revenue = BigDecimal.ZERO;
+        long units = 0;
+        for (Sales sales : byProduct.values()) {
+            revenue = revenue.add(sales.revenue());
+            units += sales.units();
+        }
+
+        List<FarmerAnalyticsResponse.ProductSales> topProducts = byProduct.entrySet().stream()
+                .sorted(Map.Entry.<Long, Sales>comparingByValue(Comparator.comparing(Sales::revenue)).reversed())
+                .limit(Math.max(1, top))
+                .map(entry -> FarmerAnalyticsResponse.ProductSales.builder()
+                        .productId(entry.getKey())
+                        .productName(names.get(entry.getKey()))
+                        .revenue(entry.getValue().revenue())
+                        .units(entry.getValue().units())
+                        .orders(entry.getValue().orders())
+                        .build())
+                .toList();
+
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        List<FarmerAnalyticsResponse.StockTurnover> turnover = new ArrayList<>(stock.size());
+        stock.forEach((productId, onHand) -> {
+            long sold = byProduct.containsKey(productId) ? Math.max(0, byProduct.get(productId).units()) : 0;
+            int available = Math.max(0, onHand);
+            turnover.add(FarmerAnalyticsResponse.StockTurnover.builder()
+                    .productId(productId)
+                    .productName(names.get(productId))
+                    .unitsSold(sold)
+                    .currentStock(onHand)
+                    .sellThrough(sold + available > 0 ? (double) sold / (sold + available) : 0)
+                    .daysOfCover(sold > 0 ? BigDecimal.valueOf(available * (double) days / sold)
+                            .setScale(1, RoundingMode.HALF_UP).doubleValue() : null)
+                    .build());
+        });
+
+        return FarmerAnalyticsResponse.builder()
+                .from(start)
+                .to(end)
+                .revenue(revenue)
+                .units(units)
+                .topProducts(topProducts)
+                .daily(daily)
+                .stockTurnover(turnover)
+                .build();
+    }
+
+    // ---- backfill ----------------------------------------------------------------
+
+    /**
+     * Recomputes every row from live order items and the order archive. Products
+     * that have since been deleted no longer have a farmer and are skipped.
+     */
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE farmer_product_daily IN EXCLUSIVE MODE");
+            jdbcTemplate.update("DELETE FROM farmer_product_daily");
+            jdbcTemplate.update("INSERT INTO farmer_product_daily (farmer_id, day, product_id, revenue, units, order_count) " +
+                    "SELECT p.farmer_id, CAST(" + businessClock.localTime("o.order_date") + " AS date), p.id, " +
+                    "SUM(oi.total_price), SUM(oi.quantity), COUNT(DISTINCT o.id) " +
+                    "FROM order_items oi JOIN orders o ON o.id = oi.order_id JOIN products p ON p.id = oi.product_id " +
+                    "WHERE p.farmer_id IS NOT NULL AND o.status NOT IN ('CANCELLED', 'RETURNED') GROUP BY 1, 2, 3");
+
+            // Archived orders only keep their items in the payload
+            Map<Long, Long> farmers = new HashMap<>();
+            jdbcTemplate.query("SELECT id, farmer_id FROM products WHERE farmer_id IS NOT NULL",
+                    (RowCallbackHandler) rs -> farmers.put(rs.getLong(1), rs.getLong(2)));
+            Map<Key, Sales> archived = new TreeMap<>();
+            orderArchiveService.forEachOrder(new java.util.Date(0), java.util.Date.from(Instant.now().plus(1, ChronoUnit.DAYS)),
+                    fetchSize, order -> {
+                        if (REVERSING_STATUSES.contains(order.getStatus()) || order.getItems() == null) {
+                            return;
+                        }
+                        LocalDate day = businessClock.toLocalDate(order.getOrderDate());
+                        for (var item : order.getItems()) {
+                            Long farmerId = farmers.get(item.getProductId());
+                            if (farmerId != null) {
+                                archived.merge(new Key(farmerId, day, item.getProductId()),
+                                        new Sales(item.getTotalPrice(), item.getQuantity(), 1), Sales::plus);
+                            }
+                        }
+                    });
+            write(archived);
+        });
+        log.info("Rebuilt farmer sales aggregates in {} ms", System.currentTimeMillis() - started);
+    }
+
+    // ---- internals ---------------------------------------------------------------
+
+    private void add(Key key, Sales sales) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingForTransaction().merge(key, sales, Sales::plus);
+        } else {
+            write(new TreeMap<>(Map.of(key, sales)));
+        }
+    }
+
+    private Map<Key, Sales> pendingForTransaction() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingSales pending) {
+                return pending.deltas;
+            }
+        }
+        PendingSales pending = new PendingSales();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending.deltas;
+    }
+
+    private void write(Map<Key, Sales> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, sales) -> rows.add(new Object[]{key.farmerId(), Date.valueOf(key.day()), key.productId(),
+                sales.revenue(), sales.units(), sales.orders()}));
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    private final class PendingSales implements TransactionSynchronization {
+        private final Map<Key, Sales> deltas = new TreeMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write(deltas);
+        }
+    }
+}
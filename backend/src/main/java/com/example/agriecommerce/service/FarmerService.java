@@ -10,6 +10,7 @@ import com.example.agriecommerce.repository.ProductRepository;
 import com.example.agriecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,7 +20,11 @@ import java.util.stream.Collectors;
 public class FarmerService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final DashboardRollupService dashboardRollupService;
+    private final BusinessCounters businessCounters;
+    private final StockAlertService stockAlertService;
 
+    @Transactional
     public ProductResponse submitProduct(Long userId, FarmerProductRequest request) {
         User farmer = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
@@ -32,6 +37,8 @@ public class FarmerService {
         product.setCategory(request.getCategory());
         product.setSubcategory(request.getSubcategory());
         product.setStock(request.getStock());
+        product.setReorderThreshold(request.getReorderThreshold() != null
+                ? request.getReorderThreshold() : stockAlertService.defaultThreshold(request.getUnitType()));
         product.setOrigin(request.getOrigin());
         product.setNutritionalInfo(request.getNutritionalInfo());
         product.setOrganic(request.isOrganic());
@@ -40,6 +47,8 @@ public class FarmerService {
         product.setStatus(ProductStatus.PENDING); // Set status to pending
 
         Product savedProduct = productRepository.save(product);
+        dashboardRollupService.productCreated(savedProduct.getCreatedAt());
+        businessCounters.productChanged(null, BusinessCounters.ProductState.of(savedProduct));
         return mapToProductResponse(savedProduct);
     }
 
@@ -57,6 +66,7 @@ public class FarmerService {
         if (product.getStatus() != ProductStatus.PENDING) {
             throw new IllegalStateException("Only pending products can be updated");
         }
+        BusinessCounters.ProductState before = BusinessCounters.ProductState.of(product);
 
         product.setName(request.getName());
         product.setDescription(request.getDescription());
@@ -65,15 +75,20 @@ public class FarmerService {
         product.setCategory(request.getCategory());
         product.setSubcategory(request.getSubcategory());
         product.setStock(request.getStock());
+        if (request.getReorderThreshold() != null) {
+            product.setReorderThreshold(request.getReorderThreshold());
+        }
         product.setOrigin(request.getOrigin());
         product.setNutritionalInfo(request.getNutritionalInfo());
         product.setOrganic(request.isOrganic());
         product.setUnitType(request.getUnitType());
 
         Product updatedProduct = productRepository.save(product);
+        businessCounters.productChanged(before, BusinessCounters.ProductState.of(updatedProduct));
         return mapToProductResponse(updatedProduct);
     }
 
+    @Transactional
     public void deleteProduct(Long userId, Long productId) {
         Product product = productRepository.findByIdAndFarmerId(productId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
@@ -84,6 +99,8 @@ public class FarmerService {
         }
 
         productRepository.delete(product);
+        dashboardRollupService.productDeleted(product.getCreatedAt());
+        businessCounters.productChanged(BusinessCounters.ProductState.of(product), null);
     }
 
     private ProductResponse mapToProductResponse(Product product) {
@@ -96,6 +113,7 @@ public class FarmerService {
                 .category(product.getCategory())
                 .subcategory(product.getSubcategory())
                 .stock(product.getStock())
+                .reorderThreshold(product.getReorderThreshold())
                 .origin(product.getOrigin())
                 .nutritionalInfo(product.getNutritionalInfo())
                 .isOrganic(product.getOrganic())
@@ -0,0 +1,271 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.BadRequestException;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Whitelisted filters and sorts for an admin data grid. Every accepted query maps
+ * to one of the grid's composite indexes: the equality filters must be exactly the
+ * index's leading columns, and the date range and sort must both be on its
+ * trailing column. Anything else is rejected up front, so the database only ever
+ * sees index range scans returned in index order.
+ */
+public final class GridDefinition<T> {
+    private static final Set<String> PAGING_PARAMS = Set.of("page", "size", "sort");
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private final String name;
+    private final Map<String, EqualityField> equalityFields;
+    private final Map<String, RangeField> rangeFields;
+    private final List<IndexShape> indexes;
+    private final String defaultSort;
+    private final List<String> fetches;
+
+    private GridDefinition(Builder<T> builder) {
+        this.name = builder.name;
+        this.equalityFields = Map.copyOf(builder.equalityFields);
+        this.rangeFields = Map.copyOf(builder.rangeFields);
+        this.indexes = List.copyOf(builder.indexes);
+        this.defaultSort = builder.defaultSort;
+        this.fetches = List.copyOf(builder.fetches);
+    }
+
+    public static <T> Builder<T> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    /**
+     * Validates the request parameters against the whitelist and returns the
+     * specification and page to run. Paging parameters are taken from
+     * {@code pageable}; every other parameter must be a known filter. A bare date
+     * in a range filter is a whole day in {@code zone}.
+     */
+    public Query<T> parse(Map<String, String> params, Pageable pageable, ZoneId zone) {
+        Map<EqualityField, Object> equalities = new LinkedHashMap<>();
+        RangeField rangeField = null;
+        Date from = null;
+        Date to = null;
+
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            String key = param.getKey();
+            String value = param.getValue() != null ? param.getValue().trim() : "";
+            if (PAGING_PARAMS.contains(key) || value.isEmpty()) {
+                continue;
+            }
+            EqualityField equality = equalityFields.get(key);
+            if (equality != null) {
+                equalities.put(equality, equality.parse(value));
+                continue;
+            }
+            RangeField range = rangeFieldFor(key);
+            if (range == null) {
+                throw new BadRequestException("Unknown filter '" + key + "' for the " + name + " grid; allowed: "
+                        + allowedParams());
+            }
+            if (rangeField != null && rangeField != range) {
+                throw new BadRequestException("Only one date range can be filtered at a time");
+            }
+            rangeField = range;
+            if (key.endsWith("From")) {
+                from = parseDate(key, value, false, zone);
+            } else {
+                to = parseDate(key, value, true, zone);
+            }
+        }
+
+        Sort.Order order = resolveSort(pageable.getSort());
+        RangeField sortField = rangeFields.get(order.getProperty());
+        if (rangeField != null && rangeField != sortField) {
+            throw new BadRequestException("A " + rangeField.param + " range must be sorted by " + rangeField.param);
+        }
+
+        Set<String> equalityColumns = equalities.keySet().stream()
+                .map(field -> field.column)
+                .collect(Collectors.toSet());
+        IndexShape index = indexes.stream()
+                .filter(shape -> shape.orderColumn.equals(sortField.column) && shape.equalityColumns.equals(equalityColumns))
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException("Filtering the " + name + " grid by "
+                        + equalities.keySet().stream().map(field -> field.param).sorted().collect(Collectors.toList())
+                        + " sorted by " + sortField.param + " is not supported; supported combinations: "
+                        + supportedCombinations()));
+
+        int size = Math.min(pageable.isPaged() ? pageable.getPageSize() : MAX_PAGE_SIZE, MAX_PAGE_SIZE);
+        int page = pageable.isPaged() ? pageable.getPageNumber() : 0;
+        Pageable resolved = PageRequest.of(page, size, Sort.by(order.getDirection(), sortField.path));
+
+        return new Query<>(specification(equalities, sortField, from, to), resolved, index.name);
+    }
+
+    private Specification<T> specification(Map<EqualityField, Object> equalities, RangeField range, Date from, Date to) {
+        return (root, query, cb) -> {
+            // Count queries cannot carry fetch joins
+            if (!fetches.isEmpty() && query.getResultType() != Long.class && query.getResultType() != long.class) {
+                fetches.forEach(association -> root.fetch(association, JoinType.LEFT));
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            equalities.forEach((field, value) -> predicates.add(cb.equal(path(root, field.path), value)));
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(GridDefinition.<Date>path(root, range.path), from));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThan(GridDefinition.<Date>path(root, range.path), to));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private Sort.Order resolveSort(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        if (orders.isEmpty()) {
+            return Sort.Order.desc(defaultSort);
+        }
+        if (orders.size() > 1) {
+            throw new BadRequestException("The " + name + " grid can only be sorted by one column");
+        }
+        Sort.Order order = orders.get(0);
+        if (!rangeFields.containsKey(order.getProperty())) {
+            throw new BadRequestException("The " + name + " grid cannot be sorted by '" + order.getProperty()
+                    + "'; sortable: " + new TreeSet<>(rangeFields.keySet()));
+        }
+        return order;
+    }
+
+    private RangeField rangeFieldFor(String key) {
+        if (key.endsWith("From")) {
+            return rangeFields.get(key.substring(0, key.length() - 4));
+        }
+        if (key.endsWith("To")) {
+            return rangeFields.get(key.substring(0, key.length() - 2));
+        }
+        return null;
+    }
+
+    // Dates without a time cover the whole day, so "to" moves to the next midnight.
+    private static Date parseDate(String key, String value, boolean upperBound, ZoneId zone) {
+        try {
+            if (value.length() == 10) {
+                LocalDate date = LocalDate.parse(value);
+                return Date.from((upperBound ? date.plusDays(1) : date).atStartOfDay(zone).toInstant());
+            }
+            return Date.from(OffsetDateTime.parse(value).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid date for '" + key + "': " + value);
+        }
+    }
+
+    private static <Y> Path<Y> path(From<?, ?> root, String dottedPath) {
+        Path<Y> path = null;
+        for (String segment : dottedPath.split("\\.")) {
+            path = path == null ? root.get(segment) : path.get(segment);
+        }
+        return path;
+    }
+
+    private List<String> allowedParams() {
+        List<String> allowed = new ArrayList<>(new TreeSet<>(equalityFields.keySet()));
+        new TreeSet<>(rangeFields.keySet()).forEach(param -> {
+            allowed.add(param + "From");
+            allowed.add(param + "To");
+        });
+        return allowed;
+    }
+
+    private List<String> supportedCombinations() {
+        Map<String, String> paramByColumn = new HashMap<>();
+        equalityFields.values().forEach(field -> paramByColumn.put(field.column, field.param));
+        rangeFields.values().forEach(field -> paramByColumn.put(field.column, field.param));
+        return indexes.stream()
+                .map(shape -> shape.equalityColumns.stream().map(paramByColumn::get).sorted().collect(Collectors.toList())
+                        + " by " + paramByColumn.get(shape.orderColumn))
+                .collect(Collectors.toList());
+    }
+
+    public record Query<T>(Specification<T> specification, Pageable pageable, String index) {}
+
+    private record EqualityField(String param, String column, String path, Function<String, ?> parser) {
+        Object parse(String value) {
+            try {
+                return parser.apply(value);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid value for '" + param + "': " + value);
+            }
+        }
+    }
+
+    private record RangeField(String param, String column, String path) {}
+
+    private record IndexShape(String name, Set<String> equalityColumns, String orderColumn) {}
+
+    public static final class Builder<T> {
+        private final String name;
+        private final Map<String, EqualityField> equalityFields = new LinkedHashMap<>();
+        private final Map<String, RangeField> rangeFields = new LinkedHashMap<>();
+        private final List<IndexShape> indexes = new ArrayList<>();
+        private final List<String> fetches = new ArrayList<>();
+        private String defaultSort;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /** Exact-match filter on {@code path}, stored in {@code column}. */
+        public Builder<T> equality(String param, String column, String path, Function<String, ?> parser) {
+            equalityFields.put(param, new EqualityField(param, column, path, parser));
+            return this;
+        }
+
+        /** Date column usable as {@code <param>From}/{@code <param>To} and as the sort key. */
+        public Builder<T> range(String param, String column, String path) {
+            rangeFields.put(param, new RangeField(param, column, path));
+            if (defaultSort == null) {
+                defaultSort = param;
+            }
+            return this;
+        }
+
+        /**
+         * Registers a composite index declared on the entity: the equality columns
+         * in any order followed by the range/sort column.
+         */
+        public Builder<T> index(String indexName, String orderColumn, String... equalityColumns) {
+            indexes.add(new IndexShape(indexName, Set.of(equalityColumns), orderColumn));
+            return this;
+        }
+
+        public Builder<T> fetch(String association) {
+            fetches.add(association);
+            return this;
+        }
+
+        public GridDefinition<T> build() {
+            Set<String> columns = new HashSet<>();
+            equalityFields.values().forEach(field -> columns.add(field.column));
+            rangeFields.values().forEach(field -> columns.add(field.column));
+            for (IndexShape shape : indexes) {
+                if (!columns.containsAll(shape.equalityColumns) || !columns.contains(shape.orderColumn)) {
+                    throw new IllegalStateException("Index " + shape.name + " uses a column the " + name + " grid does not expose");
+                }
+            }
+            if (defaultSort == null) {
+                throw new IllegalStateException("The " + name + " grid needs at least one range column");
+            }
+            return new GridDefinition<>(this);
+        }
+    }
+}
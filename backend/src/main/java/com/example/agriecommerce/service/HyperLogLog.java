@@ -0,0 +1,113 @@
+package com.example.agriecommerce.service;
+
+/**
+ * HyperLogLog cardinality sketch with 2^12 registers: estimates have a relative
+ * standard error of about 1.6% ({@link #RELATIVE_STANDARD_ERROR}), and small
+ * counts fall back to linear counting, which is close to exact. Sketches merge
+ * losslessly, so the union of several days is as accurate as a single day.
+ * Adding the same value twice has no effect. Not thread-safe.
+ */
+public final class HyperLogLog {
+    public static final int PRECISION = 12;
+    public static final double RELATIVE_STANDARD_ERROR = 1.04 / Math.sqrt(1 << PRECISION);
+
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final byte FORMAT_SPARSE = 1;
+    private static final byte FORMAT_DENSE = 2;
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // Position of the first set bit in the remaining 52 bits, capped by a sentinel bit
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+        double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Serialised form: a format byte and the precision, then either the non-zero
+     * registers as (index, value) triples or all registers. Sketches of a few
+     * hundred buyers take well under a kilobyte; the dense form is 4 KB.
+     */
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * 3 < REGISTER_COUNT) {
+            byte[] bytes = new byte[2 + nonZero * 3];
+            bytes[0] = FORMAT_SPARSE;
+            bytes[1] = PRECISION;
+            int offset = 2;
+            for (int i = 0; i < REGISTER_COUNT; i++) {
+                if (registers[i] != 0) {
+                    bytes[offset++] = (byte) (i >>> 8);
+                    bytes[offset++] = (byte) i;
+                    bytes[offset++] = registers[i];
+                }
+            }
+            return bytes;
+        }
+        byte[] bytes = new byte[2 + REGISTER_COUNT];
+        bytes[0] = FORMAT_DENSE;
+        bytes[1] = PRECISION;
+        System.arraycopy(registers, 0, bytes, 2, REGISTER_COUNT);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length < 2 || bytes[1] != PRECISION) {
+            throw new IllegalArgumentException("Not a precision-" + PRECISION + " sketch");
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes[0] == FORMAT_DENSE && bytes.length == 2 + REGISTER_COUNT) {
+            System.arraycopy(bytes, 2, sketch.registers, 0, REGISTER_COUNT);
+        } else if (bytes[0] == FORMAT_SPARSE && (bytes.length - 2) % 3 == 0) {
+            for (int offset = 2; offset < bytes.length; offset += 3) {
+                int index = ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+                sketch.registers[index] = bytes[offset + 2];
+            }
+        } else {
+            throw new IllegalArgumentException("Corrupt sketch of " + bytes.length + " bytes");
+        }
+        return sketch;
+    }
+
+    // SplitMix64 finalizer: sequential ids must land in unrelated registers
+    private static long mix(long value) {
+        long hash = value + 0x9e3779b97f4a7c15L;
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
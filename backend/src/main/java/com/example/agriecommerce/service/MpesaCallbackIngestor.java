@@ -0,0 +1,430 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.CallbackIngestionStatsResponse;
+import com.example.agriecommerce.model.MpesaCallback;
+import com.example.agriecommerce.repository.MpesaCallbackRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Ingests M-Pesa STK callbacks. The HTTP thread only parses the body, drops ids
+ * it has recently seen and enqueues the callback, so the provider is acknowledged
+ * straight away. A single drainer persists whatever has queued up into the
+ * {@code mpesa_callbacks} inbox (whose unique key is the durable dedupe) and
+ * applies the new results to payments and orders in one transaction per batch.
+ * Callbacks that arrive before their payment is recorded are retried by a sweeper.
+ * <p>
+ * The endpoint is public, so HTTP callbacks must carry the shared token that is
+ * appended to the callback URL handed to Daraja and/or come from an allowlisted
+ * address. With neither configured every HTTP callback is refused.
+ */
+@Slf4j
+@Component
+public class MpesaCallbackIngestor {
+    private static final String INSERT_SQL =
+            "INSERT INTO mpesa_callbacks (checkout_request_id, merchant_request_id, result_code, result_desc, amount, " +
+                    "receipt_number, phone_number, payload, received_at, attempts) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0) " +
+                    "ON CONFLICT (checkout_request_id) DO NOTHING";
+    private static final String MARK_SQL =
+            "UPDATE mpesa_callbacks SET attempts = attempts + 1, " +
+                    "applied_at = CASE WHEN checkout_request_id = ANY(?) THEN now() ELSE applied_at END " +
+                    "WHERE checkout_request_id = ANY(?)";
+
+    public enum Result { ACCEPTED, DUPLICATE, REJECTED, INVALID, UNAUTHORIZED }
+
+    private final PaymentService paymentService;
+    private final MpesaCallbackRepository callbackRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final RecentIds recentIds;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long sweepGraceMs;
+    private final int sweepMaxAttempts;
+    private final byte[] callbackToken;
+    private final Set<String> allowedIps;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder unauthorized = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private Thread drainer;
+    private volatile boolean running = true;
+
+    public MpesaCallbackIngestor(PaymentService paymentService,
+                                 MpesaCallbackRepository callbackRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.payments.callbacks.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.payments.callbacks.batch-size:200}") int batchSize,
+                                 @Value("${app.payments.callbacks.max-attempts:3}") int maxAttempts,
+                                 @Value("${app.payments.callbacks.dedupe-cache-size:100000}") int dedupeCacheSize,
+                                 @Value("${app.payments.callbacks.sweep-grace-ms:10000}") long sweepGraceMs,
+                                 @Value("${app.payments.callbacks.sweep-max-attempts:20}") int sweepMaxAttempts,
+                                 @Value("${app.payments.callbacks.token:}") String callbackToken,
+                                 @Value("${app.payments.callbacks.allowed-ips:}") List<String> allowedIps) {
+        this.paymentService = paymentService;
+        this.callbackRepository = callbackRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.recentIds = new RecentIds(dedupeCacheSize);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.sweepGraceMs = sweepGraceMs;
+        this.sweepMaxAttempts = sweepMaxAttempts;
+        this.callbackToken = callbackToken.isBlank() ? null : callbackToken.getBytes(StandardCharsets.UTF_8);
+        this.allowedIps = allowedIps.stream().map(String::trim).filter(ip -> !ip.isEmpty()).collect(Collectors.toSet());
+    }
+
+    @PostConstruct
+    public void start() {
+        drainer = new Thread(this::drainLoop, "mpesa-callback-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        if (callbackToken == null && allowedIps.isEmpty()) {
+            log.warn("Neither app.payments.callbacks.token nor app.payments.callbacks.allowed-ips is set; " +
+                    "HTTP M-Pesa callbacks will be refused");
+        }
+    }
+
+    /**
+     * Accepts a callback body exactly as the provider posted it, after checking
+     * the token from the callback URL and the caller's address.
+     */
+    public Result accept(JsonNode payload, String token, String remoteAddr) {
+        if (!isAuthorized(token, remoteAddr)) {
+            unauthorized.increment();
+            log.warn("Refused M-Pesa callback from {}", remoteAddr);
+            return Result.UNAUTHORIZED;
+        }
+        PaymentGateway.StkCallback callback = parse(payload);
+        if (callback == null) {
+            invalid.increment();
+            return Result.INVALID;
+        }
+        return accept(callback, payload.toString());
+    }
+
+    private boolean isAuthorized(String token, String remoteAddr) {
+        if (callbackToken == null && allowedIps.isEmpty()) {
+            return false;
+        }
+        if (callbackToken != null && (token == null
+                || !MessageDigest.isEqual(callbackToken, token.getBytes(StandardCharsets.UTF_8)))) {
+            return false;
+        }
+        return allowedIps.isEmpty() || allowedIps.contains(remoteAddr);
+    }
+
+    // Results published by the local stub gateway take the same path as real ones
+    @EventListener
+    public void onGatewayCallback(PaymentGateway.StkCallback callback) {
+        accept(callback, toPayload(callback).toString());
+    }
+
+    public Result accept(PaymentGateway.StkCallback callback, String payload) {
+        received.increment();
+        if (!recentIds.add(callback.checkoutRequestId())) {
+            duplicates.increment();
+            return Result.DUPLICATE;
+        }
+        if (!queue.offer(new Pending(callback, payload, new Date(), 1))) {
+            // Not acknowledged, so the provider will deliver it again
+            recentIds.remove(callback.checkoutRequestId());
+            rejected.increment();
+            return Result.REJECTED;
+        }
+        return Result.ACCEPTED;
+    }
+
+    /** Waits until everything accepted so far has been processed. */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!queue.isEmpty() || inFlight.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public CallbackIngestionStatsResponse getStats() {
+        return CallbackIngestionStatsResponse.builder()
+                .received(received.sum())
+                .duplicates(duplicates.sum())
+                .rejected(rejected.sum())
+                .invalid(invalid.sum())
+                .unauthorized(unauthorized.sum())
+                .stored(stored.sum())
+                .applied(applied.sum())
+                .batches(batches.sum())
+                .retried(retried.sum())
+                .dropped(dropped.sum())
+                .queueDepth(queue.size())
+                .build();
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                batch.add(first);
+                inFlight.addAndGet(queue.drainTo(batch, batchSize - 1));
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("M-Pesa callback drainer failed", e);
+            } finally {
+                inFlight.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<Pending> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                List<Pending> fresh = insertInbox(batch);
+                if (fresh.isEmpty()) {
+                    return;
+                }
+                Set<String> matched = paymentService.applyStkCallbacks(
+                        fresh.stream().map(Pending::callback).collect(Collectors.toList()));
+                mark(fresh.stream().map(pending -> pending.callback().checkoutRequestId()).collect(Collectors.toList()), matched);
+                stored.add(fresh.size());
+                applied.add(matched.size());
+            });
+            batches.increment();
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply {} M-Pesa callbacks: {}", batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                if (pending.attempt() < maxAttempts && queue.offer(pending.retry())) {
+                    retried.increment();
+                } else {
+                    recentIds.remove(pending.callback().checkoutRequestId());
+                    dropped.increment();
+                    log.error("Dropping M-Pesa callback {} after {} attempts: {}",
+                            pending.callback().checkoutRequestId(), pending.attempt(), pending.payload());
+                }
+            }
+        }
+    }
+
+    // Inserts the batch and returns only the callbacks not already in the inbox.
+    private List<Pending> insertInbox(List<Pending> batch) {
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Pending pending = batch.get(i);
+                PaymentGateway.StkCallback callback = pending.callback();
+                ps.setString(1, callback.checkoutRequestId());
+                ps.setString(2, callback.merchantRequestId());
+                ps.setInt(3, callback.resultCode());
+                ps.setString(4, truncate(callback.resultDesc(), 500));
+                ps.setBigDecimal(5, callback.amount());
+                ps.setString(6, callback.receiptNumber());
+                ps.setString(7, truncate(callback.phoneNumber(), 20));
+                ps.setString(8, pending.payload());
+                ps.setTimestamp(9, new Timestamp(pending.receivedAt().getTime()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        List<Pending> fresh = new ArrayList<>(batch.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                fresh.add(batch.get(i));
+            }
+        }
+        return fresh;
+    }
+
+    private void mark(Collection<String> checkoutRequestIds, Collection<String> matched) {
+        jdbcTemplate.update(MARK_SQL, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("varchar", matched.toArray()));
+            ps.setArray(2, ps.getConnection().createArrayOf("varchar", checkoutRequestIds.toArray()));
+        });
+    }
+
+    /**
+     * Retries inbox rows whose payment was not found yet, typically because the
+     * callback beat the STK push acknowledgement.
+     */
+    @Scheduled(fixedDelayString = "${app.payments.callbacks.sweep-interval-ms:30000}")
+    public void retryUnapplied() {
+        List<MpesaCallback> rows = callbackRepository.findUnapplied(
+                new Date(System.currentTimeMillis() - sweepGraceMs), sweepMaxAttempts, PageRequest.of(0, batchSize));
+        if (rows.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(tx -> {
+            Set<String> matched = paymentService.applyStkCallbacks(rows.stream()
+                    .map(row -> new PaymentGateway.StkCallback(row.getMerchantRequestId(), row.getCheckoutRequestId(),
+                            row.getResultCode(), row.getResultDesc(), row.getAmount(), row.getReceiptNumber(),
+                            row.getPhoneNumber()))
+                    .collect(Collectors.toList()));
+            mark(rows.stream().map(MpesaCallback::getCheckoutRequestId).collect(Collectors.toList()), matched);
+            applied.add(matched.size());
+        });
+    }
+
+    /** Extracts the callback from a Daraja STK result body; null when it is not one. */
+    static PaymentGateway.StkCallback parse(JsonNode payload) {
+        JsonNode callback = payload.path("Body").path("stkCallback");
+        String checkoutRequestId = callback.path("CheckoutRequestID").asText(null);
+        if (checkoutRequestId == null || checkoutRequestId.isBlank() || !callback.path("ResultCode").canConvertToInt()) {
+            return null;
+        }
+        BigDecimal amount = null;
+        String receiptNumber = null;
+        String phoneNumber = null;
+        for (JsonNode item : callback.path("CallbackMetadata").path("Item")) {
+            JsonNode value = item.path("Value");
+            switch (item.path("Name").asText()) {
+                case "Amount" -> amount = value.isNumber() ? value.decimalValue() : null;
+                case "MpesaReceiptNumber" -> receiptNumber = value.asText(null);
+                case "PhoneNumber" -> phoneNumber = value.asText(null);
+                default -> { }
+            }
+        }
+        return new PaymentGateway.StkCallback(
+                callback.path("MerchantRequestID").asText(null),
+                checkoutRequestId,
+                callback.path("ResultCode").asInt(),
+                callback.path("ResultDesc").asText(null),
+                amount,
+                receiptNumber,
+                phoneNumber);
+    }
+
+    /** Renders a callback in the provider's wire format. */
+    ObjectNode toPayload(PaymentGateway.StkCallback callback) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode body = root.putObject("Body").putObject("stkCallback");
+        body.put("MerchantRequestID", callback.merchantRequestId());
+        body.put("CheckoutRequestID", callback.checkoutRequestId());
+        body.put("ResultCode", callback.resultCode());
+        body.put("ResultDesc", callback.resultDesc());
+        if (callback.isSuccess()) {
+            ArrayNode items = body.putObject("CallbackMetadata").putArray("Item");
+            items.addObject().put("Name", "Amount").put("Value", callback.amount());
+            items.addObject().put("Name", "MpesaReceiptNumber").put("Value", callback.receiptNumber());
+            items.addObject().put("Name", "PhoneNumber").put("Value", callback.phoneNumber());
+        }
+        return root;
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (drainer != null) {
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+            drainer.interrupt();
+        }
+    }
+
+    private record Pending(PaymentGateway.StkCallback callback, String payload, Date receivedAt, int attempt) {
+        Pending retry() {
+            return new Pending(callback, payload, receivedAt, attempt + 1);
+        }
+    }
+
+    /**
+     * Bounded set of recently seen checkout request ids. Two generations are kept;
+     * when the current one fills up the older one is discarded wholesale, which is
+     * cheaper than per-entry LRU and good enough for catching provider retries.
+     */
+    private static final class RecentIds {
+        private final int generationSize;
+        private volatile Set<String> current = ConcurrentHashMap.newKeySet();
+        private volatile Set<String> previous = ConcurrentHashMap.newKeySet();
+
+        RecentIds(int capacity) {
+            this.generationSize = Math.max(1, capacity / 2);
+        }
+
+        boolean add(String id) {
+            if (previous.contains(id)) {
+                return false;
+            }
+            Set<String> generation = current;
+            if (!generation.add(id)) {
+                return false;
+            }
+            if (generation.size() >= generationSize) {
+                rotate(generation);
+            }
+            return true;
+        }
+
+        void remove(String id) {
+            current.remove(id);
+            previous.remove(id);
+        }
+
+        private synchronized void rotate(Set<String> full) {
+            if (current == full) {
+                previous = full;
+                current = ConcurrentHashMap.newKeySet();
+            }
+        }
+    }
+}
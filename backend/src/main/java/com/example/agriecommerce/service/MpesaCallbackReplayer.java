@@ -0,0 +1,124 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.request.CallbackReplayRequest;
+import com.example.agriecommerce.dto.response.CallbackReplayResponse;
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.repository.MpesaCallbackRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Replays recorded callback bodies through {@link MpesaCallbackIngestor} exactly
+ * as the HTTP endpoint would, and reports how long the ingestor took to absorb
+ * them. With fresh ids every delivery takes the full insert-and-apply path; the
+ * rows written that way are removed afterwards.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MpesaCallbackReplayer {
+    private static final String REPLAY_PREFIX = "REPLAY-";
+
+    private final MpesaCallbackIngestor ingestor;
+    private final MpesaCallbackRepository callbackRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public CallbackReplayResponse replay(CallbackReplayRequest request) throws InterruptedException {
+        List<JsonNode> payloads = request.getPayloads() != null && !request.getPayloads().isEmpty()
+                ? request.getPayloads()
+                : recordedPayloads(request.getRecordedLimit());
+        if (payloads.isEmpty()) {
+            throw new BadRequestException("No callback payloads given and none recorded yet");
+        }
+
+        String runPrefix = REPLAY_PREFIX + UUID.randomUUID().toString().substring(0, 8) + "-";
+        List<JsonNode> deliveries = new ArrayList<>(payloads.size() * request.getCopies());
+        for (int i = 0; i < payloads.size(); i++) {
+            JsonNode payload = request.isFreshIds() ? withCheckoutRequestId(payloads.get(i), runPrefix + i) : payloads.get(i);
+            for (int copy = 0; copy < request.getCopies(); copy++) {
+                deliveries.add(payload);
+            }
+        }
+
+        int accepted = 0;
+        int duplicates = 0;
+        int invalid = 0;
+        int backpressureRetries = 0;
+        long started = System.nanoTime();
+        for (JsonNode delivery : deliveries) {
+            // Replays are already authorised, so they skip the endpoint's token check
+            PaymentGateway.StkCallback callback = MpesaCallbackIngestor.parse(delivery);
+            if (callback == null) {
+                invalid++;
+                continue;
+            }
+            String payload = delivery.toString();
+            MpesaCallbackIngestor.Result result;
+            // A full queue means the provider would retry; do the same after a short pause
+            while ((result = ingestor.accept(callback, payload)) == MpesaCallbackIngestor.Result.REJECTED) {
+                backpressureRetries++;
+                Thread.sleep(1);
+            }
+            switch (result) {
+                case ACCEPTED -> accepted++;
+                case DUPLICATE -> duplicates++;
+                default -> invalid++;
+            }
+        }
+        long submitNanos = System.nanoTime() - started;
+        boolean drained = ingestor.awaitIdle(request.getTimeoutSeconds() * 1000L);
+        long totalNanos = System.nanoTime() - started;
+
+        if (request.isFreshIds()) {
+            int removed = jdbcTemplate.update("DELETE FROM mpesa_callbacks WHERE checkout_request_id LIKE ?", runPrefix + "%");
+            log.debug("Removed {} replayed callback rows", removed);
+        }
+
+        return CallbackReplayResponse.builder()
+                .payloads(payloads.size())
+                .submitted(deliveries.size())
+                .accepted(accepted)
+                .duplicates(duplicates)
+                .invalid(invalid)
+                .backpressureRetries(backpressureRetries)
+                .drained(drained)
+                .submitMs(submitNanos / 1_000_000)
+                .totalMs(totalNanos / 1_000_000)
+                .callbacksPerSecond(deliveries.size() / Math.max(totalNanos / 1e9, 1e-9))
+                .stats(ingestor.getStats())
+                .build();
+    }
+
+    private List<JsonNode> recordedPayloads(int limit) {
+        List<JsonNode> payloads = new ArrayList<>();
+        for (String payload : callbackRepository.findRecentPayloads(PageRequest.of(0, limit))) {
+            try {
+                payloads.add(objectMapper.readTree(payload));
+            } catch (IOException e) {
+                log.debug("Skipping unreadable recorded callback: {}", e.getMessage());
+            }
+        }
+        return payloads;
+    }
+
+    private static JsonNode withCheckoutRequestId(JsonNode payload, String checkoutRequestId) {
+        JsonNode copy = payload.deepCopy();
+        JsonNode callback = copy.path("Body").path("stkCallback");
+        if (callback instanceof ObjectNode node) {
+            node.put("CheckoutRequestID", checkoutRequestId);
+        }
+        return copy;
+    }
+}
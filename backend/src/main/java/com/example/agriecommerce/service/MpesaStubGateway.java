@@ -0,0 +1,106 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.PaymentGatewayException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the M-Pesa STK push API. Acknowledges after a random delay,
+ * occasionally rejects or never answers at all, and later publishes the
+ * customer's result as a {@link PaymentGateway.StkCallback} event the way the
+ * real provider would post to our callback URL. Nothing here blocks the caller.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.payments.gateway.provider", havingValue = "stub", matchIfMissing = true)
+public class MpesaStubGateway implements PaymentGateway {
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledExecutorService scheduler;
+    private final long minLatencyMs;
+    private final long maxLatencyMs;
+    private final double hangRate;
+    private final double failureRate;
+    private final long callbackDelayMs;
+    private final double callbackSuccessRate;
+
+    public MpesaStubGateway(ApplicationEventPublisher eventPublisher,
+                            @Value("${app.payments.stub.min-latency-ms:200}") long minLatencyMs,
+                            @Value("${app.payments.stub.max-latency-ms:1500}") long maxLatencyMs,
+                            @Value("${app.payments.stub.hang-rate:0.02}") double hangRate,
+                            @Value("${app.payments.stub.failure-rate:0.03}") double failureRate,
+                            @Value("${app.payments.stub.callback-delay-ms:5000}") long callbackDelayMs,
+                            @Value("${app.payments.stub.callback-success-rate:0.9}") double callbackSuccessRate) {
+        this.eventPublisher = eventPublisher;
+        this.minLatencyMs = minLatencyMs;
+        this.maxLatencyMs = Math.max(minLatencyMs, maxLatencyMs);
+        this.hangRate = hangRate;
+        this.failureRate = failureRate;
+        this.callbackDelayMs = callbackDelayMs;
+        this.callbackSuccessRate = callbackSuccessRate;
+        AtomicLong threadCount = new AtomicLong();
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "mpesa-stub-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<StkPushAck> initiateStkPush(StkPushRequest request) {
+        CompletableFuture<StkPushAck> ack = new CompletableFuture<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double roll = random.nextDouble();
+        if (roll < hangRate) {
+            // Never answered; the caller's timeout has to deal with it
+            return ack;
+        }
+
+        long latency = random.nextLong(minLatencyMs, maxLatencyMs + 1);
+        if (roll < hangRate + failureRate) {
+            scheduler.schedule(() -> ack.completeExceptionally(
+                    new PaymentGatewayException("M-Pesa stub rejected the STK push")), latency, TimeUnit.MILLISECONDS);
+            return ack;
+        }
+
+        String merchantRequestId = "STUB-MR-" + UUID.randomUUID();
+        String checkoutRequestId = "ws_CO_STUB_" + UUID.randomUUID().toString().replace("-", "");
+        boolean paid = random.nextDouble() < callbackSuccessRate;
+        scheduler.schedule(() -> {
+            ack.complete(new StkPushAck(merchantRequestId, checkoutRequestId, "Success. Request accepted for processing"));
+            scheduler.schedule(() -> publishCallback(request, merchantRequestId, checkoutRequestId, paid),
+                    callbackDelayMs, TimeUnit.MILLISECONDS);
+        }, latency, TimeUnit.MILLISECONDS);
+        return ack;
+    }
+
+    @Override
+    public String name() {
+        return "M-Pesa stub";
+    }
+
+    private void publishCallback(StkPushRequest request, String merchantRequestId, String checkoutRequestId, boolean paid) {
+        StkCallback callback = paid
+                ? new StkCallback(merchantRequestId, checkoutRequestId, 0, "The service request is processed successfully.",
+                        request.amount(), "STUB" + Long.toString(System.nanoTime(), 36).toUpperCase(), request.phoneNumber())
+                : new StkCallback(merchantRequestId, checkoutRequestId, StkCallback.RESULT_CANCELLED_BY_USER,
+                        "Request cancelled by user", null, null, request.phoneNumber());
+        try {
+            eventPublisher.publishEvent(callback);
+        } catch (RuntimeException e) {
+            log.warn("Stub callback for {} failed: {}", checkoutRequestId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.OrderResponse;
+import com.example.agriecommerce.dto.response.PaymentResponse;
+import com.example.agriecommerce.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Storage for closed orders that have aged out of the hot {@code orders} table.
+ * Rows live in the month-partitioned {@code order_archive} table (see schema.sql)
+ * with the full order and payment snapshot as gzip-compressed JSON; the status,
+ * total and date stay in plain columns so range aggregates prune to the
+ * partitions they need.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderArchiveService {
+    private static final long TOTALS_TTL_MS = 10 * 60 * 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final Set<YearMonth> knownPartitions = ConcurrentHashMap.newKeySet();
+    private volatile ArchiveTotals cachedTotals;
+
+    public void archive(List<Snapshot> snapshots) {
+        snapshots.stream()
+                .map(snapshot -> YearMonth.from(toLocalDateTime(snapshot.getOrder().getOrderDate())))
+                .distinct()
+                .forEach(this::ensurePartition);
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO order_archive (id, user_id, status, total, order_date, payload) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING",
+                snapshots,
+                snapshots.size(),
+                (ps, snapshot) -> {
+                    OrderResponse order = snapshot.getOrder();
+                    ps.setString(1, order.getId());
+                    ps.setObject(2, snapshot.getUserId());
+                    ps.setString(3, order.getStatus().name());
+                    ps.setBigDecimal(4, order.getTotal());
+                    ps.setTimestamp(5, new Timestamp(order.getOrderDate().getTime()));
+                    ps.setBytes(6, compress(snapshot));
+                });
+        cachedTotals = null;
+    }
+
+    public Optional<OrderResponse> findOrder(String orderId) {
+        return jdbcTemplate.query("SELECT payload FROM order_archive WHERE id = ?",
+                        (rs, rowNum) -> decompress(rs.getBytes(1)).getOrder(), orderId)
+                .stream()
+                .findFirst();
+    }
+
+    public Optional<OrderStatus> findStatus(String orderId) {
+        return jdbcTemplate.queryForList("SELECT status FROM order_archive WHERE id = ?", String.class, orderId)
+                .stream()
+                .findFirst()
+                .map(OrderStatus::valueOf);
+    }
+
+    /** The user's newest archived orders, served by idx_order_archive_user_date. */
+    public List<OrderResponse> findUserOrders(Long userId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT payload FROM order_archive WHERE user_id = ? ORDER BY order_date DESC, id DESC LIMIT ?",
+                (rs, rowNum) -> decompress(rs.getBytes(1)).getOrder(), userId, limit);
+    }
+
+    public long countUserOrders(Long userId) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_archive WHERE user_id = ?", Long.class, userId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Streams the archived orders placed in {@code [from, to)} without loading
+     * them all; the caller must be in a transaction for the cursor to be used.
+     */
+    public void forEachOrder(Date from, Date to, int fetchSize, Consumer<OrderResponse> consumer) {
+        jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "SELECT payload FROM order_archive WHERE order_date >= ? AND order_date < ?");
+                    ps.setFetchSize(fetchSize);
+                    ps.setTimestamp(1, new Timestamp(from.getTime()));
+                    ps.setTimestamp(2, new Timestamp(to.getTime()));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(decompress(rs.getBytes(1)).getOrder()));
+    }
+
+    public long count() {
+        return totals().count();
+    }
+
+    public BigDecimal sumTotal() {
+        return totals().revenue();
+    }
+
+    public Map<OrderStatus, Long> countByStatus() {
+        Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        jdbcTemplate.query("SELECT status, COUNT(*) FROM order_archive GROUP BY status",
+                (RowCallbackHandler) rs -> counts.put(OrderStatus.valueOf(rs.getString(1)), rs.getLong(2)));
+        return counts;
+    }
+
+    public long countBetween(Date start, Date end) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM order_archive WHERE order_date BETWEEN ? AND ?",
+                Long.class, new Timestamp(start.getTime()), new Timestamp(end.getTime()));
+        return count != null ? count : 0;
+    }
+
+    public BigDecimal sumTotalBetween(Date start, Date end) {
+        BigDecimal sum = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(total), 0) FROM order_archive WHERE order_date BETWEEN ? AND ?",
+                BigDecimal.class, new Timestamp(start.getTime()), new Timestamp(end.getTime()));
+        return sum != null ? sum : BigDecimal.ZERO;
+    }
+
+    // The archive only grows when the archiver runs, so all-time totals are cached
+    // instead of re-aggregating every partition on each dashboard refresh.
+    private ArchiveTotals totals() {
+        ArchiveTotals totals = cachedTotals;
+        if (totals == null || System.currentTimeMillis() - totals.loadedAt() > TOTALS_TTL_MS) {
+            totals = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*), COALESCE(SUM(total), 0) FROM order_archive",
+                    (rs, rowNum) -> new ArchiveTotals(rs.getLong(1), rs.getBigDecimal(2), System.currentTimeMillis()));
+            cachedTotals = totals;
+        }
+        return totals;
+    }
+
+    private void ensurePartition(YearMonth month) {
+        if (knownPartitions.contains(month)) {
+            return;
+        }
+        String name = String.format("order_archive_y%04dm%02d", month.getYear(), month.getMonthValue());
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF order_archive FOR VALUES FROM ('%s') TO ('%s')",
+                name, month.atDay(1), month.plusMonths(1).atDay(1)));
+        knownPartitions.add(month);
+        log.debug("Ensured order archive partition {}", name);
+    }
+
+    private byte[] compress(Snapshot snapshot) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(gzip, snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress archived order", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Snapshot decompress(byte[] payload) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(gzip, Snapshot.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived order", e);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    private record ArchiveTotals(long count, BigDecimal revenue, long loadedAt) {}
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Snapshot {
+        private Long userId;
+        private OrderResponse order;
+        private PaymentResponse payment;
+    }
+}
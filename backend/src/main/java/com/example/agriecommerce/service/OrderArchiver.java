@@ -0,0 +1,52 @@
+package com.example.agriecommerce.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+/**
+ * Nightly job that moves delivered, cancelled and returned orders older than
+ * {@code app.orders.archive.min-age-days} out of the hot tables, one batch per
+ * transaction so locks stay short.
+ */
+@Slf4j
+@Component
+public class OrderArchiver {
+    private final OrderService orderService;
+    private final boolean enabled;
+    private final int minAgeDays;
+    private final int batchSize;
+
+    public OrderArchiver(OrderService orderService,
+                         @Value("${app.orders.archive.enabled:true}") boolean enabled,
+                         @Value("${app.orders.archive.min-age-days:180}") int minAgeDays,
+                         @Value("${app.orders.archive.batch-size:500}") int batchSize) {
+        this.orderService = orderService;
+        this.enabled = enabled;
+        this.minAgeDays = minAgeDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${app.orders.archive.cron:0 30 2 * * *}")
+    public void archiveClosedOrders() {
+        if (!enabled) {
+            return;
+        }
+        Date cutoff = Date.from(Instant.now().minus(minAgeDays, ChronoUnit.DAYS));
+        long archived = 0;
+        int moved;
+        do {
+            moved = orderService.archiveClosedOrders(cutoff, batchSize);
+            archived += moved;
+        } while (moved == batchSize);
+
+        if (archived > 0) {
+            log.info("Archived {} closed orders placed before {}", archived, cutoff);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.OrderResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Accounting export: one CSV line per order item for orders placed in a date
+ * range. Rows are read through a forward-only cursor in a read-only transaction
+ * and written straight to the response, so memory use does not depend on the
+ * size of the range. Archived orders in the range are included.
+ */
+@Slf4j
+@Service
+public class OrderExportService {
+    private static final String HEADER = "order_id,order_date,status,customer_first_name,customer_last_name,"
+            + "customer_email,customer_phone,delivery_county,subtotal,delivery_fee,order_total,payment_reference,"
+            + "product_id,product_name,unit_price,quantity,line_total,archived";
+    private static final String LIVE_ROWS_SQL =
+            "SELECT o.id, o.order_date, o.status, o.customer_first_name, o.customer_last_name, o.customer_email, "
+                    + "o.customer_phone, o.delivery_county, o.subtotal, o.delivery_fee, o.total, o.payment_reference, "
+                    + "oi.product_id, oi.product_name, oi.product_price, oi.quantity, oi.total_price "
+                    + "FROM orders o LEFT JOIN order_items oi ON oi.order_id = o.id "
+                    + "WHERE o.order_date >= ? AND o.order_date < ? "
+                    + "ORDER BY o.order_date, o.id";
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+    private static final Pattern SIGNED_NUMBER = Pattern.compile("[-+]\\d+(\\.\\d+)?");
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderArchiveService orderArchiveService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public OrderExportService(JdbcTemplate jdbcTemplate,
+                              OrderArchiveService orderArchiveService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.orders.export.fetch-size:2000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderArchiveService = orderArchiveService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes orders placed in {@code [from, to)} as CSV, gzip-compressed when
+     * requested. Archived orders come first, then live orders by order date.
+     */
+    public void exportCsv(Date from, Date to, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024);
+        long started = System.currentTimeMillis();
+        long[] rows = {0};
+
+        writer.write(HEADER);
+        writer.write('\n');
+        try {
+            // The PostgreSQL driver only streams with a fetch size when autocommit is off
+            readOnlyTransaction.executeWithoutResult(tx -> {
+                orderArchiveService.forEachOrder(from, to, fetchSize, order -> rows[0] += writeArchived(writer, order));
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(LIVE_ROWS_SQL,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    ps.setTimestamp(1, new Timestamp(from.getTime()));
+                    ps.setTimestamp(2, new Timestamp(to.getTime()));
+                    return ps;
+                }, (RowCallbackHandler) rs -> {
+                    writeLive(writer, rs);
+                    rows[0]++;
+                });
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+        log.info("Exported {} order lines for {} - {} in {} ms", rows[0], from, to, System.currentTimeMillis() - started);
+    }
+
+    private void writeLive(Writer writer, ResultSet rs) throws SQLException {
+        Timestamp orderDate = rs.getTimestamp(2);
+        long productId = rs.getLong(13);
+        boolean hasItem = !rs.wasNull();
+        line(writer,
+                rs.getString(1),
+                orderDate != null ? DATE_FORMAT.format(orderDate.toInstant()) : null,
+                rs.getString(3),
+                rs.getString(4),
+                rs.getString(5),
+                rs.getString(6),
+                rs.getString(7),
+                rs.getString(8),
+                plain(rs.getBigDecimal(9)),
+                plain(rs.getBigDecimal(10)),
+                plain(rs.getBigDecimal(11)),
+                rs.getString(12),
+                hasItem ? String.valueOf(productId) : null,
+                rs.getString(14),
+                plain(rs.getBigDecimal(15)),
+                rs.getString(16),
+                plain(rs.getBigDecimal(17)),
+                "false");
+    }
+
+    private int writeArchived(Writer writer, OrderResponse order) {
+        String[] orderColumns = {
+                order.getId(),
+                order.getOrderDate() != null ? DATE_FORMAT.format(order.getOrderDate().toInstant()) : null,
+                order.getStatus() != null ? order.getStatus().name() : null,
+                order.getCustomerInfo() != null ? order.getCustomerInfo().getFirstName() : null,
+                order.getCustomerInfo() != null ? order.getCustomerInfo().getLastName() : null,
+                order.getCustomerInfo() != null ? order.getCustomerInfo().getEmail() : null,
+                order.getCustomerInfo() != null ? order.getCustomerInfo().getPhone() : null,
+                order.getDeliveryInfo() != null ? order.getDeliveryInfo().getCounty() : null,
+                plain(order.getSubtotal()),
+                plain(order.getDeliveryFee()),
+                plain(order.getTotal()),
+                order.getPaymentReference()
+        };
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            line(writer, concat(orderColumns, null, null, null, null, null));
+            return 1;
+        }
+        for (OrderResponse.OrderItem item : order.getItems()) {
+            line(writer, concat(orderColumns,
+                    item.getProductId() != null ? String.valueOf(item.getProductId()) : null,
+                    item.getProductName(),
+                    plain(item.getProductPrice()),
+                    item.getQuantity() != null ? String.valueOf(item.getQuantity()) : null,
+                    plain(item.getTotalPrice())));
+        }
+        return order.getItems().size();
+    }
+
+    private static String[] concat(String[] orderColumns, String... itemColumns) {
+        String[] columns = new String[orderColumns.length + itemColumns.length + 1];
+        System.arraycopy(orderColumns, 0, columns, 0, orderColumns.length);
+        System.arraycopy(itemColumns, 0, columns, orderColumns.length, itemColumns.length);
+        columns[columns.length - 1] = "true";
+        return columns;
+    }
+
+    private static void line(Writer writer, String... columns) {
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(writer, columns[i]);
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            // Usually the client went away; abort the cursor instead of reading on
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (isFormula(value)) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // Customer-supplied text must not be evaluated as a formula by spreadsheet apps;
+    // signed numbers are still written as numbers
+    private static boolean isFormula(String value) {
+        char first = value.charAt(0);
+        if (FORMULA_PREFIXES.indexOf(first) < 0) {
+            return false;
+        }
+        return (first != '-' && first != '+') || !SIGNED_NUMBER.matcher(value).matches();
+    }
+
+    private static String plain(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
+}
@@ -0,0 +1,780 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.FactQueryResponse;
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.exception.ConflictException;
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderItem;
+import com.example.agriecommerce.model.OrderStatus;
+import com.example.agriecommerce.model.Product;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Every order item, live and archived, held in memory as columns of primitives
+ * for ad-hoc admin questions such as revenue by county, category and week.
+ * Category, county and farmer are dictionary-encoded and dates are business-day
+ * numbers, so a fact costs 25 bytes and a query is a few tight loops over
+ * arrays, split across a fork-join pool.
+ * <p>
+ * Checkout appends facts and status changes update them once their transaction
+ * commits. A periodic reload from the database picks up orders placed through
+ * other instances and corrects any drift.
+ */
+@Slf4j
+@Service
+public class OrderFactStore implements OrderStatusListener {
+    public enum Dimension {
+        CATEGORY, COUNTY, FARMER, STATUS, DAY, WEEK, MONTH, YEAR;
+
+        boolean isTime() {
+            return ordinal() >= DAY.ordinal();
+        }
+
+        LocalDate bucketStart(LocalDate day) {
+            return switch (this) {
+                case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> day.withDayOfMonth(1);
+                case YEAR -> day.withDayOfYear(1);
+                default -> day;
+            };
+        }
+    }
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final String NONE = "(none)";
+    private static final Set<OrderStatus> DEFAULT_STATUSES =
+            EnumSet.complementOf(EnumSet.of(OrderStatus.CANCELLED, OrderStatus.RETURNED));
+
+    // Ordered by order so each order's items arrive, and are stored, together
+    private static final String LIVE_SQL =
+            "SELECT o.id, o.order_date, o.status, o.delivery_county, p.category, p.farmer_id, oi.quantity, oi.total_price " +
+                    "FROM order_items oi JOIN orders o ON o.id = oi.order_id LEFT JOIN products p ON p.id = oi.product_id " +
+                    "WHERE o.order_date IS NOT NULL ORDER BY oi.order_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BusinessClock businessClock;
+    private final OrderArchiveService orderArchiveService;
+    private final TransactionTemplate snapshotTransaction;
+    private final ForkJoinPool pool;
+    private final ExecutorService loader;
+    private final int maxGroups;
+    private final int fetchSize;
+
+    private final Object swapLock = new Object();
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private volatile Facts facts = new Facts();
+    private volatile boolean ready;
+    private volatile Instant loadedAt;
+    // Changes that commit while a reload runs, replayed onto the reloaded facts
+    private List<Consumer<Facts>> replay;
+
+    public OrderFactStore(JdbcTemplate jdbcTemplate,
+                          BusinessClock businessClock,
+                          OrderArchiveService orderArchiveService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.analytics.facts.parallelism:0}") int parallelism,
+                          @Value("${app.analytics.facts.max-groups:100000}") int maxGroups,
+                          @Value("${app.analytics.facts.fetch-size:5000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.businessClock = businessClock;
+        this.orderArchiveService = orderArchiveService;
+        // Archived and live orders must come from one snapshot, or an order
+        // archived mid-load would be missed or counted twice
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-facts-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxGroups = maxGroups;
+        this.fetchSize = fetchSize;
+    }
+
+    /** One order line as stored: farmer 0 stands for "no farmer". */
+    private record Item(String category, long farmerId, int units, long cents) {}
+
+    // ---- writes ------------------------------------------------------------------
+
+    public void itemsSold(Order order, Collection<OrderItem> items) {
+        int day = (int) businessClock.toLocalDate(order.getOrderDate()).toEpochDay();
+        List<Item> lines = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            Product product = item.getProduct();
+            lines.add(new Item(product.getCategory(), product.getFarmer() != null ? product.getFarmer().getId() : 0,
+                    item.getQuantity(), toCents(item.getTotalPrice())));
+        }
+        String orderId = order.getId();
+        OrderStatus status = order.getStatus();
+        String county = order.getDeliveryCounty();
+        AfterCommit.run(() -> apply(target -> target.append(orderId, day, status, county, lines, true)));
+    }
+
+    @Override
+    public void ordersTransitioned(Collection<String> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = List.copyOf(orderIds);
+        AfterCommit.run(() -> apply(target -> target.setStatus(ids, to)));
+    }
+
+    private void apply(Consumer<Facts> change) {
+        synchronized (swapLock) {
+            change.accept(facts);
+            if (replay != null) {
+                replay.add(change);
+            }
+        }
+    }
+
+    // ---- loading -----------------------------------------------------------------
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reloadAsync();
+    }
+
+    @Scheduled(initialDelayString = "${app.analytics.facts.reload-interval-ms:21600000}",
+            fixedDelayString = "${app.analytics.facts.reload-interval-ms:21600000}")
+    public void scheduledReload() {
+        reloadAsync();
+    }
+
+    /** Starts a reload in the background; false when one is already running. */
+    public boolean reloadAsync() {
+        if (!loading.compareAndSet(false, true)) {
+            return false;
+        }
+        loader.execute(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                log.error("Loading order facts failed", e);
+            } finally {
+                loading.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void reload() {
+        long started = System.currentTimeMillis();
+        synchronized (swapLock) {
+            replay = new ArrayList<>();
+        }
+        Facts loaded = new Facts();
+        try {
+            Map<Long, Item> products = new HashMap<>();
+            snapshotTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.query("SELECT id, category, farmer_id FROM products",
+                        (RowCallbackHandler) rs -> products.put(rs.getLong(1),
+                                new Item(rs.getString(2), rs.getLong(3), 0, 0)));
+
+                orderArchiveService.forEachOrder(new Date(0), Date.from(Instant.now().plus(1, ChronoUnit.DAYS)), fetchSize,
+                        order -> {
+                            if (order.getItems() == null || order.getOrderDate() == null) {
+                                return;
+                            }
+                            List<Item> items = new ArrayList<>(order.getItems().size());
+                            for (var item : order.getItems()) {
+                                Item product = products.get(item.getProductId());
+                                items.add(new Item(product != null ? product.category() : null,
+                                        product != null ? product.farmerId() : 0,
+                                        item.getQuantity() != null ? item.getQuantity() : 0, toCents(item.getTotalPrice())));
+                            }
+                            String county = order.getDeliveryInfo() != null ? order.getDeliveryInfo().getCounty() : null;
+                            // Archived orders never change again, so they are not tracked for status updates
+                            loaded.append(order.getId(), day(order.getOrderDate()), order.getStatus(), county, items, false);
+                        });
+
+                LiveOrderReader reader = new LiveOrderReader(loaded);
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(LIVE_SQL,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                }, reader);
+                reader.flush();
+            });
+        } catch (RuntimeException e) {
+            synchronized (swapLock) {
+                replay = null;
+            }
+            throw e;
+        }
+        synchronized (swapLock) {
+            replay.forEach(change -> change.accept(loaded));
+            replay = null;
+            facts = loaded;
+            loadedAt = Instant.now();
+            ready = true;
+        }
+        log.info("Loaded {} order facts in {} ms", loaded.size, System.currentTimeMillis() - started);
+    }
+
+    private final class LiveOrderReader implements RowCallbackHandler {
+        private final Facts target;
+        private final List<Item> items = new ArrayList<>();
+        private String orderId;
+        private int day;
+        private OrderStatus status;
+        private String county;
+
+        private LiveOrderReader(Facts target) {
+            this.target = target;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws java.sql.SQLException {
+            String id = rs.getString(1);
+            if (!id.equals(orderId)) {
+                flush();
+                orderId = id;
+                day = day(rs.getTimestamp(2));
+                status = rs.getString(3) != null ? OrderStatus.valueOf(rs.getString(3)) : OrderStatus.PENDING;
+                county = rs.getString(4);
+            }
+            items.add(new Item(rs.getString(5), rs.getLong(6), rs.getInt(7), toCents(rs.getBigDecimal(8))));
+        }
+
+        void flush() {
+            if (orderId != null) {
+                target.append(orderId, day, status, county, items, true);
+                items.clear();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    // ---- queries -----------------------------------------------------------------
+
+    /**
+     * Revenue, units and order lines per combination of {@code groupBy}
+     * dimensions (at most one of them a time dimension) for orders placed on
+     * business days {@code from} to {@code to}, both inclusive. Filters left
+     * empty match everything; statuses default to all but cancelled and returned.
+     */
+    public FactQueryResponse query(List<String> groupByNames, LocalDate from, LocalDate to,
+                                   List<String> categories, List<String> counties, List<Long> farmerIds,
+                                   List<String> statuses, int limit) {
+        if (!ready) {
+            throw new ConflictException("Order facts are still loading; try again shortly");
+        }
+        long started = System.nanoTime();
+        List<Dimension> dimensions = parseDimensions(groupByNames);
+        Set<OrderStatus> statusFilter = parseStatuses(statuses);
+
+        // Size first: every row below it, and every code those rows use, is published
+        Facts snapshot = facts;
+        int size = snapshot.size;
+        Chunk[] chunks = snapshot.chunks;
+        int minDay = snapshot.minDay;
+        int maxDay = snapshot.maxDay;
+
+        LocalDate today = businessClock.today();
+        LocalDate start = from != null ? from : minDay <= maxDay ? LocalDate.ofEpochDay(minDay) : today;
+        LocalDate end = to != null ? to : minDay <= maxDay ? LocalDate.ofEpochDay(maxDay) : today;
+        if (end.isBefore(start)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        // No fact lies outside [minDay, maxDay], so scan and bucket only that part of the range
+        LocalDate scanStart = minDay <= maxDay && minDay > start.toEpochDay() ? LocalDate.ofEpochDay(minDay) : start;
+        LocalDate scanEnd = minDay <= maxDay && maxDay < end.toEpochDay() ? LocalDate.ofEpochDay(maxDay) : end;
+        if (minDay > maxDay || scanEnd.isBefore(scanStart)) {
+            scanStart = start;
+            scanEnd = start;
+            size = 0;
+        }
+
+        Scan scan = new Scan();
+        scan.chunks = chunks;
+        scan.fromDay = (int) scanStart.toEpochDay();
+        scan.span = (int) ChronoUnit.DAYS.between(scanStart, scanEnd);
+        scan.statusMask = 0;
+        statusFilter.forEach(status -> scan.statusMask |= 1 << status.ordinal());
+        scan.categoryMask = mask(snapshot.categories, categories, OrderFactStore::normalizeCategory);
+        scan.countyMask = mask(snapshot.counties, counties, OrderFactStore::normalizeCounty);
+        scan.farmerMask = farmerIds == null || farmerIds.isEmpty() ? null
+                : mask(snapshot.farmers, farmerIds.stream().map(String::valueOf).toList(), value -> value);
+
+        // Mixed-radix group number: one digit per dimension
+        int[] radix = new int[dimensions.size()];
+        List<LocalDate> buckets = new ArrayList<>();
+        long groups = 1;
+        for (int i = 0; i < dimensions.size(); i++) {
+            Dimension dimension = dimensions.get(i);
+            radix[i] = switch (dimension) {
+                case CATEGORY -> snapshot.categories.size();
+                case COUNTY -> snapshot.counties.size();
+                case FARMER -> snapshot.farmers.size();
+                case STATUS -> OrderStatus.values().length;
+                default -> {
+                    scan.bucketOfDay = new int[scan.span + 1];
+                    LocalDate current = null;
+                    for (int d = 0; d <= scan.span; d++) {
+                        LocalDate bucket = dimension.bucketStart(scanStart.plusDays(d));
+                        if (!bucket.equals(current)) {
+                            buckets.add(bucket);
+                            current = bucket;
+                        }
+                        scan.bucketOfDay[d] = buckets.size() - 1;
+                    }
+                    yield buckets.size();
+                }
+            };
+            groups *= Math.max(1, radix[i]);
+        }
+        if (groups > maxGroups) {
+            throw new BadRequestException("Grouping by " + groupByNames + " could produce " + groups
+                    + " groups, more than the limit of " + maxGroups + "; add filters or use a coarser time dimension");
+        }
+        scan.dimensions = dimensions.toArray(new Dimension[0]);
+        scan.multipliers = new int[radix.length];
+        int multiplier = 1;
+        for (int i = radix.length - 1; i >= 0; i--) {
+            scan.multipliers[i] = multiplier;
+            multiplier *= Math.max(1, radix[i]);
+        }
+        scan.groups = (int) groups;
+
+        int leafRows = Math.max(CHUNK_SIZE, size / (pool.getParallelism() * 4));
+        leafRows = (leafRows + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+        Totals totals = size == 0 ? new Totals(scan.groups) : pool.invoke(new ScanTask(scan, 0, size, leafRows));
+
+        List<FactQueryResponse.Row> rows = new ArrayList<>();
+        long matched = 0;
+        for (int group = 0; group < scan.groups; group++) {
+            if (totals.lines[group] == 0) {
+                continue;
+            }
+            matched += totals.lines[group];
+            List<String> key = new ArrayList<>(radix.length);
+            for (int i = 0; i < radix.length; i++) {
+                int code = group / scan.multipliers[i] % Math.max(1, radix[i]);
+                key.add(switch (scan.dimensions[i]) {
+                    case CATEGORY -> snapshot.categories.value(code);
+                    case COUNTY -> snapshot.counties.value(code);
+                    case FARMER -> snapshot.farmers.value(code);
+                    case STATUS -> OrderStatus.values()[code].name();
+                    default -> buckets.get(code).toString();
+                });
+            }
+            rows.add(FactQueryResponse.Row.builder()
+                    .key(key)
+                    .revenue(BigDecimal.valueOf(totals.cents[group], 2))
+                    .units(totals.units[group])
+                    .lines(totals.lines[group])
+                    .build());
+        }
+        rows.sort(Comparator.comparing(FactQueryResponse.Row::getRevenue).reversed());
+        int returned = Math.min(rows.size(), Math.max(1, limit));
+
+        return FactQueryResponse.builder()
+                .groupBy(dimensions.stream().map(dimension -> dimension.name().toLowerCase(Locale.ROOT)).toList())
+                .from(start)
+                .to(end)
+                .scannedFacts(size)
+                .matchedFacts(matched)
+                .groups(rows.size())
+                .elapsedMicros((System.nanoTime() - started) / 1000)
+                .loadedAt(loadedAt)
+                .rows(rows.subList(0, returned))
+                .build();
+    }
+
+    private static List<Dimension> parseDimensions(List<String> names) {
+        List<Dimension> dimensions = new ArrayList<>();
+        if (names == null) {
+            return dimensions;
+        }
+        for (String name : names) {
+            if (name == null || name.isBlank()) {
+                continue;
+            }
+            Dimension dimension;
+            try {
+                dimension = Dimension.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown dimension '" + name
+                        + "', expected category, county, farmer, status, day, week, month or year");
+            }
+            if (dimensions.contains(dimension)) {
+                throw new BadRequestException("Dimension '" + name + "' is listed twice");
+            }
+            if (dimension.isTime() && dimensions.stream().anyMatch(Dimension::isTime)) {
+                throw new BadRequestException("Group by at most one of day, week, month and year");
+            }
+            dimensions.add(dimension);
+        }
+        return dimensions;
+    }
+
+    private static Set<OrderStatus> parseStatuses(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return DEFAULT_STATUSES;
+        }
+        Set<OrderStatus> statuses = EnumSet.noneOf(OrderStatus.class);
+        for (String name : names) {
+            try {
+                statuses.add(OrderStatus.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown order status '" + name + "'");
+            }
+        }
+        return statuses;
+    }
+
+    // null when unfiltered; values the dictionary has never seen match nothing
+    private static boolean[] mask(ValueDictionary dictionary, List<String> values,
+                                  java.util.function.UnaryOperator<String> normalizer) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        boolean[] mask = new boolean[dictionary.size()];
+        for (String value : values) {
+            Integer code = dictionary.find(normalizer.apply(value));
+            if (code != null && code < mask.length) {
+                mask[code] = true;
+            }
+        }
+        return mask;
+    }
+
+    // ---- kernels -----------------------------------------------------------------
+
+    private static final class Scan {
+        Chunk[] chunks;
+        int fromDay;
+        int span;
+        int statusMask;
+        boolean[] categoryMask;
+        boolean[] countyMask;
+        boolean[] farmerMask;
+        Dimension[] dimensions;
+        int[] multipliers;
+        int[] bucketOfDay;
+        int groups;
+    }
+
+    private static final class Totals {
+        final long[] cents;
+        final long[] units;
+        final long[] lines;
+
+        Totals(int groups) {
+            cents = new long[groups];
+            units = new long[groups];
+            lines = new long[groups];
+        }
+
+        Totals plus(Totals other) {
+            for (int i = 0; i < cents.length; i++) {
+                cents[i] += other.cents[i];
+                units[i] += other.units[i];
+                lines[i] += other.lines[i];
+            }
+            return this;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<Totals> {
+        private final Scan scan;
+        private final int from;
+        private final int to;
+        private final int leafRows;
+
+        ScanTask(Scan scan, int from, int to, int leafRows) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+            this.leafRows = leafRows;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > leafRows) {
+                // Split on a chunk boundary so no chunk is shared between leaves
+                int middle = (from + (to - from) / 2) >>> CHUNK_BITS << CHUNK_BITS;
+                if (middle <= from) {
+                    middle = from + CHUNK_SIZE;
+                }
+                ScanTask right = new ScanTask(scan, middle, to, leafRows);
+                right.fork();
+                Totals left = new ScanTask(scan, from, middle, leafRows).compute();
+                return left.plus(right.join());
+            }
+            Totals totals = new Totals(scan.groups);
+            int[] selection = new int[CHUNK_SIZE];
+            int[] group = new int[CHUNK_SIZE];
+            for (int row = from; row < to; ) {
+                Chunk chunk = scan.chunks[row >>> CHUNK_BITS];
+                int offset = row & (CHUNK_SIZE - 1);
+                int end = Math.min(CHUNK_SIZE, offset + (to - row));
+                scanChunk(chunk, offset, end, selection, group, totals);
+                row += end - offset;
+            }
+            return totals;
+        }
+
+        // Each pass is one simple loop over a column, narrowing the selection
+        private void scanChunk(Chunk chunk, int offset, int end, int[] selection, int[] group, Totals totals) {
+            int selected = 0;
+            int[] days = chunk.day;
+            int fromDay = scan.fromDay;
+            int span = scan.span;
+            for (int i = offset; i < end; i++) {
+                int relative = days[i] - fromDay;
+                selection[selected] = i;
+                selected += relative >= 0 && relative <= span ? 1 : 0;
+            }
+
+            int statusMask = scan.statusMask;
+            byte[] statuses = chunk.status;
+            int kept = 0;
+            for (int j = 0; j < selected; j++) {
+                int i = selection[j];
+                selection[kept] = i;
+                kept += (statusMask >>> statuses[i] & 1);
+            }
+            selected = kept;
+            selected = keep(selection, selected, chunk.category, scan.categoryMask);
+            selected = keep(selection, selected, chunk.county, scan.countyMask);
+            selected = keep(selection, selected, chunk.farmer, scan.farmerMask);
+            if (selected == 0) {
+                return;
+            }
+
+            Arrays.fill(group, 0, selected, 0);
+            for (int d = 0; d < scan.dimensions.length; d++) {
+                int multiplier = scan.multipliers[d];
+                switch (scan.dimensions[d]) {
+                    case CATEGORY -> {
+                        short[] codes = chunk.category;
+                        for (int j = 0; j < selected; j++) group[j] += multiplier * codes[selection[j]];
+                    }
+                    case COUNTY -> {
+                        short[] codes = chunk.county;
+                        for (int j = 0; j < selected; j++) group[j] += multiplier * codes[selection[j]];
+                    }
+                    case FARMER -> {
+                        int[] codes = chunk.farmer;
+                        for (int j = 0; j < selected; j++) group[j] += multiplier * codes[selection[j]];
+                    }
+                    case STATUS -> {
+                        byte[] codes = chunk.status;
+                        for (int j = 0; j < selected; j++) group[j] += multiplier * codes[selection[j]];
+                    }
+                    default -> {
+                        int[] bucketOfDay = scan.bucketOfDay;
+                        for (int j = 0; j < selected; j++) group[j] += multiplier * bucketOfDay[days[selection[j]] - fromDay];
+                    }
+                }
+            }
+
+            long[] cents = chunk.cents;
+            int[] units = chunk.units;
+            for (int j = 0; j < selected; j++) {
+                int i = selection[j];
+                int g = group[j];
+                totals.cents[g] += cents[i];
+                totals.units[g] += units[i];
+                totals.lines[g]++;
+            }
+        }
+
+        private static int keep(int[] selection, int selected, short[] codes, boolean[] mask) {
+            if (mask == null) {
+                return selected;
+            }
+            int kept = 0;
+            for (int j = 0; j < selected; j++) {
+                int i = selection[j];
+                selection[kept] = i;
+                kept += mask[codes[i]] ? 1 : 0;
+            }
+            return kept;
+        }
+
+        private static int keep(int[] selection, int selected, int[] codes, boolean[] mask) {
+            if (mask == null) {
+                return selected;
+            }
+            int kept = 0;
+            for (int j = 0; j < selected; j++) {
+                int i = selection[j];
+                selection[kept] = i;
+                kept += mask[codes[i]] ? 1 : 0;
+            }
+            return kept;
+        }
+    }
+
+    // ---- storage -----------------------------------------------------------------
+
+    private static final class Chunk {
+        final int[] day = new int[CHUNK_SIZE];
+        final short[] category = new short[CHUNK_SIZE];
+        final short[] county = new short[CHUNK_SIZE];
+        final int[] farmer = new int[CHUNK_SIZE];
+        final byte[] status = new byte[CHUNK_SIZE];
+        final int[] units = new int[CHUNK_SIZE];
+        final long[] cents = new long[CHUNK_SIZE];
+    }
+
+    /**
+     * Columns are only written under the lock and published by the volatile
+     * {@code size}; readers read {@code size} first and scan below it.
+     */
+    private static final class Facts {
+        final ValueDictionary categories = new ValueDictionary(Short.MAX_VALUE);
+        final ValueDictionary counties = new ValueDictionary(Short.MAX_VALUE);
+        final ValueDictionary farmers = new ValueDictionary(Integer.MAX_VALUE);
+        // Live order id -> first row << 20 | item count, for status changes
+        final Map<String, Long> liveOrders = new HashMap<>();
+        volatile Chunk[] chunks = new Chunk[0];
+        volatile int size;
+        volatile int minDay = Integer.MAX_VALUE;
+        volatile int maxDay = Integer.MIN_VALUE;
+
+        synchronized void append(String orderId, int day, OrderStatus status, String county,
+                                 List<Item> items, boolean live) {
+            if (items.isEmpty() || (live && liveOrders.containsKey(orderId))) {
+                return;
+            }
+            int first = size;
+            int countyCode = counties.code(normalizeCounty(county));
+            int row = first;
+            for (Item item : items) {
+                int index = row & (CHUNK_SIZE - 1);
+                if (index == 0 && row >>> CHUNK_BITS == chunks.length) {
+                    Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                    grown[chunks.length] = new Chunk();
+                    chunks = grown;
+                }
+                Chunk chunk = chunks[row >>> CHUNK_BITS];
+                chunk.day[index] = day;
+                chunk.category[index] = (short) categories.code(normalizeCategory(item.category()));
+                chunk.county[index] = (short) countyCode;
+                chunk.farmer[index] = farmers.code(item.farmerId() > 0 ? String.valueOf(item.farmerId()) : NONE);
+                chunk.status[index] = (byte) status.ordinal();
+                chunk.units[index] = item.units();
+                chunk.cents[index] = item.cents();
+                row++;
+            }
+            if (live) {
+                liveOrders.put(orderId, (long) first << 20 | items.size());
+            }
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+            size = row;
+        }
+
+        synchronized void setStatus(List<String> orderIds, OrderStatus status) {
+            for (String orderId : orderIds) {
+                Long rows = liveOrders.get(orderId);
+                if (rows == null) {
+                    continue;
+                }
+                long first = rows >>> 20;
+                for (long row = first; row < first + (rows & 0xFFFFF); row++) {
+                    chunks[(int) (row >>> CHUNK_BITS)].status[(int) (row & (CHUNK_SIZE - 1))] = (byte) status.ordinal();
+                }
+            }
+        }
+    }
+
+    private static final class ValueDictionary {
+        private final int capacity;
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private volatile int size;
+
+        ValueDictionary(int capacity) {
+            this.capacity = capacity;
+        }
+
+        // Called under the Facts lock
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size == capacity) {
+                throw new IllegalStateException("More than " + capacity + " distinct values");
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            codes.put(value, size);
+            return size++;
+        }
+
+        Integer find(String value) {
+            return codes.get(value);
+        }
+
+        String value(int code) {
+            return values[code];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    // ---- helpers -----------------------------------------------------------------
+
+    private int day(Date date) {
+        return (int) businessClock.toLocalDate(date).toEpochDay();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).setScale(0, java.math.RoundingMode.HALF_UP).longValueExact() : 0;
+    }
+
+    private static String normalizeCategory(String category) {
+        return category == null || category.isBlank() ? NONE : category.trim();
+    }
+
+    private static String normalizeCounty(String county) {
+        return county == null || county.isBlank() ? NONE : county.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,30 +1,73 @@
 package com.example.agriecommerce.service;
 
+import com.example.agriecommerce.dto.request.BulkOrderStatusRequest;
 import com.example.agriecommerce.dto.request.OrderRequest;
+import com.example.agriecommerce.dto.response.BulkOrderStatusResponse;
 import com.example.agriecommerce.dto.response.CartResponse;
 import com.example.agriecommerce.dto.response.OrderResponse;
+import com.example.agriecommerce.dto.response.OrderStatusHistoryResponse;
+import com.example.agriecommerce.dto.response.PaymentResponse;
+import com.example.agriecommerce.exception.BadRequestException;
 import com.example.agriecommerce.exception.ResourceNotFoundException;
 import com.example.agriecommerce.model.*;
 import com.example.agriecommerce.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    private static final Set<OrderStatus> ARCHIVABLE_STATUSES =
+            EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.RETURNED);
+    private static final int BULK_FILTER_LIMIT = 5000;
+    private static final Sort HISTORY_SORT = Sort.by(Sort.Direction.DESC, "orderDate");
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    // Each page reads both tables from the top, so deep pages are refused rather than slowly served
+    private static final int MAX_HISTORY_DEPTH = 1000;
+    private static final GridDefinition<Order> ORDER_GRID = GridDefinition.<Order>builder("orders")
+            .equality("status", "status", "status", OrderStatus::valueOf)
+            .equality("county", "delivery_county", "deliveryCounty", value -> value)
+            .equality("email", "customer_email", "customerEmail", value -> value)
+            .equality("phone", "customer_phone", "customerPhone", value -> value)
+            .equality("userId", "user_id", "user.id", Long::valueOf)
+            .range("orderDate", "order_date", "orderDate")
+            .index("idx_orders_order_date", "order_date")
+            .index("idx_orders_status_order_date", "order_date", "status")
+            .index("idx_orders_county_order_date", "order_date", "delivery_county")
+            .index("idx_orders_status_county_order_date", "order_date", "status", "delivery_county")
+            .index("idx_orders_email_order_date", "order_date", "customer_email")
+            .index("idx_orders_phone_order_date", "order_date", "customer_phone")
+            .index("idx_orders_user_order_date", "order_date", "user_id")
+            .index("idx_orders_user_status_order_date", "order_date", "user_id", "status")
+            .build();
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final CartService cartService;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final OrderStatusEventHub orderStatusEventHub;
+    private final OrderStateMachine orderStateMachine;
+    private final OrderArchiveService orderArchiveService;
+    private final PaymentRepository paymentRepository;
+    private final CartItemRepository cartItemRepository;
+    private final DashboardRollupService dashboardRollupService;
+    private final BusinessCounters businessCounters;
+    private final UniqueBuyerService uniqueBuyerService;
+    private final FarmerSalesService farmerSalesService;
+    private final OrderFactStore orderFactStore;
+    private final BusinessClock businessClock;
 
     @Transactional
     public OrderResponse createOrder(Long userId, OrderRequest orderRequest) {
@@ -33,6 +76,77 @@ public class OrderService {
             throw new IllegalStateException("Cannot create order with empty cart");
         }
 
+        Order savedOrder = orderRepository.save(buildOrderShell(userId, orderRequest));
+        orderStateMachine.record(savedOrder, null, savedOrder.getStatus(), OrderStateMachine.SOURCE_CHECKOUT);
+        fulfilOrder(savedOrder, userId, cart);
+
+        return mapToOrderResponse(savedOrder);
+    }
+
+    /**
+     * First half of an asynchronous checkout: persists a PENDING order with no
+     * items yet, which {@link #completeCheckout} fills in from a queue worker.
+     */
+    @Transactional
+    public OrderResponse placeOrderShell(Long userId, OrderRequest orderRequest) {
+        if (!cartItemRepository.existsByCartUserId(userId)) {
+            throw new IllegalStateException("Cannot create order with empty cart");
+        }
+
+        Order order = buildOrderShell(userId, orderRequest);
+        order.setCheckoutState(CheckoutState.QUEUED);
+        Order savedOrder = orderRepository.save(order);
+        orderStateMachine.record(savedOrder, null, savedOrder.getStatus(), OrderStateMachine.SOURCE_CHECKOUT);
+        return mapToOrderResponse(savedOrder);
+    }
+
+    @Transactional
+    public void completeCheckout(String orderId, Long userId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+        if (order.getCheckoutState() != CheckoutState.QUEUED) {
+            return;
+        }
+        if (order.getStatus() != OrderStatus.PENDING) {
+            throw new IllegalStateException("Order was " + order.getStatus() + " before checkout completed");
+        }
+
+        CartResponse cart = cartService.getCart(userId);
+        if (cart.getItems().isEmpty()) {
+            throw new IllegalStateException("Cannot create order with empty cart");
+        }
+
+        fulfilOrder(order, userId, cart);
+        order.setCheckoutState(CheckoutState.COMPLETED);
+        orderRepository.save(order);
+    }
+
+    /**
+     * Marks a queued checkout as failed. The order is cancelled only while it is
+     * still PENDING; the conditional update loses cleanly to a payment that
+     * confirmed it in the meantime.
+     */
+    @Transactional
+    public void failCheckout(String orderId, String reason) {
+        orderStateMachine.transitionAll(List.of(orderId), OrderStatus.PENDING, OrderStatus.CANCELLED,
+                OrderStateMachine.SOURCE_CHECKOUT);
+        orderRepository.findById(orderId).ifPresent(order -> {
+            order.setCheckoutState(CheckoutState.FAILED);
+            order.setCheckoutError(reason != null && reason.length() > 500 ? reason.substring(0, 500) : reason);
+            orderRepository.save(order);
+        });
+    }
+
+    public List<String> findQueuedCheckouts() {
+        return orderRepository.findIdsByCheckoutState(CheckoutState.QUEUED);
+    }
+
+    public Long findOrderOwnerId(String orderId) {
+        return orderRepository.findUserIdById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+    }
+
+    private Order buildOrderShell(Long userId, OrderRequest orderRequest) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
 
@@ -48,64 +162,221 @@ public class OrderService {
         order.setDeliveryCounty(orderRequest.getDeliveryInfo().getCounty());
         order.setDeliveryPostalCode(orderRequest.getDeliveryInfo().getPostalCode());
         order.setDeliveryNotes(orderRequest.getDeliveryInfo().getDeliveryNotes());
-        order.setSubtotal(cart.getTotalPrice());
+        order.setSubtotal(BigDecimal.ZERO);
         order.setDeliveryFee(BigDecimal.valueOf(200)); // Fixed delivery fee for now
         order.setTotal(order.getSubtotal().add(order.getDeliveryFee()));
         order.setPaymentReference(orderRequest.getPaymentReference());
         order.setStatus(OrderStatus.PENDING);
+        return order;
+    }
 
-        Order savedOrder = orderRepository.save(order);
+    private void fulfilOrder(Order order, Long userId, CartResponse cart) {
+        BigDecimal shellTotal = order.getTotal();
+        order.setSubtotal(cart.getTotalPrice());
+        order.setTotal(order.getSubtotal().add(order.getDeliveryFee()));
+        dashboardRollupService.orderTotalChanged(order.getOrderDate(), order.getStatus(), order.getTotal().subtract(shellTotal));
 
         // Convert cart items to order items
+        List<Product> products = new ArrayList<>(cart.getItems().size());
+        List<OrderItem> items = new ArrayList<>(cart.getItems().size());
         for (CartResponse.CartItemResponse cartItemResponse : cart.getItems()) {
             Product product = productRepository.findById(cartItemResponse.getProductId())
                     .orElseThrow(() -> new ResourceNotFoundException("Product", "id", cartItemResponse.getProductId()));
+            products.add(product);
 
             OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(savedOrder);
+            orderItem.setOrder(order);
             orderItem.setProduct(product);
             orderItem.setProductName(cartItemResponse.getProductName());
             orderItem.setProductPrice(cartItemResponse.getProductPrice());
             orderItem.setQuantity(cartItemResponse.getQuantity());
             orderItem.setTotalPrice(cartItemResponse.getProductPrice().multiply(BigDecimal.valueOf(cartItemResponse.getQuantity())));
-            orderItemRepository.save(orderItem);
+            items.add(orderItemRepository.save(orderItem));
 
             // Update product stock
+            BusinessCounters.ProductState before = BusinessCounters.ProductState.of(product);
             product.setStock(product.getStock() - cartItemResponse.getQuantity());
             productRepository.save(product);
+            businessCounters.productChanged(before, BusinessCounters.ProductState.of(product));
         }
+        uniqueBuyerService.orderPlaced(order, userId, products);
+        farmerSalesService.itemsSold(order, items);
+        orderFactStore.itemsSold(order, items);
 
         // Clear the cart after order is placed
         cartService.clearCart(userId);
-
-        return mapToOrderResponse(savedOrder);
     }
 
+    /**
+     * The user's live and archived orders as one history, newest first. Both
+     * sides are read up to the end of the requested page and merged by order date,
+     * so a page may span the two tables. Only the newest {@value #MAX_HISTORY_DEPTH}
+     * orders can be paged through, and the only sort accepted is orderDate,desc.
+     */
     public Page<OrderResponse> getUserOrders(Long userId, Pageable pageable) {
-        return orderRepository.findByUser(userRepository.findById(userId)
-                        .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId)), pageable)
-                .map(this::mapToOrderResponse);
+        if (pageable.getSort().isSorted() && !pageable.getSort().equals(HISTORY_SORT)) {
+            throw new BadRequestException("Order history can only be sorted by orderDate,desc");
+        }
+        int size = Math.min(pageable.isPaged() ? pageable.getPageSize() : MAX_HISTORY_PAGE_SIZE, MAX_HISTORY_PAGE_SIZE);
+        int page = pageable.isPaged() ? pageable.getPageNumber() : 0;
+        int offset = page * size;
+        int window = offset + size;
+        if (window > MAX_HISTORY_DEPTH) {
+            throw new BadRequestException("Order history only pages through the newest " + MAX_HISTORY_DEPTH + " orders");
+        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+        Page<Order> live = orderRepository.findByUser(user,
+                PageRequest.of(0, window, Sort.by(Sort.Order.desc("orderDate"), Sort.Order.desc("id"))));
+        List<OrderResponse> archived = orderArchiveService.findUserOrders(userId, window);
+
+        List<Order> liveOrders = live.getContent();
+        List<OrderResponse> content = new ArrayList<>(size);
+        int l = 0;
+        int a = 0;
+        for (int position = 0; position < window && (l < liveOrders.size() || a < archived.size()); position++) {
+            boolean takeLive = a >= archived.size() || (l < liveOrders.size()
+                    && !liveOrders.get(l).getOrderDate().before(archived.get(a).getOrderDate()));
+            if (takeLive) {
+                Order order = liveOrders.get(l++);
+                // Only the live orders that land on this page are mapped
+                if (position >= offset) {
+                    content.add(mapToOrderResponse(order));
+                }
+            } else {
+                OrderResponse order = archived.get(a++);
+                if (position >= offset) {
+                    content.add(order);
+                }
+            }
+        }
+        return new PageImpl<>(content, PageRequest.of(page, size, HISTORY_SORT),
+                live.getTotalElements() + orderArchiveService.countUserOrders(userId));
     }
 
     public OrderResponse getOrderDetails(String orderId) {
-        Order order = orderRepository.findById(orderId)
+        return orderRepository.findById(orderId)
+                .map(this::mapToOrderResponse)
+                .or(() -> orderArchiveService.findOrder(orderId))
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
-        return mapToOrderResponse(order);
     }
 
-    public Page<OrderResponse> getAllOrders(Pageable pageable) {
-        return orderRepository.findAll(pageable)
+    public Page<OrderResponse> getAllOrders(Map<String, String> filters, Pageable pageable) {
+        GridDefinition.Query<Order> query = ORDER_GRID.parse(filters, pageable, businessClock.getZone());
+        return orderRepository.findAll(query.specification(), query.pageable())
                 .map(this::mapToOrderResponse);
     }
 
     public OrderResponse updateOrderStatus(String orderId, OrderStatus status) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
-        order.setStatus(status);
-        Order updatedOrder = orderRepository.save(order);
+        Order updatedOrder = orderStateMachine.transition(orderId, status, OrderStateMachine.SOURCE_ADMIN);
         return mapToOrderResponse(updatedOrder);
     }
 
+    public List<OrderStatusHistoryResponse> getStatusHistory(String orderId) {
+        if (!orderRepository.existsById(orderId) && orderArchiveService.findStatus(orderId).isEmpty()) {
+            throw new ResourceNotFoundException("Order", "id", orderId);
+        }
+        return orderStateMachine.history(orderId).stream()
+                .map(OrderStatusHistoryResponse::from)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Applies one status change to many orders with a single UPDATE per source
+     * status. Orders whose current status cannot move to the target are reported
+     * rather than failing the whole batch.
+     */
+    @Transactional
+    public BulkOrderStatusResponse bulkUpdateStatus(BulkOrderStatusRequest request) {
+        OrderStatus target = request.getTargetStatus();
+        boolean byIds = request.getOrderIds() != null && !request.getOrderIds().isEmpty();
+
+        List<Object[]> selected;
+        if (byIds) {
+            selected = orderRepository.findStatusesByIdIn(new HashSet<>(request.getOrderIds()));
+        } else {
+            Date from = request.getOrderDateFrom() != null ? request.getOrderDateFrom() : new Date(0);
+            Date to = request.getOrderDateTo() != null ? request.getOrderDateTo() : new Date();
+            selected = orderRepository.findStatusesByStatusAndOrderDateBetween(
+                    request.getFromStatus(), from, to, PageRequest.of(0, BULK_FILTER_LIMIT));
+        }
+
+        Map<OrderStatus, List<String>> idsBySource = new EnumMap<>(OrderStatus.class);
+        for (Object[] row : selected) {
+            idsBySource.computeIfAbsent((OrderStatus) row[1], status -> new ArrayList<>()).add((String) row[0]);
+        }
+
+        List<String> rejectedIds = new ArrayList<>();
+        Map<OrderStatus, Integer> updatedBySource = new EnumMap<>(OrderStatus.class);
+        int updated = 0;
+        int conflicts = 0;
+        for (Map.Entry<OrderStatus, List<String>> entry : idsBySource.entrySet()) {
+            OrderStatus source = entry.getKey();
+            if (!source.canTransitionTo(target)) {
+                rejectedIds.addAll(entry.getValue());
+                continue;
+            }
+            List<String> changed = orderStateMachine.transitionAll(entry.getValue(), source, target, OrderStateMachine.SOURCE_BULK);
+            updatedBySource.put(source, changed.size());
+            updated += changed.size();
+            conflicts += entry.getValue().size() - changed.size();
+        }
+
+        List<String> notFoundIds = new ArrayList<>();
+        if (byIds) {
+            Set<String> found = new HashSet<>();
+            selected.forEach(row -> found.add((String) row[0]));
+            request.getOrderIds().stream()
+                    .filter(orderId -> !found.contains(orderId))
+                    .distinct()
+                    .forEach(notFoundIds::add);
+        }
+
+        return BulkOrderStatusResponse.builder()
+                .targetStatus(target)
+                .matched(selected.size())
+                .updated(updated)
+                .updatedBySourceStatus(updatedBySource)
+                .rejectedIds(rejectedIds)
+                .notFoundIds(notFoundIds)
+                .conflicts(conflicts)
+                .hasMore(!byIds && selected.size() == BULK_FILTER_LIMIT)
+                .build();
+    }
+
+    public SseEmitter subscribeToStatus(String orderId) {
+        OrderStatus status = orderRepository.findStatusById(orderId)
+                .or(() -> orderArchiveService.findStatus(orderId))
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+        return orderStatusEventHub.subscribe(orderId, status);
+    }
+
+    /**
+     * Moves one batch of closed orders placed before the cutoff into the archive.
+     * Returns the number of orders archived; zero means nothing is left to move.
+     */
+    @Transactional
+    public int archiveClosedOrders(Date cutoff, int batchSize) {
+        List<Order> orders = orderRepository.findArchivable(ARCHIVABLE_STATUSES, cutoff, PageRequest.of(0, batchSize));
+        if (orders.isEmpty()) {
+            return 0;
+        }
+
+        List<OrderArchiveService.Snapshot> snapshots = orders.stream()
+                .map(order -> new OrderArchiveService.Snapshot(
+                        order.getUser() != null ? order.getUser().getId() : null,
+                        mapToOrderResponse(order),
+                        order.getPayment() != null ? PaymentResponse.from(order.getPayment()) : null))
+                .collect(Collectors.toList());
+        orderArchiveService.archive(snapshots);
+
+        List<String> orderIds = orders.stream().map(Order::getId).collect(Collectors.toList());
+        paymentRepository.deleteByOrderIdIn(orderIds);
+        orderItemRepository.deleteByOrderIdIn(orderIds);
+        orderRepository.deleteAllByIdIn(orderIds);
+        return orders.size();
+    }
+
     private OrderResponse mapToOrderResponse(Order order) {
         List<OrderResponse.OrderItem> orderItems = orderItemRepository.findByOrder(order).stream()
                 .map(item -> new OrderResponse.OrderItem(
@@ -139,6 +410,8 @@ public class OrderService {
                 .status(order.getStatus())
                 .paymentReference(order.getPaymentReference())
                 .orderDate(order.getOrderDate())
+                .checkoutState(order.getCheckoutState())
+                .checkoutError(order.getCheckoutError())
                 .build();
     }
 }
\ No newline at end of file
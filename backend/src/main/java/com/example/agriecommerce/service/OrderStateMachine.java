@@ -0,0 +1,163 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.exception.ConflictException;
+import com.example.agriecommerce.exception.ResourceNotFoundException;
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderStatus;
+import com.example.agriecommerce.model.OrderStatusHistory;
+import com.example.agriecommerce.repository.OrderRepository;
+import com.example.agriecommerce.repository.OrderStatusHistoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Single entry point for order status changes. Transitions are checked against
+ * {@link OrderStatus#allowedTransitions()} and guarded by the order's
+ * {@code @Version}: a writer that loses the race re-reads the order and tries
+ * again in a fresh transaction, so no row lock is held between attempts. Every
+ * applied transition appends an {@link OrderStatusHistory} row and is passed to
+ * each {@link OrderStatusListener}.
+ */
+@Slf4j
+@Component
+public class OrderStateMachine {
+    public static final String SOURCE_CHECKOUT = "CHECKOUT";
+    public static final String SOURCE_ADMIN = "ADMIN";
+    public static final String SOURCE_BULK = "BULK_ADMIN";
+    public static final String SOURCE_PAYMENT = "PAYMENT";
+
+    private final OrderRepository orderRepository;
+    private final OrderStatusHistoryRepository historyRepository;
+    private final List<OrderStatusListener> listeners;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+
+    public OrderStateMachine(OrderRepository orderRepository,
+                             OrderStatusHistoryRepository historyRepository,
+                             List<OrderStatusListener> listeners,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.orders.state.max-attempts:5}") int maxAttempts) {
+        this.orderRepository = orderRepository;
+        this.historyRepository = historyRepository;
+        this.listeners = List.copyOf(listeners);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Moves the order to {@code target}, rejecting transitions the table does not
+     * allow. Moving an order to the status it already has is a no-op.
+     */
+    public Order transition(String orderId, OrderStatus target, String source) {
+        return execute(orderId, target, source, true);
+    }
+
+    /**
+     * Like {@link #transition} but returns empty instead of failing when the
+     * order's current status cannot move to {@code target}.
+     */
+    public Optional<Order> tryTransition(String orderId, OrderStatus target, String source) {
+        return Optional.ofNullable(execute(orderId, target, source, false));
+    }
+
+    /**
+     * Set-based transition for orders that are all expected to be in {@code from}.
+     * Runs in the caller's transaction; orders that moved on concurrently are
+     * skipped. Returns the ids that were changed.
+     */
+    public List<String> transitionAll(Collection<String> orderIds, OrderStatus from, OrderStatus to, String source) {
+        if (!from.canTransitionTo(to)) {
+            throw new BadRequestException("Orders cannot move from " + from + " to " + to);
+        }
+        List<String> changed = orderRepository.updateStatusReturningIds(orderIds, from, to);
+        Date now = new Date();
+        historyRepository.saveAll(changed.stream()
+                .map(orderId -> historyRow(orderId, from, to, source, now))
+                .collect(Collectors.toList()));
+        if (!changed.isEmpty()) {
+            listeners.forEach(listener -> listener.ordersTransitioned(changed, from, to));
+        }
+        return changed;
+    }
+
+    /**
+     * Appends a history row for a status change the caller has already applied
+     * within its own transaction. {@code from} is null for a newly created order.
+     */
+    public void record(Order order, OrderStatus from, OrderStatus to, String source) {
+        historyRepository.save(historyRow(order.getId(), from, to, source, new Date()));
+        listeners.forEach(listener -> listener.orderStatusChanged(order, from, to));
+    }
+
+    public List<OrderStatusHistory> history(String orderId) {
+        return historyRepository.findByOrderIdOrderByChangedAtAscIdAsc(orderId);
+    }
+
+    private Order execute(String orderId, OrderStatus target, String source, boolean strict) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(tx -> apply(orderId, target, source, strict));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new ConflictException("Order " + orderId + " is being updated concurrently, please retry", e);
+                }
+                log.debug("Version conflict moving order {} to {} (attempt {})", orderId, target, attempt);
+                backoff(attempt, orderId);
+            }
+        }
+    }
+
+    private Order apply(String orderId, OrderStatus target, String source, boolean strict) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+        OrderStatus current = order.getStatus();
+        if (current == target) {
+            return order;
+        }
+        if (!current.canTransitionTo(target)) {
+            if (strict) {
+                throw new BadRequestException("Order " + orderId + " cannot move from " + current + " to " + target);
+            }
+            return null;
+        }
+
+        order.setStatus(target);
+        // Flush now so a stale version fails here, inside the retry loop
+        Order saved = orderRepository.saveAndFlush(order);
+        record(saved, current, target, source);
+        return saved;
+    }
+
+    private void backoff(int attempt, String orderId) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while updating order " + orderId, e);
+        }
+    }
+
+    private static OrderStatusHistory historyRow(String orderId, OrderStatus from, OrderStatus to, String source, Date changedAt) {
+        return OrderStatusHistory.builder()
+                .orderId(orderId)
+                .fromStatus(from)
+                .toStatus(to)
+                .source(source)
+                .changedAt(changedAt)
+                .build();
+    }
+}
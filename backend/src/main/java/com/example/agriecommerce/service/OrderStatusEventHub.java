@@ -0,0 +1,208 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.OrderStatusEventResponse;
+import com.example.agriecommerce.model.OrderStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of order status transitions to Server-Sent Event subscribers.
+ * An idle subscriber holds only its emitter and a small bounded buffer; no thread
+ * is parked per client. Events are written by a small dispatcher pool, and a
+ * periodic heartbeat keeps proxies from closing idle streams and evicts dead clients.
+ */
+@Slf4j
+@Service
+public class OrderStatusEventHub implements OrderStatusListener {
+    private static final Object HEARTBEAT = new Object();
+    private static final Set<OrderStatus> TERMINAL_STATUSES =
+            EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.RETURNED);
+
+    private final ConcurrentHashMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong eventSequence = new AtomicLong();
+    private final long emitterTimeoutMs;
+    private final int bufferSize;
+    private final ExecutorService dispatcher;
+    private final ScheduledExecutorService heartbeat;
+
+    public OrderStatusEventHub(@Value("${app.orders.events.timeout-ms:1800000}") long emitterTimeoutMs,
+                               @Value("${app.orders.events.buffer-size:8}") int bufferSize,
+                               @Value("${app.orders.events.heartbeat-seconds:25}") long heartbeatSeconds,
+                               @Value("${app.orders.events.dispatcher-threads:2}") int dispatcherThreads) {
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.bufferSize = bufferSize;
+        this.dispatcher = Executors.newFixedThreadPool(dispatcherThreads, daemonThreads("order-events-"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(daemonThreads("order-events-heartbeat-"));
+        this.heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    public SseEmitter subscribe(String orderId, OrderStatus currentStatus) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(orderId, emitter);
+
+        subscribers.compute(orderId, (key, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        // Send the current status straight away so clients never miss a transition
+        // that happened between their last poll and the subscription.
+        subscriber.offer(event(orderId, null, currentStatus));
+        return emitter;
+    }
+
+    /**
+     * Publishes a transition to all subscribers of the order once the current
+     * transaction (if any) has committed.
+     */
+    public void publish(String orderId, OrderStatus previousStatus, OrderStatus status) {
+        if (previousStatus == status) {
+            return;
+        }
+        AfterCommit.run(() -> dispatch(event(orderId, previousStatus, status)));
+    }
+
+    @Override
+    public void ordersTransitioned(Collection<String> orderIds, OrderStatus from, OrderStatus to) {
+        orderIds.forEach(orderId -> publish(orderId, from, to));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void dispatch(OrderStatusEventResponse event) {
+        Set<Subscriber> targets = subscribers.get(event.getOrderId());
+        if (targets != null) {
+            targets.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    private void sendHeartbeats() {
+        subscribers.values().forEach(set -> set.forEach(Subscriber::heartbeat));
+    }
+
+    private OrderStatusEventResponse event(String orderId, OrderStatus previousStatus, OrderStatus status) {
+        return OrderStatusEventResponse.builder()
+                .orderId(orderId)
+                .previousStatus(previousStatus)
+                .status(status)
+                .changedAt(new Date())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Subscriber {
+        private final String orderId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Object> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(String orderId, SseEmitter emitter) {
+            this.orderId = orderId;
+            this.emitter = emitter;
+        }
+
+        void offer(Object item) {
+            if (closed) {
+                return;
+            }
+            // A slow client only ever needs the latest statuses: drop the oldest entry
+            // rather than letting the buffer grow.
+            while (!buffer.offer(item)) {
+                buffer.poll();
+            }
+            schedule();
+        }
+
+        void heartbeat() {
+            if (buffer.isEmpty()) {
+                offer(HEARTBEAT);
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Object item;
+                while (!closed && (item = buffer.poll()) != null) {
+                    if (item == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                        continue;
+                    }
+                    OrderStatusEventResponse event = (OrderStatusEventResponse) item;
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(eventSequence.incrementAndGet()))
+                            .name("status")
+                            .data(event));
+                    if (TERMINAL_STATUSES.contains(event.getStatus())) {
+                        emitter.complete();
+                        close();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping order event subscriber for {}: {}", orderId, e.getMessage());
+                close();
+            } finally {
+                scheduled.set(false);
+                if (!closed && !buffer.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+            subscribers.computeIfPresent(orderId, (key, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
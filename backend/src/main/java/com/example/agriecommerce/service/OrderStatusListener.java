@@ -0,0 +1,25 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderStatus;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Kept in step with order statuses by {@link OrderStateMachine}, which calls every
+ * listener bean inside the transaction that applied the change. Listeners holding
+ * in-memory state should defer it with {@link AfterCommit}.
+ */
+public interface OrderStatusListener {
+
+    /** One loaded order changed; {@code from} is null for a newly placed order. */
+    default void orderStatusChanged(Order order, OrderStatus from, OrderStatus to) {
+        if (from != null) {
+            ordersTransitioned(List.of(order.getId()), from, to);
+        }
+    }
+
+    /** A set-based update moved these orders from {@code from} to {@code to} without loading them. */
+    void ordersTransitioned(Collection<String> orderIds, OrderStatus from, OrderStatus to);
+}
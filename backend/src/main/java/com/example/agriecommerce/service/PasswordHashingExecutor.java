@@ -0,0 +1,68 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing work (login, registration) on a small fixed pool so a
+ * burst of logins can only ever occupy that many cores; request threads are
+ * released while the hash runs. Once the queue is full, further work is refused
+ * with 429 instead of piling up behind BCrypt.
+ */
+@Component
+public class PasswordHashingExecutor {
+    private final ThreadPoolExecutor workers;
+    private final Semaphore slots;
+    private final long retryAfterSeconds;
+
+    public PasswordHashingExecutor(@Value("${app.auth.hashing.threads:0}") int threads,
+                                   @Value("${app.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${app.auth.hashing.retry-after-seconds:2}") long retryAfterSeconds) {
+        // Default to half the cores so browsing always keeps the other half
+        int workerCount = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.retryAfterSeconds = retryAfterSeconds;
+        // One permit per queued or running task, so execute() can never be rejected
+        this.slots = new Semaphore(workerCount + queueCapacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!slots.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new TooManyRequestsException("Too many sign-in attempts right now, please retry shortly", retryAfterSeconds));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        workers.execute(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                slots.release();
+            }
+        });
+        return result;
+    }
+
+    public int getQueuedCount() {
+        return workers.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.agriecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provider-facing side of mobile money payments. Implementations must not block
+ * the calling thread: the returned future completes once the provider has
+ * accepted (or rejected) the STK push, and the final result arrives later as an
+ * {@link StkCallback}.
+ */
+public interface PaymentGateway {
+
+    CompletableFuture<StkPushAck> initiateStkPush(StkPushRequest request);
+
+    String name();
+
+    record StkPushRequest(String orderId, String phoneNumber, BigDecimal amount,
+                          String accountReference, String description) {}
+
+    record StkPushAck(String merchantRequestId, String checkoutRequestId, String customerMessage) {}
+
+    /** Final outcome of an STK push as reported by the provider. Result code 0 means paid. */
+    record StkCallback(String merchantRequestId, String checkoutRequestId, int resultCode, String resultDesc,
+                       BigDecimal amount, String receiptNumber, String phoneNumber) {
+        public static final int RESULT_CANCELLED_BY_USER = 1032;
+
+        public boolean isSuccess() {
+            return resultCode == 0;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.PaymentGatewayException;
+import com.example.agriecommerce.exception.PaymentGatewayTimeoutException;
+import com.example.agriecommerce.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guards calls to the configured {@link PaymentGateway}:
+ * <ul>
+ *     <li>a bulkhead caps in-flight calls and refuses the rest with 429,</li>
+ *     <li>every call gets a hard timeout,</li>
+ *     <li>a circuit breaker fails fast with 503 after repeated failures and lets a
+ *     single probe through once the cool-down has passed.</li>
+ * </ul>
+ * Results are handed back on a small completion pool so follow-up work never runs
+ * on the gateway's I/O or timer threads.
+ */
+@Slf4j
+@Component
+public class PaymentGatewayClient {
+    private final PaymentGateway gateway;
+    private final int maxConcurrent;
+    private final Semaphore bulkhead;
+    private final long timeoutMs;
+    private final int failureThreshold;
+    private final long openMs;
+    private final long retryAfterSeconds;
+    private final ExecutorService completionExecutor;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+
+    public PaymentGatewayClient(PaymentGateway gateway,
+                                @Value("${app.payments.gateway.max-concurrent:50}") int maxConcurrent,
+                                @Value("${app.payments.gateway.timeout-ms:5000}") long timeoutMs,
+                                @Value("${app.payments.gateway.breaker.failure-threshold:5}") int failureThreshold,
+                                @Value("${app.payments.gateway.breaker.open-ms:30000}") long openMs,
+                                @Value("${app.payments.gateway.completion-threads:4}") int completionThreads) {
+        this.gateway = gateway;
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.timeoutMs = timeoutMs;
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(openMs));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.completionExecutor = Executors.newFixedThreadPool(completionThreads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-gateway-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Using {} payment gateway", gateway.name());
+    }
+
+    public CompletableFuture<PaymentGateway.StkPushAck> initiateStkPush(PaymentGateway.StkPushRequest request) {
+        boolean probe;
+        try {
+            probe = acquireCircuit();
+        } catch (PaymentGatewayException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!bulkhead.tryAcquire()) {
+            if (probe) {
+                probeInFlight.set(false);
+            }
+            return CompletableFuture.failedFuture(
+                    new TooManyRequestsException("Payment provider is busy, please retry shortly", 1));
+        }
+
+        CompletableFuture<PaymentGateway.StkPushAck> call;
+        try {
+            call = gateway.initiateStkPush(request);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<PaymentGateway.StkPushAck> result = new CompletableFuture<>();
+        call.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((ack, error) -> {
+            bulkhead.release();
+            recordOutcome(error == null, probe);
+            completionExecutor.execute(() -> {
+                if (error == null) {
+                    result.complete(ack);
+                } else {
+                    result.completeExceptionally(translate(error));
+                }
+            });
+        });
+        return result;
+    }
+
+    public String getCircuitState() {
+        if (openUntil.get() == 0) {
+            return "CLOSED";
+        }
+        return System.currentTimeMillis() < openUntil.get() ? "OPEN" : "HALF_OPEN";
+    }
+
+    public int getInFlight() {
+        return maxConcurrent - bulkhead.availablePermits();
+    }
+
+    // Returns true when this call is the half-open probe.
+    private boolean acquireCircuit() {
+        long until = openUntil.get();
+        if (until == 0) {
+            return false;
+        }
+        if (System.currentTimeMillis() < until || !probeInFlight.compareAndSet(false, true)) {
+            throw new PaymentGatewayException("Payment provider is unavailable, please retry in "
+                    + retryAfterSeconds + " seconds");
+        }
+        return true;
+    }
+
+    private void recordOutcome(boolean success, boolean probe) {
+        if (success) {
+            consecutiveFailures.set(0);
+            if (openUntil.getAndSet(0) != 0) {
+                log.info("Payment gateway circuit closed");
+            }
+        } else if (probe || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil.set(System.currentTimeMillis() + openMs);
+            log.warn("Payment gateway circuit opened for {} ms", openMs);
+        }
+        if (probe) {
+            probeInFlight.set(false);
+        }
+    }
+
+    private static Throwable translate(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return new PaymentGatewayTimeoutException("Payment provider did not respond in time", cause);
+        }
+        if (cause instanceof PaymentGatewayException) {
+            return cause;
+        }
+        return new PaymentGatewayException("Payment provider request failed: " + cause.getMessage(), cause);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        completionExecutor.shutdown();
+    }
+}
@@ -0,0 +1,625 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.ReconciliationResponse;
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.exception.ResourceNotFoundException;
+import com.example.agriecommerce.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Reconciles an M-Pesa statement export against the payments table.
+ * <p>
+ * M-Pesa payments for the period are streamed through a cursor into a
+ * {@link LongIntHashMap} keyed by an encoded receipt number, with amounts and
+ * payment ids in flat arrays. The statement file is then split into byte ranges
+ * on line boundaries and probed against that map in parallel, each chunk writing
+ * its own report parts. A second cursor pass over the payments emits the ones no
+ * statement line claimed. Memory is proportional to the number of payments in the
+ * period, never to the size of the file.
+ */
+@Slf4j
+@Service
+public class PaymentReconciliationService {
+    public static final List<String> REPORTS = List.of("matched", "missing", "amount_mismatch", "orphans");
+    private static final Pattern RUN_ID = Pattern.compile("[0-9]{8}-[0-9]{6}-[a-f0-9]{6}");
+    private static final int READ_BUFFER = 1 << 20;
+    private static final String PAYMENTS_SQL =
+            "SELECT id, order_id, receipt_number, transaction_id, amount, status FROM payments " +
+                    "WHERE payment_method = 'MPESA' AND payment_date >= ? AND payment_date < ? " +
+                    "AND (receipt_number IS NOT NULL OR transaction_id IS NOT NULL)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path inboxDir;
+    private final Path reportDir;
+    private final int parallelism;
+    private final int fetchSize;
+    private final long matchWindowMinutes;
+    private final String receiptColumn;
+    private final String amountColumn;
+    private final ExecutorService workers;
+    private final Semaphore running = new Semaphore(1);
+
+    public PaymentReconciliationService(JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${app.payments.reconciliation.inbox-dir:/tmp/reconciliation/inbox}") String inboxDir,
+                                        @Value("${app.payments.reconciliation.report-dir:/tmp/reconciliation/reports}") String reportDir,
+                                        @Value("${app.payments.reconciliation.parallelism:4}") int parallelism,
+                                        @Value("${app.payments.reconciliation.fetch-size:5000}") int fetchSize,
+                                        @Value("${app.payments.reconciliation.match-window-minutes:1440}") long matchWindowMinutes,
+                                        @Value("${app.payments.reconciliation.receipt-column:Receipt No.}") String receiptColumn,
+                                        @Value("${app.payments.reconciliation.amount-column:Paid In}") String amountColumn) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.inboxDir = Paths.get(inboxDir).toAbsolutePath().normalize();
+        this.reportDir = Paths.get(reportDir).toAbsolutePath().normalize();
+        this.parallelism = Math.max(1, parallelism);
+        this.fetchSize = fetchSize;
+        this.matchWindowMinutes = matchWindowMinutes;
+        this.receiptColumn = receiptColumn;
+        this.amountColumn = amountColumn;
+        this.workers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-" + UUID.randomUUID().toString().substring(0, 4));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reconciles {@code fileName} from the inbox directory against payments made
+     * between {@code from} and {@code to} (inclusive dates). Only one run at a time.
+     */
+    public ReconciliationResponse reconcile(String fileName, LocalDate from, LocalDate to) throws IOException {
+        Path statement = resolveInboxFile(fileName);
+        if (to.isBefore(from)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        if (!running.tryAcquire()) {
+            throw new TooManyRequestsException("A reconciliation is already running", 30);
+        }
+        try {
+            return run(statement, from, to);
+        } finally {
+            running.release();
+        }
+    }
+
+    public Path reportFile(String runId, String report) {
+        if (!RUN_ID.matcher(runId).matches() || !REPORTS.contains(report)) {
+            throw new ResourceNotFoundException("Reconciliation report", "name", runId + "/" + report);
+        }
+        Path file = reportDir.resolve(runId).resolve(report + ".csv");
+        if (!Files.isRegularFile(file)) {
+            throw new ResourceNotFoundException("Reconciliation report", "name", runId + "/" + report);
+        }
+        return file;
+    }
+
+    private ReconciliationResponse run(Path statement, LocalDate from, LocalDate to) throws IOException {
+        long started = System.currentTimeMillis();
+        ZoneId zone = ZoneId.systemDefault();
+        Date periodStart = Date.from(from.atStartOfDay(zone).toInstant());
+        Date periodEnd = Date.from(to.plusDays(1).atStartOfDay(zone).toInstant());
+        // Statement lines near the period edges may belong to payments recorded just outside it
+        long window = TimeUnit.MINUTES.toMillis(matchWindowMinutes);
+
+        PaymentIndex index = loadPayments(new Date(periodStart.getTime() - window), new Date(periodEnd.getTime() + window));
+
+        String runId = String.format("%1$tY%1$tm%1$td-%1$tH%1$tM%1$tS-%2$s",
+                new Date(), UUID.randomUUID().toString().replace("-", "").substring(0, 6));
+        Path runDir = Files.createDirectories(reportDir.resolve(runId));
+
+        StatementLayout layout = readLayout(statement);
+        List<long[]> chunks = split(statement, layout.dataStart(), parallelism);
+        ChunkCounters counters = new ChunkCounters();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            long[] range = chunks.get(i);
+            int chunk = i;
+            futures.add(workers.submit(() -> {
+                probeChunk(statement, range[0], range[1], layout, index, runDir, chunk, counters);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new InterruptedIOException("Reconciliation interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof IOException io ? io : new IOException("Reconciliation failed", e.getCause());
+        }
+
+        merge(runDir, "matched", "receipt,payment_id,amount", chunks.size());
+        merge(runDir, "amount_mismatch", "receipt,payment_id,expected_amount,statement_amount", chunks.size());
+        merge(runDir, "orphans", "receipt,statement_amount,reason,line", chunks.size());
+        long missing = writeMissing(index, periodStart, periodEnd, runDir.resolve("missing.csv"));
+
+        Map<String, String> reports = new LinkedHashMap<>();
+        REPORTS.forEach(report -> reports.put(report, "/api/v1/admin/payments/reconciliations/" + runId + "/" + report));
+        ReconciliationResponse response = ReconciliationResponse.builder()
+                .runId(runId)
+                .file(statement.getFileName().toString())
+                .from(from)
+                .to(to)
+                .paymentsLoaded(index.size)
+                .statementRows(counters.rows.sum())
+                .unreadableRows(counters.unreadable.sum())
+                .matched(counters.matched.sum())
+                .amountMismatches(counters.mismatched.sum())
+                .orphans(counters.orphans.sum())
+                .missing(missing)
+                .chunks(chunks.size())
+                .elapsedMs(System.currentTimeMillis() - started)
+                .reports(reports)
+                .build();
+        log.info("Reconciled {}: {} matched, {} mismatched, {} orphans, {} missing in {} ms", statement.getFileName(),
+                response.getMatched(), response.getAmountMismatches(), response.getOrphans(), missing, response.getElapsedMs());
+        return response;
+    }
+
+    private Path resolveInboxFile(String fileName) {
+        Path file = inboxDir.resolve(fileName).normalize();
+        if (!file.startsWith(inboxDir) || !Files.isRegularFile(file)) {
+            throw new ResourceNotFoundException("Statement file", "name", fileName);
+        }
+        return file;
+    }
+
+    // ---- payments side -------------------------------------------------------------
+
+    private PaymentIndex loadPayments(Date from, Date to) {
+        PaymentIndex index = new PaymentIndex();
+        streamPayments(from, to, rs -> {
+            int entry = index.add(rs.getLong(1), toCents(rs.getBigDecimal(5)));
+            index.map(rs.getString(3), entry);
+            index.map(rs.getString(4), entry);
+        });
+        index.seal();
+        return index;
+    }
+
+    private long writeMissing(PaymentIndex index, Date from, Date to, Path file) throws IOException {
+        long[] missing = {0};
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("payment_id,order_id,receipt,amount,status\n");
+            streamPayments(from, to, rs -> {
+                String receipt = rs.getString(3) != null ? rs.getString(3) : rs.getString(4);
+                int entry = index.lookup(receipt);
+                if (entry >= 0 && index.isMatched(entry)) {
+                    return;
+                }
+                missing[0]++;
+                try {
+                    writer.write(rs.getLong(1) + "," + csv(rs.getString(2)) + "," + csv(receipt) + ","
+                            + formatCents(toCents(rs.getBigDecimal(5))) + "," + csv(rs.getString(6)) + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return missing[0];
+    }
+
+    private void streamPayments(Date from, Date to, RowCallbackHandler handler) {
+        // The PostgreSQL driver only honours the fetch size with autocommit off
+        readOnlyTransaction.executeWithoutResult(tx -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(PAYMENTS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, new Timestamp(from.getTime()));
+            ps.setTimestamp(2, new Timestamp(to.getTime()));
+            return ps;
+        }, handler));
+    }
+
+    // ---- statement side ------------------------------------------------------------
+
+    private StatementLayout readLayout(Path statement) throws IOException {
+        try (FileChannel channel = FileChannel.open(statement, StandardOpenOption.READ)) {
+            LineReader reader = new LineReader(channel, 0, channel.size());
+            String header = reader.next();
+            if (header == null) {
+                throw new BadRequestException("Statement file is empty");
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> columns = splitCsv(header);
+            int receipt = indexOf(columns, receiptColumn);
+            int amount = indexOf(columns, amountColumn);
+            if (receipt < 0 || amount < 0) {
+                throw new BadRequestException("Statement header must contain '" + receiptColumn + "' and '" + amountColumn
+                        + "' columns; found " + columns);
+            }
+            return new StatementLayout(receipt, amount, reader.position());
+        }
+    }
+
+    // Splits [dataStart, size) into byte ranges; each range later snaps to line starts.
+    private static List<long[]> split(Path statement, long dataStart, int parts) throws IOException {
+        long size = Files.size(statement);
+        long length = Math.max(0, size - dataStart);
+        int count = (int) Math.max(1, Math.min(parts, length / (4L * READ_BUFFER) + 1));
+        List<long[]> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = dataStart + length * i / count;
+            long end = i == count - 1 ? size : dataStart + length * (i + 1) / count;
+            chunks.add(new long[]{start, end});
+        }
+        return chunks;
+    }
+
+    private void probeChunk(Path statement, long start, long end, StatementLayout layout, PaymentIndex index,
+                            Path runDir, int chunk, ChunkCounters counters) throws IOException {
+        try (FileChannel channel = FileChannel.open(statement, StandardOpenOption.READ);
+             BufferedWriter matched = part(runDir, "matched", chunk);
+             BufferedWriter mismatched = part(runDir, "amount_mismatch", chunk);
+             BufferedWriter orphans = part(runDir, "orphans", chunk)) {
+            LineReader reader = new LineReader(channel, start, end);
+            if (start > layout.dataStart()) {
+                reader.skipPartialLine();
+            }
+            String line;
+            while ((line = reader.next()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                counters.rows.increment();
+                List<String> fields = splitCsv(line);
+                String receipt = field(fields, layout.receiptColumn());
+                long cents = parseCents(field(fields, layout.amountColumn()));
+                if (receipt == null || receipt.isBlank() || cents == Long.MIN_VALUE) {
+                    // Withdrawals and charges have no "paid in" amount; they are not ours to match
+                    counters.unreadable.increment();
+                    continue;
+                }
+                int entry = index.lookup(receipt);
+                if (entry < 0) {
+                    counters.orphans.increment();
+                    orphans.write(csv(receipt) + "," + formatCents(cents) + ",NOT_IN_PAYMENTS," + csv(line) + "\n");
+                } else if (!index.claim(entry)) {
+                    counters.orphans.increment();
+                    orphans.write(csv(receipt) + "," + formatCents(cents) + ",DUPLICATE_RECEIPT," + csv(line) + "\n");
+                } else if (index.cents(entry) != cents) {
+                    counters.mismatched.increment();
+                    mismatched.write(csv(receipt) + "," + index.paymentId(entry) + "," + formatCents(index.cents(entry))
+                            + "," + formatCents(cents) + "\n");
+                } else {
+                    counters.matched.increment();
+                    matched.write(csv(receipt) + "," + index.paymentId(entry) + "," + formatCents(cents) + "\n");
+                }
+            }
+        }
+    }
+
+    private static BufferedWriter part(Path runDir, String report, int chunk) throws IOException {
+        return Files.newBufferedWriter(runDir.resolve(report + ".part" + chunk), StandardCharsets.UTF_8);
+    }
+
+    private static void merge(Path runDir, String report, String header, int chunks) throws IOException {
+        Path target = runDir.resolve(report + ".csv");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            out.write((header + "\n").getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < chunks; i++) {
+                Path part = runDir.resolve(report + ".part" + i);
+                Files.copy(part, out);
+                Files.delete(part);
+            }
+        }
+    }
+
+    // ---- parsing helpers -----------------------------------------------------------
+
+    /**
+     * Encodes a receipt number as a non-zero long. Receipts of up to 12 letters and
+     * digits map one-to-one (bijective base 37, case-insensitive); anything else
+     * falls back to a 64-bit FNV-1a hash with the sign bit set so the two ranges
+     * never collide.
+     */
+    static long receiptKey(String receipt) {
+        int start = 0;
+        int end = receipt.length();
+        while (start < end && Character.isWhitespace(receipt.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(receipt.charAt(end - 1))) {
+            end--;
+        }
+        if (end == start) {
+            return 0;
+        }
+        if (end - start <= 12) {
+            long value = 0;
+            boolean encodable = true;
+            for (int i = start; i < end && encodable; i++) {
+                int digit = Character.digit(receipt.charAt(i), 36);
+                encodable = digit >= 0;
+                value = value * 37 + digit + 1;
+            }
+            if (encodable) {
+                return value;
+            }
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= Character.toUpperCase(receipt.charAt(i));
+            hash *= 0x100000001b3L;
+        }
+        return hash | Long.MIN_VALUE;
+    }
+
+    static long parseCents(String amount) {
+        if (amount == null) {
+            return Long.MIN_VALUE;
+        }
+        long units = 0;
+        int decimals = -1;
+        boolean digits = false;
+        boolean negative = false;
+        for (int i = 0; i < amount.length(); i++) {
+            char c = amount.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (decimals >= 2) {
+                    continue;
+                }
+                units = units * 10 + (c - '0');
+                digits = true;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c == '-' && !digits) {
+                negative = true;
+            } else if (c != ',' && c != ' ' && c != '"') {
+                return Long.MIN_VALUE;
+            }
+        }
+        if (!digits) {
+            return Long.MIN_VALUE;
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            units *= 10;
+        }
+        return negative ? -units : units;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private static String formatCents(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static int indexOf(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index).trim() : null;
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private record StatementLayout(int receiptColumn, int amountColumn, long dataStart) {}
+
+    private static final class ChunkCounters {
+        final LongAdder rows = new LongAdder();
+        final LongAdder unreadable = new LongAdder();
+        final LongAdder matched = new LongAdder();
+        final LongAdder mismatched = new LongAdder();
+        final LongAdder orphans = new LongAdder();
+    }
+
+    /**
+     * Payments for the period: receipt keys in a {@link LongIntHashMap} pointing at
+     * entries in flat id/amount arrays, plus a claim flag per entry that the chunk
+     * workers set atomically.
+     */
+    private static final class PaymentIndex {
+        private final LongIntHashMap keys = new LongIntHashMap(1 << 16);
+        private long[] paymentIds = new long[1 << 16];
+        private long[] cents = new long[1 << 16];
+        private AtomicIntegerArray claimed;
+        private int size;
+
+        int add(long paymentId, long amountCents) {
+            if (size == paymentIds.length) {
+                paymentIds = Arrays.copyOf(paymentIds, size * 2);
+                cents = Arrays.copyOf(cents, size * 2);
+            }
+            paymentIds[size] = paymentId;
+            cents[size] = amountCents;
+            return size++;
+        }
+
+        void map(String receipt, int entry) {
+            if (receipt != null) {
+                long key = receiptKey(receipt);
+                if (key != 0) {
+                    keys.putIfAbsent(key, entry);
+                }
+            }
+        }
+
+        void seal() {
+            claimed = new AtomicIntegerArray(Math.max(size, 1));
+        }
+
+        int lookup(String receipt) {
+            long key = receipt != null ? receiptKey(receipt) : 0;
+            return key != 0 ? keys.get(key) : -1;
+        }
+
+        boolean claim(int entry) {
+            return claimed.compareAndSet(entry, 0, 1);
+        }
+
+        boolean isMatched(int entry) {
+            return claimed.get(entry) != 0;
+        }
+
+        long paymentId(int entry) {
+            return paymentIds[entry];
+        }
+
+        long cents(int entry) {
+            return cents[entry];
+        }
+    }
+
+    /**
+     * Reads lines from a byte range of a file through a reusable direct buffer.
+     * A line belongs to the range it starts in, so consecutive ranges never share
+     * or drop a line. Statement exports are ASCII/UTF-8 with no embedded newlines.
+     */
+    private static final class LineReader {
+        private final FileChannel channel;
+        private final long end;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private long position;
+        private long bufferStart;
+        private boolean eof;
+
+        LineReader(FileChannel channel, long start, long end) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            this.position = start;
+            this.bufferStart = start;
+            buffer.limit(0);
+        }
+
+        long position() {
+            return position;
+        }
+
+        // Moves to the start of the next line unless already at one.
+        void skipPartialLine() throws IOException {
+            if (position == 0) {
+                return;
+            }
+            position--;
+            bufferStart = position;
+            buffer.limit(0);
+            int b;
+            while ((b = read()) >= 0 && b != '\n') {
+                // skip
+            }
+        }
+
+        String next() throws IOException {
+            if (position >= end) {
+                return null;
+            }
+            line.reset();
+            int b;
+            while ((b = read()) >= 0 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            if (b < 0 && line.size() == 0) {
+                return null;
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+
+        private int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                if (eof) {
+                    return -1;
+                }
+                bufferStart = position;
+                buffer.clear();
+                int read = channel.read(buffer, bufferStart);
+                buffer.flip();
+                if (read <= 0) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            position++;
+            return buffer.get() & 0xff;
+        }
+    }
+}
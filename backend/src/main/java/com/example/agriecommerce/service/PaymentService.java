@@ -2,52 +2,264 @@ package com.example.agriecommerce.service;
 
 import com.example.agriecommerce.dto.request.PaymentRequest;
 import com.example.agriecommerce.dto.response.PaymentResponse;
+import com.example.agriecommerce.exception.ConflictException;
+import com.example.agriecommerce.exception.PaymentGatewayTimeoutException;
 import com.example.agriecommerce.exception.ResourceNotFoundException;
 import com.example.agriecommerce.model.*;
 import com.example.agriecommerce.repository.OrderRepository;
 import com.example.agriecommerce.repository.PaymentRepository;
 import com.example.agriecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.math.BigDecimal;
-import java.util.Date;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class PaymentService {
+    private static final Set<PaymentStatus> RETRYABLE =
+            EnumSet.of(PaymentStatus.FAILED, PaymentStatus.CANCELLED, PaymentStatus.REFUNDED);
+
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
+    private final OrderStateMachine orderStateMachine;
+    private final PaymentGatewayClient paymentGatewayClient;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+
+    @Value("${app.payments.status.max-wait-seconds:30}")
+    private long maxStatusWaitSeconds;
+
+    @Value("${app.payments.gateway.unacknowledged-window-minutes:15}")
+    private long unacknowledgedWindowMinutes;
 
-    public PaymentResponse processPayment(Long userId, PaymentRequest paymentRequest) {
+    /**
+     * Records the payment and, for M-Pesa, starts an STK push without blocking
+     * the caller. The returned payment stays PENDING until the provider's
+     * callback arrives (see {@link #applyStkCallbacks}). Rejected with a conflict
+     * while the order's payment is still pending, paid or under review.
+     * <p>
+     * Only a rejection by the provider fails the payment. When the push times out
+     * the phone may still get the prompt, so the payment stays PENDING without a
+     * checkout request id until a callback is paired with it or the pairing window
+     * closes (see {@link #expireUnacknowledged}).
+     */
+    public CompletableFuture<PaymentResponse> processPayment(Long userId, PaymentRequest paymentRequest) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
 
         Order order = orderRepository.findById(paymentRequest.getOrderId())
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", paymentRequest.getOrderId()));
 
+        PaymentMethod paymentMethod = paymentRequest.getPaymentMethod();
+        String phoneNumber = paymentMethod != PaymentMethod.MPESA ? null
+                : paymentRequest.getPhoneNumber() != null ? paymentRequest.getPhoneNumber() : order.getCustomerPhone();
+        Payment savedPayment = paymentRepository.findByOrderId(order.getId())
+                .map(existing -> retry(existing, user, order, paymentMethod, phoneNumber))
+                .orElseGet(() -> create(user, order, paymentMethod, phoneNumber));
+
+        if (paymentMethod != PaymentMethod.MPESA) {
+            return CompletableFuture.completedFuture(mapToPaymentResponse(savedPayment));
+        }
+
+        PaymentGateway.StkPushRequest stkPush = new PaymentGateway.StkPushRequest(
+                order.getId(),
+                phoneNumber,
+                order.getTotal(),
+                paymentRequest.getAccountReference() != null ? paymentRequest.getAccountReference() : order.getId(),
+                paymentRequest.getTransactionDesc() != null ? paymentRequest.getTransactionDesc() : "Order " + order.getId());
+
+        return paymentGatewayClient.initiateStkPush(stkPush)
+                .handle((ack, error) -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof PaymentGatewayTimeoutException) {
+                        log.warn("STK push for payment {} timed out; leaving it pending", savedPayment.getId());
+                        return mapToPaymentResponse(savedPayment);
+                    }
+                    if (error != null) {
+                        savedPayment.setStatus(PaymentStatus.FAILED);
+                        paymentRepository.save(savedPayment);
+                        throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                    }
+                    savedPayment.setMerchantRequestId(ack.merchantRequestId());
+                    savedPayment.setCheckoutRequestId(ack.checkoutRequestId());
+                    return mapToPaymentResponse(paymentRepository.save(savedPayment));
+                });
+    }
+
+    // An order has a single payment row; a failed, cancelled or refunded one is reused for the next attempt
+    private Payment retry(Payment existing, User user, Order order, PaymentMethod paymentMethod, String phoneNumber) {
+        if (!RETRYABLE.contains(existing.getStatus())
+                || paymentRepository.resetForRetry(existing.getId(), user, order.getTotal(), paymentMethod,
+                        new Date(), phoneNumber, RETRYABLE) == 0) {
+            throw new ConflictException("Order " + order.getId() + " already has a payment that is "
+                    + existing.getStatus().name().toLowerCase(Locale.ROOT).replace('_', ' '));
+        }
+        return paymentRepository.findById(existing.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Payment", "id", existing.getId()));
+    }
+
+    private Payment create(User user, Order order, PaymentMethod paymentMethod, String phoneNumber) {
         Payment payment = new Payment();
         payment.setOrder(order);
         payment.setUser(user);
         payment.setAmount(order.getTotal());
-        payment.setPaymentMethod(paymentRequest.getPaymentMethod());
+        payment.setPaymentMethod(paymentMethod);
+        payment.setPhoneNumber(phoneNumber);
         payment.setStatus(PaymentStatus.PENDING);
         payment.setPaymentDate(new Date());
+        try {
+            return paymentRepository.save(payment);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request created the order's payment first
+            throw new ConflictException("A payment for order " + order.getId() + " is already in progress", e);
+        }
+    }
+
+    /**
+     * Applies a batch of provider results in one transaction: matching PENDING
+     * payments are settled and orders of successful payments confirmed with a
+     * single set-based transition. A success for an amount other than the one
+     * charged is held as UNDER_REVIEW and does not confirm the order. Returns the
+     * checkout request ids that matched a payment; the rest arrived before their
+     * STK push was recorded, or belong to a push that timed out and could not be
+     * paired with its payment yet.
+     */
+    @Transactional
+    public Set<String> applyStkCallbacks(Collection<PaymentGateway.StkCallback> callbacks) {
+        Map<String, PaymentGateway.StkCallback> byCheckoutRequestId = new HashMap<>();
+        callbacks.forEach(callback -> byCheckoutRequestId.put(callback.checkoutRequestId(), callback));
+
+        Set<String> matched = new HashSet<>();
+        List<Payment> settled = new ArrayList<>();
+        List<String> paidOrderIds = new ArrayList<>();
+        List<Payment> payments = new ArrayList<>(paymentRepository.findByCheckoutRequestIdIn(byCheckoutRequestId.keySet()));
+        payments.addAll(pairUnacknowledged(byCheckoutRequestId, payments));
+        for (Payment payment : payments) {
+            matched.add(payment.getCheckoutRequestId());
+            if (payment.getStatus() != PaymentStatus.PENDING) {
+                continue;
+            }
+            PaymentGateway.StkCallback callback = byCheckoutRequestId.get(payment.getCheckoutRequestId());
+            if (callback.isSuccess() && !isChargedAmount(payment, callback.amount())) {
+                log.warn("M-Pesa callback {} reports {} for payment {} of {}; holding for review",
+                        callback.checkoutRequestId(), callback.amount(), payment.getId(), payment.getAmount());
+                payment.setStatus(PaymentStatus.UNDER_REVIEW);
+                payment.setReceiptNumber(callback.receiptNumber());
+                payment.setTransactionId(callback.receiptNumber());
+            } else if (callback.isSuccess()) {
+                payment.setStatus(PaymentStatus.SUCCESS);
+                payment.setReceiptNumber(callback.receiptNumber());
+                payment.setTransactionId(callback.receiptNumber());
+                paidOrderIds.add(payment.getOrder().getId());
+            } else {
+                payment.setStatus(callback.resultCode() == PaymentGateway.StkCallback.RESULT_CANCELLED_BY_USER
+                        ? PaymentStatus.CANCELLED : PaymentStatus.FAILED);
+            }
+            settled.add(payment);
+        }
 
-        // Simulate payment processing
-        if (paymentRequest.getPaymentMethod() == PaymentMethod.MPESA) {
-            payment.setTransactionId("MPESA-" + System.currentTimeMillis());
-            payment.setReceiptNumber("RCPT-" + System.currentTimeMillis());
-            payment.setStatus(PaymentStatus.SUCCESS);
+        paymentRepository.saveAll(settled);
+        Map<String, PaymentResponse> responses = new HashMap<>();
+        settled.forEach(payment -> responses.put(payment.getCheckoutRequestId(), mapToPaymentResponse(payment)));
+        paymentStatusNotifier.publish(responses);
+        // Orders an admin already moved past PENDING are left alone
+        if (!paidOrderIds.isEmpty()) {
+            orderStateMachine.transitionAll(paidOrderIds, OrderStatus.PENDING, OrderStatus.CONFIRMED,
+                    OrderStateMachine.SOURCE_PAYMENT);
+        }
+        return matched;
+    }
 
-            // Update order status
-            order.setStatus(OrderStatus.CONFIRMED);
-            orderRepository.save(order);
+    /**
+     * Pairs successful callbacks whose checkout request id is unknown with M-Pesa
+     * payments whose STK push timed out within the pairing window. A callback is
+     * paired only when exactly one such payment has its phone number and charged
+     * amount; failures carry neither, so those payments wait for the window to close.
+     */
+    private List<Payment> pairUnacknowledged(Map<String, PaymentGateway.StkCallback> byCheckoutRequestId,
+                                             List<Payment> known) {
+        Set<String> knownIds = new HashSet<>();
+        known.forEach(payment -> knownIds.add(payment.getCheckoutRequestId()));
+        List<PaymentGateway.StkCallback> unknown = new ArrayList<>();
+        byCheckoutRequestId.values().forEach(callback -> {
+            if (!knownIds.contains(callback.checkoutRequestId()) && callback.isSuccess() && callback.phoneNumber() != null) {
+                unknown.add(callback);
+            }
+        });
+        if (unknown.isEmpty()) {
+            return List.of();
         }
 
-        Payment savedPayment = paymentRepository.save(payment);
-        return mapToPaymentResponse(savedPayment);
+        List<Payment> waiting = paymentRepository.findUnacknowledgedMpesaSince(new Date(
+                System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(unacknowledgedWindowMinutes)));
+        List<Payment> paired = new ArrayList<>();
+        for (PaymentGateway.StkCallback callback : unknown) {
+            List<Payment> candidates = new ArrayList<>();
+            for (Payment payment : waiting) {
+                if (samePhoneNumber(payment.getPhoneNumber(), callback.phoneNumber())
+                        && isChargedAmount(payment, callback.amount())) {
+                    candidates.add(payment);
+                }
+            }
+            if (candidates.size() != 1) {
+                if (!candidates.isEmpty()) {
+                    log.warn("M-Pesa callback {} fits {} unacknowledged payments; leaving it for reconciliation",
+                            callback.checkoutRequestId(), candidates.size());
+                }
+                continue;
+            }
+            Payment payment = candidates.get(0);
+            log.info("Pairing M-Pesa callback {} with unacknowledged payment {}", callback.checkoutRequestId(), payment.getId());
+            payment.setMerchantRequestId(callback.merchantRequestId());
+            payment.setCheckoutRequestId(callback.checkoutRequestId());
+            waiting.remove(payment);
+            paired.add(payment);
+        }
+        return paired;
+    }
+
+    /**
+     * Fails M-Pesa payments whose STK push was never acknowledged once no callback
+     * can be paired with them any more, so the order can be paid again. A payment
+     * the buyer completed regardless shows up in reconciliation as an orphan receipt.
+     */
+    @Scheduled(fixedDelayString = "${app.payments.gateway.unacknowledged-sweep-ms:60000}")
+    public void expireUnacknowledged() {
+        int expired = paymentRepository.failUnacknowledgedMpesaBefore(new Date(
+                System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(unacknowledgedWindowMinutes)));
+        if (expired > 0) {
+            log.warn("Failed {} M-Pesa payments whose STK push was never acknowledged", expired);
+        }
+    }
+
+    // Numbers are compared on their last nine digits, so 07..., 2547... and +2547... agree
+    private static boolean samePhoneNumber(String a, String b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        String left = a.replaceAll("\\D", "");
+        String right = b.replaceAll("\\D", "");
+        return left.length() >= 9 && right.length() >= 9
+                && left.regionMatches(left.length() - 9, right, right.length() - 9, 9);
+    }
+
+    // Daraja charges whole shillings, rounding the order total up
+    private static boolean isChargedAmount(Payment payment, BigDecimal amount) {
+        return amount != null && (amount.compareTo(payment.getAmount()) == 0
+                || amount.compareTo(payment.getAmount().setScale(0, RoundingMode.CEILING)) == 0);
     }
 
     public PaymentResponse getPaymentStatus(String transactionId) {
@@ -56,16 +268,28 @@ public class PaymentService {
         return mapToPaymentResponse(payment);
     }
 
+    public PaymentResponse getMpesaPaymentStatus(String checkoutRequestId) {
+        Payment payment = paymentRepository.findByCheckoutRequestId(checkoutRequestId)
+                .orElseThrow(() -> new ResourceNotFoundException("Payment", "checkoutRequestId", checkoutRequestId));
+        return mapToPaymentResponse(payment);
+    }
+
+    /**
+     * Long poll: completes as soon as the payment leaves PENDING, or with the
+     * current status after {@code waitSeconds} (capped). A wait of 0 answers at once.
+     */
+    public DeferredResult<PaymentResponse> awaitMpesaPaymentStatus(String checkoutRequestId, long waitSeconds) {
+        PaymentResponse current = getMpesaPaymentStatus(checkoutRequestId);
+        if (waitSeconds <= 0 || current.getStatus() != PaymentStatus.PENDING) {
+            DeferredResult<PaymentResponse> result = new DeferredResult<>();
+            result.setResult(current);
+            return result;
+        }
+        long timeoutMs = TimeUnit.SECONDS.toMillis(Math.min(waitSeconds, maxStatusWaitSeconds));
+        return paymentStatusNotifier.await(checkoutRequestId, timeoutMs, () -> getMpesaPaymentStatus(checkoutRequestId));
+    }
+
     private PaymentResponse mapToPaymentResponse(Payment payment) {
-        return PaymentResponse.builder()
-                .id(payment.getId())
-                .orderId(payment.getOrder().getId())
-                .amount(payment.getAmount())
-                .paymentMethod(payment.getPaymentMethod())
-                .status(payment.getStatus())
-                .transactionId(payment.getTransactionId())
-                .receiptNumber(payment.getReceiptNumber())
-                .paymentDate(payment.getPaymentDate())
-                .build();
+        return PaymentResponse.from(payment);
     }
 }
\ No newline at end of file
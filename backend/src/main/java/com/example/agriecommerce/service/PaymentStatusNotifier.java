@@ -0,0 +1,82 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.PaymentResponse;
+import com.example.agriecommerce.model.PaymentStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * In-process registry of long-polling clients waiting for an M-Pesa payment to
+ * leave PENDING, keyed by checkout request id. A waiter is just a parked
+ * {@link DeferredResult}; it holds no thread and is completed by whoever settles
+ * the payment, or with the then-current status when its wait runs out.
+ */
+@Component
+public class PaymentStatusNotifier {
+    private final ConcurrentHashMap<String, Set<DeferredResult<PaymentResponse>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private final int maxWaiters;
+
+    public PaymentStatusNotifier(@Value("${app.payments.status.max-waiters:10000}") int maxWaiters) {
+        this.maxWaiters = maxWaiters;
+    }
+
+    /**
+     * Parks the caller until the payment settles or {@code timeoutMs} passes.
+     * {@code current} is read after registering so a settlement that lands in
+     * between is never missed; it is read again on timeout.
+     */
+    public DeferredResult<PaymentResponse> await(String checkoutRequestId, long timeoutMs, Supplier<PaymentResponse> current) {
+        DeferredResult<PaymentResponse> result = new DeferredResult<>(timeoutMs, current);
+        if (waiterCount.incrementAndGet() > maxWaiters) {
+            // Too many parked clients: answer now and let them poll again
+            waiterCount.decrementAndGet();
+            result.setResult(current.get());
+            return result;
+        }
+        waiters.computeIfAbsent(checkoutRequestId, key -> ConcurrentHashMap.newKeySet()).add(result);
+        result.onCompletion(() -> remove(checkoutRequestId, result));
+
+        PaymentResponse now = current.get();
+        if (now.getStatus() != PaymentStatus.PENDING) {
+            result.setResult(now);
+        }
+        return result;
+    }
+
+    /**
+     * Completes everyone waiting on these payments, keyed by checkout request id,
+     * once the current transaction has committed.
+     */
+    public void publish(Map<String, PaymentResponse> settled) {
+        if (settled.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> settled.forEach((checkoutRequestId, payment) -> {
+            Set<DeferredResult<PaymentResponse>> parked = waiters.get(checkoutRequestId);
+            if (parked != null) {
+                parked.forEach(result -> result.setResult(payment));
+            }
+        }));
+    }
+
+    public int getWaiterCount() {
+        return waiterCount.get();
+    }
+
+    private void remove(String checkoutRequestId, DeferredResult<PaymentResponse> result) {
+        waiters.computeIfPresent(checkoutRequestId, (key, set) -> {
+            if (set.remove(result)) {
+                waiterCount.decrementAndGet();
+            }
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -8,6 +8,7 @@ import com.example.agriecommerce.model.ProductStatus;
 import com.example.agriecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -17,7 +18,11 @@ import java.util.stream.Collectors;
 public class ProductService {
     private final ProductRepository productRepository;
     private final CategoryService categoryService;
+    private final DashboardRollupService dashboardRollupService;
+    private final BusinessCounters businessCounters;
+    private final StockAlertService stockAlertService;
 
+    @Transactional
     public ProductResponse createProduct(ProductRequest productRequest) {
         Product product = new Product();
         product.setName(productRequest.getName());
@@ -26,13 +31,18 @@ public class ProductService {
         product.setCategory(productRequest.getCategory());
         product.setUnitType(productRequest.getUnitType());
         product.setStock(productRequest.getStock());
+        product.setReorderThreshold(productRequest.getReorderThreshold() != null
+                ? productRequest.getReorderThreshold() : stockAlertService.defaultThreshold(productRequest.getUnitType()));
         product.setImageUrl(productRequest.getImageUrl());
         product.setOrganic(productRequest.getIsOrganic());
 
         Product savedProduct = productRepository.save(product);
+        dashboardRollupService.productCreated(savedProduct.getCreatedAt());
+        businessCounters.productChanged(null, BusinessCounters.ProductState.of(savedProduct));
         return mapToProductResponse(savedProduct);
     }
 
+    @Transactional(readOnly = true)
     public List<ProductResponse> getAllProducts() {
         return productRepository.findByStatusIn(List.of(ProductStatus.APPROVED, ProductStatus.ACTIVE))
                 .stream()
@@ -40,6 +50,7 @@ public class ProductService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public ProductResponse getProductById(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
@@ -49,6 +60,7 @@ public class ProductService {
     public ProductResponse updateProduct(Long id, ProductRequest productRequest) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
+        BusinessCounters.ProductState before = BusinessCounters.ProductState.of(product);
 
         product.setName(productRequest.getName());
         product.setDescription(productRequest.getDescription());
@@ -56,19 +68,27 @@ public class ProductService {
         product.setCategory(productRequest.getCategory());
         product.setUnitType(productRequest.getUnitType());
         product.setStock(productRequest.getStock());
+        if (productRequest.getReorderThreshold() != null) {
+            product.setReorderThreshold(productRequest.getReorderThreshold());
+        }
         product.setImageUrl(productRequest.getImageUrl());
         product.setOrganic(productRequest.getIsOrganic());
 
         Product updatedProduct = productRepository.save(product);
+        businessCounters.productChanged(before, BusinessCounters.ProductState.of(updatedProduct));
         return mapToProductResponse(updatedProduct);
     }
 
+    @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
         productRepository.delete(product);
+        dashboardRollupService.productDeleted(product.getCreatedAt());
+        businessCounters.productChanged(BusinessCounters.ProductState.of(product), null);
     }
 
+    @Transactional(readOnly = true)
     public List<ProductResponse> getProductsByCategory(String category) {
         return productRepository.findByCategory(category).stream()
                 .map(this::mapToProductResponse)
@@ -84,6 +104,7 @@ public class ProductService {
                 .category(product.getCategory())
                 .unitType(product.getUnitType())
                 .stock(product.getStock())
+                .reorderThreshold(product.getReorderThreshold())
                 .imageUrl(product.getImageUrl())
                 .isOrganic(product.getOrganic())
                 .build();
@@ -0,0 +1,152 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.RateLimitStatsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-client token buckets for each route policy, implemented as GCRA: a bucket
+ * is one {@link AtomicLong} holding the time at which it will be full again, and
+ * taking a token is a single compare-and-set. A bucket that has refilled holds
+ * no information, so idle buckets are dropped by a sweeper and the map stays
+ * bounded by the number of recently active clients.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+    public static final long ALLOWED = 0;
+
+    private final List<Policy> policies = new ArrayList<>();
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final int maxBuckets;
+    private final AtomicLong lastOverflowSweep = new AtomicLong();
+
+    public RateLimiter(@Value("${app.ratelimit.max-tracked-clients:200000}") int maxBuckets,
+                       @Value("${app.ratelimit.auth.capacity:10}") int authCapacity,
+                       @Value("${app.ratelimit.auth.per-minute:10}") int authPerMinute,
+                       @Value("${app.ratelimit.catalog.capacity:60}") int catalogCapacity,
+                       @Value("${app.ratelimit.catalog.per-minute:300}") int catalogPerMinute,
+                       @Value("${app.ratelimit.default.capacity:100}") int defaultCapacity,
+                       @Value("${app.ratelimit.default.per-minute:600}") int defaultPerMinute) {
+        this.maxBuckets = maxBuckets;
+        // First matching prefix wins
+        policies.add(new Policy("auth", List.of("/api/v1/auth/login", "/api/v1/auth/register", "/api/v1/auth/refresh"),
+                authCapacity, authPerMinute));
+        policies.add(new Policy("catalog", List.of("/api/v1/products", "/api/v1/categories"),
+                catalogCapacity, catalogPerMinute));
+        policies.add(new Policy("default", List.of("/api/"), defaultCapacity, defaultPerMinute));
+    }
+
+    /** Returns the policy governing {@code path}, or null when the path is not limited. */
+    public Policy policyFor(String path) {
+        for (Policy policy : policies) {
+            for (String prefix : policy.prefixes) {
+                if (path.startsWith(prefix)) {
+                    return policy;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a token from the client's bucket under {@code policy}. Returns
+     * {@link #ALLOWED}, or the nanoseconds until a token will be available.
+     */
+    public long tryAcquire(Policy policy, String clientKey) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(policy.name + clientKey);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                sweepOnOverflow(now);
+            }
+            bucket = buckets.computeIfAbsent(policy.name + clientKey, key -> new AtomicLong(now));
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long start = fullAt - now < 0 ? now : fullAt;
+            long wait = start - now - policy.burstTolerance;
+            if (wait > 0) {
+                policy.throttled.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, start + policy.emissionInterval)) {
+                policy.allowed.increment();
+                return ALLOWED;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.ratelimit.sweep-interval-ms:30000}")
+    public void sweepIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    public RateLimitStatsResponse getStats() {
+        List<RateLimitStatsResponse.PolicyStats> stats = new ArrayList<>();
+        for (Policy policy : policies) {
+            stats.add(RateLimitStatsResponse.PolicyStats.builder()
+                    .name(policy.getName())
+                    .capacity(policy.capacity)
+                    .perMinute(policy.perMinute)
+                    .allowed(policy.allowed.sum())
+                    .throttled(policy.throttled.sum())
+                    .build());
+        }
+        return RateLimitStatsResponse.builder()
+                .trackedClients(buckets.size())
+                .maxTrackedClients(maxBuckets)
+                .policies(stats)
+                .build();
+    }
+
+    // At most once a second: drop refilled buckets, and if that is not enough, forget
+    // arbitrary ones. Forgotten clients simply start again with a full bucket.
+    private void sweepOnOverflow(long now) {
+        long last = lastOverflowSweep.get();
+        if (now - last < TimeUnit.SECONDS.toNanos(1) || !lastOverflowSweep.compareAndSet(last, now)) {
+            return;
+        }
+        sweepIdleBuckets();
+        var iterator = buckets.keySet().iterator();
+        while (buckets.size() >= maxBuckets && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        log.warn("Rate limiter tracked {} clients, at its limit of {}", buckets.size(), maxBuckets);
+    }
+
+    public static final class Policy {
+        private final String name;
+        private final List<String> prefixes;
+        private final int capacity;
+        private final int perMinute;
+        private final long emissionInterval;
+        private final long burstTolerance;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+
+        Policy(String name, List<String> prefixes, int capacity, int perMinute) {
+            this.name = name + ":";
+            this.prefixes = prefixes;
+            this.capacity = capacity;
+            this.perMinute = perMinute;
+            this.emissionInterval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            this.burstTolerance = emissionInterval * (Math.max(1, capacity) - 1);
+        }
+
+        public String getName() {
+            return name.substring(0, name.length() - 1);
+        }
+    }
+}
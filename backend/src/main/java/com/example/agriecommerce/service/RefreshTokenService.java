@@ -2,96 +2,130 @@ package com.example.agriecommerce.service;
 
 import com.example.agriecommerce.config.JwtConfig;
 import com.example.agriecommerce.exception.TokenRefreshException;
-import com.example.agriecommerce.exception.ResourceNotFoundException;
 import com.example.agriecommerce.model.RefreshToken;
-import com.example.agriecommerce.model.User;
 import com.example.agriecommerce.repository.RefreshTokenRepository;
 import com.example.agriecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.Instant;
-import java.util.Optional;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.UUID;
 
+/**
+ * Refresh tokens, one family per signed-in device. Clients hold a random token;
+ * the table holds its SHA-256, so a database leak yields nothing usable. Every
+ * refresh rotates the token. Presenting a token that was already rotated means
+ * it was copied, and the whole family is revoked.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class RefreshTokenService {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
     private final JwtConfig jwtConfig;
 
-    public Optional<RefreshToken> findByToken(String token) {
-        return refreshTokenRepository.findByToken(token);
-    }
-
-    @Transactional
-    public RefreshToken createRefreshToken(Long userId) {
-        try {
-            // First check if token already exists for this user
-            Optional<RefreshToken> existingToken = refreshTokenRepository.findByUserId(userId);
-
-            if (existingToken.isPresent()) {
-                // Update existing token
-                RefreshToken token = existingToken.get();
-                token.setToken(UUID.randomUUID().toString());
-                token.setExpiryDate(Instant.now().plusMillis(jwtConfig.getJwtRefreshExpirationMs()));
-                log.debug("Updated existing refresh token for user ID: {}", userId);
-                return refreshTokenRepository.save(token);
-            }
+    @Value("${app.auth.refresh.purge-chunk-size:1000}")
+    private int purgeChunkSize;
 
-            // Create new token if none exists
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+    public record Rotation(RefreshTokenRepository.TokenLookup previous, String token) {}
 
-            RefreshToken refreshToken = new RefreshToken();
-            refreshToken.setUser(user);
-            refreshToken.setExpiryDate(Instant.now().plusMillis(jwtConfig.getJwtRefreshExpirationMs()));
-            refreshToken.setToken(UUID.randomUUID().toString());
+    /** Starts a new family for a fresh sign-in; returns the token to hand to the client. */
+    @Transactional
+    public String createRefreshToken(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
 
-            log.debug("Created new refresh token for user ID: {}", userId);
-            return refreshTokenRepository.save(refreshToken);
+    /**
+     * Exchanges {@code token} for its successor in the same family, with a single
+     * lookup that also returns the user columns the auth response needs.
+     */
+    @Transactional(noRollbackFor = TokenRefreshException.class)
+    public Rotation rotate(String token) {
+        String tokenHash = hash(token);
+        RefreshTokenRepository.TokenLookup current = refreshTokenRepository.findLookupByTokenHash(tokenHash)
+                .orElseThrow(() -> new TokenRefreshException(mask(token), "Refresh token not found"));
 
-        } catch (DataIntegrityViolationException e) {
-            log.error("Duplicate token detected for user ID: {}. Cleaning up and retrying.", userId);
-            // If we still hit a constraint violation, clean up and retry
-            refreshTokenRepository.deleteByUserId(userId);
-            return createRefreshToken(userId); // Recursive retry
+        if (current.getExpiresAt().isBefore(Instant.now())) {
+            throw new TokenRefreshException(mask(token),
+                    "Refresh token was expired. Please make a new signin request");
         }
+        if (current.getRotatedAt() != null || refreshTokenRepository.markRotated(current.getId(), Instant.now()) == 0) {
+            int revoked = refreshTokenRepository.deleteByFamilyId(current.getFamilyId());
+            log.warn("Refresh token reuse for user {}; revoked family {} ({} tokens)",
+                    current.getUserId(), current.getFamilyId(), revoked);
+            throw new TokenRefreshException(mask(token), "Refresh token was already used. Please sign in again");
+        }
+        return new Rotation(current, issue(current.getUserId(), current.getFamilyId()));
     }
 
-    public RefreshToken verifyExpiration(RefreshToken token) {
-        if (token.getExpiryDate().compareTo(Instant.now()) < 0) {
-            refreshTokenRepository.delete(token);
-            throw new TokenRefreshException(token.getToken(),
-                    "Refresh token was expired. Please make a new signin request");
-        }
-        return token;
+    /** Signs out one device: revokes the family the token belongs to. */
+    @Transactional
+    public void deleteByToken(String token) {
+        refreshTokenRepository.findFamilyIdByTokenHash(hash(token))
+                .ifPresent(refreshTokenRepository::deleteByFamilyId);
     }
 
+    /** Signs the user out everywhere. */
     @Transactional
     public void deleteByUserId(Long userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new ResourceNotFoundException("User", "id", userId);
+        int deleted = refreshTokenRepository.deleteByUserId(userId);
+        log.debug("Deleted {} refresh tokens for user ID: {}", deleted, userId);
+    }
+
+    /** Deletes expired tokens in small chunks, each its own transaction, so the purge never holds long locks. */
+    @Scheduled(fixedDelayString = "${app.auth.refresh.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        long total = 0;
+        int deleted;
+        do {
+            deleted = refreshTokenRepository.deleteExpiredChunk(now, purgeChunkSize);
+            total += deleted;
+        } while (deleted == purgeChunkSize);
+        if (total > 0) {
+            log.info("Purged {} expired refresh tokens", total);
         }
-        refreshTokenRepository.deleteByUserId(userId);
-        log.debug("Deleted refresh tokens for user ID: {}", userId);
     }
 
-    @Transactional
-    public void deleteByToken(String token) {
-        refreshTokenRepository.findByToken(token)
-                .ifPresent(refreshToken -> {
-                    refreshTokenRepository.delete(refreshToken);
-                    log.debug("Deleted refresh token: {}", token);
-                });
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Instant now = Instant.now();
+        refreshTokenRepository.save(RefreshToken.builder()
+                .user(userRepository.getReferenceById(userId))
+                .tokenHash(hash(token))
+                .familyId(familyId)
+                .createdAt(now)
+                .expiresAt(now.plusMillis(jwtConfig.getJwtRefreshExpirationMs()))
+                .build());
+        return token;
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
-    public Optional<RefreshToken> findByUserId(Long userId) {
-        return refreshTokenRepository.findByUserId(userId);
+    // Never echo a usable token back in errors or logs
+    private static String mask(String token) {
+        return token.length() <= 6 ? "***" : token.substring(0, 6) + "...";
     }
-}
\ No newline at end of file
+}
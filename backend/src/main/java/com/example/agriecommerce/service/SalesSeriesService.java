@@ -0,0 +1,177 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.SalesSeriesResponse;
+import com.example.agriecommerce.exception.BadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revenue and order counts per hour, day, week or month, bucketed in the
+ * business time zone across live and archived orders.
+ * <p>
+ * A bucket that ended more than {@code app.admin.sales-series.closed-after-ms}
+ * ago no longer changes, so its totals are cached for good. A request only
+ * queries from its first uncached bucket onwards, which for a chart that is
+ * refreshed is normally just the open bucket.
+ */
+@Slf4j
+@Service
+public class SalesSeriesService {
+
+    public enum Granularity {
+        HOUR, DAY, WEEK, MONTH;
+
+        LocalDateTime truncate(LocalDateTime time) {
+            return switch (this) {
+                case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+                case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+                case WEEK -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            };
+        }
+
+        LocalDateTime next(LocalDateTime bucketStart) {
+            return switch (this) {
+                case HOUR -> bucketStart.plusHours(1);
+                case DAY -> bucketStart.plusDays(1);
+                case WEEK -> bucketStart.plusWeeks(1);
+                case MONTH -> bucketStart.plusMonths(1);
+            };
+        }
+
+        // date_trunc('week') also starts weeks on Monday
+        String sqlField() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private record Totals(long orderCount, BigDecimal revenue) {
+        static final Totals EMPTY = new Totals(0, BigDecimal.ZERO);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BusinessClock businessClock;
+    private final int maxBuckets;
+    private final int maxCachedBuckets;
+    private final long closedAfterMs;
+    private final Map<Granularity, ConcurrentHashMap<LocalDateTime, Totals>> closedBuckets = new EnumMap<>(Granularity.class);
+
+    public SalesSeriesService(JdbcTemplate jdbcTemplate,
+                              BusinessClock businessClock,
+                              @Value("${app.admin.sales-series.max-buckets:2000}") int maxBuckets,
+                              @Value("${app.admin.sales-series.max-cached-buckets:50000}") int maxCachedBuckets,
+                              @Value("${app.admin.sales-series.closed-after-ms:600000}") long closedAfterMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.businessClock = businessClock;
+        this.maxBuckets = maxBuckets;
+        this.maxCachedBuckets = maxCachedBuckets;
+        this.closedAfterMs = closedAfterMs;
+        for (Granularity granularity : Granularity.values()) {
+            closedBuckets.put(granularity, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Buckets covering the business days {@code from} to {@code to}, both
+     * inclusive. Defaults to the last 30 days.
+     */
+    public SalesSeriesResponse getSeries(String granularityName, LocalDate from, LocalDate to) {
+        Granularity granularity;
+        try {
+            granularity = Granularity.valueOf(granularityName.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown granularity '" + granularityName + "', expected hour, day, week or month");
+        }
+        if (to == null) {
+            to = businessClock.today();
+        }
+        if (from == null) {
+            from = to.minusDays(29);
+        }
+        if (to.isBefore(from)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        LocalDateTime rangeEnd = to.plusDays(1).atStartOfDay();
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (LocalDateTime start = granularity.truncate(from.atStartOfDay()); start.isBefore(rangeEnd);
+             start = granularity.next(start)) {
+            if (starts.size() == maxBuckets) {
+                throw new BadRequestException("Range spans more than " + maxBuckets + " " + granularity.sqlField() + " buckets");
+            }
+            starts.add(start);
+        }
+
+        ConcurrentHashMap<LocalDateTime, Totals> cache = closedBuckets.get(granularity);
+        Map<LocalDateTime, Totals> totals = new HashMap<>();
+        LocalDateTime firstMissing = null;
+        for (LocalDateTime start : starts) {
+            Totals cached = cache.get(start);
+            if (cached == null) {
+                firstMissing = start;
+                break;
+            }
+            totals.put(start, cached);
+        }
+
+        if (firstMissing != null) {
+            LocalDateTime queryEnd = granularity.next(starts.get(starts.size() - 1));
+            Map<LocalDateTime, Totals> loaded = query(granularity, firstMissing, queryEnd);
+            Instant closedBefore = Instant.now().minusMillis(closedAfterMs);
+            for (LocalDateTime start = firstMissing; start.isBefore(queryEnd); start = granularity.next(start)) {
+                Totals bucket = loaded.getOrDefault(start, Totals.EMPTY);
+                totals.put(start, bucket);
+                if (!businessClock.toInstant(granularity.next(start)).isAfter(closedBefore)) {
+                    remember(cache, start, bucket);
+                }
+            }
+        }
+
+        List<SalesSeriesResponse.Bucket> buckets = new ArrayList<>(starts.size());
+        for (LocalDateTime start : starts) {
+            Totals bucket = totals.get(start);
+            buckets.add(SalesSeriesResponse.Bucket.builder()
+                    .start(start)
+                    .revenue(bucket.revenue())
+                    .orderCount(bucket.orderCount())
+                    .build());
+        }
+        return SalesSeriesResponse.builder()
+                .granularity(granularity.name())
+                .timeZone(businessClock.getZone().getId())
+                .buckets(buckets)
+                .build();
+    }
+
+    private Map<LocalDateTime, Totals> query(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        Timestamp start = Timestamp.from(businessClock.toInstant(from));
+        Timestamp end = Timestamp.from(businessClock.toInstant(to));
+        String sql = "SELECT date_trunc('" + granularity.sqlField() + "', " + businessClock.localTime("order_date") + "), " +
+                "COUNT(*), COALESCE(SUM(total), 0) FROM (" +
+                "SELECT order_date, total FROM orders WHERE order_date >= ? AND order_date < ? " +
+                "UNION ALL SELECT order_date, total FROM order_archive WHERE order_date >= ? AND order_date < ?" +
+                ") o GROUP BY 1";
+        Map<LocalDateTime, Totals> totals = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            totals.put(rs.getObject(1, LocalDateTime.class), new Totals(rs.getLong(2), rs.getBigDecimal(3)));
+        }, start, end, start, end);
+        return totals;
+    }
+
+    private void remember(ConcurrentHashMap<LocalDateTime, Totals> cache, LocalDateTime start, Totals totals) {
+        if (cache.size() >= maxCachedBuckets) {
+            log.debug("Sales series cache reached {} buckets, clearing", maxCachedBuckets);
+            cache.clear();
+        }
+        cache.put(start, totals);
+    }
+}
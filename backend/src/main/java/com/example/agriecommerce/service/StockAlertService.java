@@ -0,0 +1,162 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.FarmerNotificationResponse;
+import com.example.agriecommerce.model.FarmerNotification;
+import com.example.agriecommerce.model.FarmerNotificationType;
+import com.example.agriecommerce.model.ProductStatus;
+import com.example.agriecommerce.repository.FarmerNotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps listings in step with their stock and tells farmers when to restock.
+ * Each run:
+ * <ul>
+ *     <li>hides listed products that ran out (OUT_OF_STOCK), remembering their
+ *     status, and restores exactly that status once they are restocked. Products
+ *     it did not hide itself are left for an admin,</li>
+ *     <li>sends each farmer one notification covering all of their products
+ *     that fell to or below their reorder threshold since the last alert.</li>
+ * </ul>
+ * Every query is served by a partial index over only the rows it can match
+ * (see schema.sql), so a run costs time in proportion to the low-stock
+ * products, not the catalog.
+ */
+@Slf4j
+@Service
+public class StockAlertService {
+    private static final int MAX_ITEMS_PER_MESSAGE = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FarmerNotificationRepository notificationRepository;
+    private final BusinessCounters businessCounters;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultThreshold;
+    private final Map<String, Integer> unitThresholds = new HashMap<>();
+
+    public StockAlertService(JdbcTemplate jdbcTemplate,
+                             FarmerNotificationRepository notificationRepository,
+                             BusinessCounters businessCounters,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.inventory.default-reorder-threshold:10}") int defaultThreshold,
+                             @Value("${app.inventory.unit-reorder-thresholds:}") String unitThresholds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.notificationRepository = notificationRepository;
+        this.businessCounters = businessCounters;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultThreshold = defaultThreshold;
+        // "kg:20,crate:2"
+        for (String entry : unitThresholds.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length == 2) {
+                this.unitThresholds.put(parts[0].trim().toLowerCase(Locale.ROOT), Integer.parseInt(parts[1].trim()));
+            }
+        }
+    }
+
+    /** The threshold for a new product that did not specify one. */
+    public int defaultThreshold(String unitType) {
+        return unitType == null ? defaultThreshold
+                : unitThresholds.getOrDefault(unitType.trim().toLowerCase(Locale.ROOT), defaultThreshold);
+    }
+
+    public List<FarmerNotificationResponse> getNotifications(Long farmerId, int limit) {
+        return notificationRepository.findByFarmerIdOrderByCreatedAtDesc(farmerId, PageRequest.of(0, Math.min(Math.max(limit, 1), 200)))
+                .stream()
+                .map(FarmerNotificationResponse::from)
+                .toList();
+    }
+
+    public int markAllRead(Long farmerId) {
+        return notificationRepository.markAllRead(farmerId, Instant.now());
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.alert-interval-ms:300000}")
+    public void run() {
+        transactionTemplate.executeWithoutResult(status -> {
+            toggleOutOfStock();
+            alertFarmers();
+        });
+    }
+
+    private void toggleOutOfStock() {
+        // stock <= reorder_threshold is repeated so the planner can use idx_products_low_stock
+        jdbcTemplate.query("WITH sold_out AS (" +
+                        " SELECT id, status FROM products WHERE stock <= reorder_threshold AND stock <= 0" +
+                        " AND status IN ('APPROVED', 'ACTIVE') FOR UPDATE SKIP LOCKED)" +
+                        " UPDATE products p SET status = 'OUT_OF_STOCK', status_before_out_of_stock = sold_out.status," +
+                        " updated_at = now() FROM sold_out" +
+                        " WHERE p.id = sold_out.id RETURNING sold_out.status, p.stock, p.reorder_threshold",
+                (RowCallbackHandler) rs -> statusChanged(ProductStatus.valueOf(rs.getString(1)), ProductStatus.OUT_OF_STOCK,
+                        rs.getInt(2), rs.getInt(3)));
+        // status_before_out_of_stock IS NOT NULL matches idx_products_hidden_by_stock_alert
+        jdbcTemplate.query("UPDATE products SET status = status_before_out_of_stock, status_before_out_of_stock = NULL," +
+                        " updated_at = now() WHERE status = 'OUT_OF_STOCK' AND status_before_out_of_stock IS NOT NULL" +
+                        " AND stock > 0 RETURNING status, stock, reorder_threshold",
+                (RowCallbackHandler) rs -> statusChanged(ProductStatus.OUT_OF_STOCK, ProductStatus.valueOf(rs.getString(1)),
+                        rs.getInt(2), rs.getInt(3)));
+    }
+
+    private void alertFarmers() {
+        // Products that recovered can alert again the next time they run low
+        jdbcTemplate.update("UPDATE products SET low_stock_alerted = false" +
+                " WHERE low_stock_alerted AND (stock IS NULL OR stock > reorder_threshold)");
+
+        Map<Long, List<String>> lines = new TreeMap<>();
+        List<Long> alerted = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, farmer_id, name, stock, reorder_threshold, unit_type FROM products" +
+                        " WHERE stock <= reorder_threshold AND NOT low_stock_alerted AND farmer_id IS NOT NULL" +
+                        " ORDER BY farmer_id, stock, id FOR UPDATE SKIP LOCKED",
+                (RowCallbackHandler) rs -> {
+                    int stock = rs.getInt(4);
+                    String unit = rs.getString(6) != null ? " " + rs.getString(6) : "";
+                    String line = stock <= 0
+                            ? rs.getString(3) + ": out of stock"
+                            : rs.getString(3) + ": " + stock + unit + " left (reorder at " + rs.getInt(5) + ")";
+                    lines.computeIfAbsent(rs.getLong(2), farmer -> new ArrayList<>()).add(line);
+                    alerted.add(rs.getLong(1));
+                });
+        if (alerted.isEmpty()) {
+            return;
+        }
+
+        List<FarmerNotification> notifications = new ArrayList<>(lines.size());
+        lines.forEach((farmerId, items) -> notifications.add(
+                FarmerNotification.of(farmerId, FarmerNotificationType.LOW_STOCK, message(items))));
+        notificationRepository.saveAll(notifications);
+        jdbcTemplate.update(connection -> {
+            var ps = connection.prepareStatement("UPDATE products SET low_stock_alerted = true WHERE id = ANY(?)");
+            ps.setArray(1, connection.createArrayOf("bigint", alerted.toArray()));
+            return ps;
+        });
+        log.info("Sent low-stock alerts to {} farmers for {} products", notifications.size(), alerted.size());
+    }
+
+    private void statusChanged(ProductStatus from, ProductStatus to, int stock, int threshold) {
+        BusinessCounters.StockBand band = BusinessCounters.StockBand.of(stock, threshold);
+        businessCounters.productChanged(new BusinessCounters.ProductState(from, band), new BusinessCounters.ProductState(to, band));
+    }
+
+    private static String message(List<String> items) {
+        StringBuilder message = new StringBuilder()
+                .append(items.size() == 1 ? "1 product needs" : items.size() + " products need")
+                .append(" restocking:");
+        for (int i = 0; i < items.size() && i < MAX_ITEMS_PER_MESSAGE; i++) {
+            message.append("\n- ").append(items.get(i));
+        }
+        if (items.size() > MAX_ITEMS_PER_MESSAGE) {
+            message.append("\n- and ").append(items.size() - MAX_ITEMS_PER_MESSAGE).append(" more");
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.config.JwtConfig;
+import com.example.agriecommerce.model.TokenRevocation;
+import com.example.agriecommerce.repository.TokenRevocationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revocation of stateless access tokens.
+ * <ul>
+ *     <li>Logout revokes a single token by its jti. Revoked jtis go into a Bloom
+ *     filter; a negative answer, the common case, is final. A positive is confirmed
+ *     against an in-memory denylist and, failing that, the revocation table.</li>
+ *     <li>Banning a user sets a "tokens issued before" watermark, held in memory
+ *     per user id.</li>
+ * </ul>
+ * State is rebuilt from the table at startup and new rows written by other
+ * instances are picked up by a periodic sync. The sync pages by creation time and
+ * re-reads an overlap window behind its high-water mark, because a row becomes
+ * visible only when its transaction commits, possibly after rows created later.
+ * Rows expire once every token they cover has expired on its own.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private final TokenRevocationRepository revocationRepository;
+    private final JwtConfig jwtConfig;
+    private final int bloomExpectedEntries;
+    private final double bloomFalsePositiveRate;
+    private final int maxConfirmedEntries;
+    private final long syncOverlapMs;
+
+    private volatile BloomFilter revokedJtis;
+    // jti -> revoked?, for Bloom positives already checked against the table
+    private final ConcurrentHashMap<String, Boolean> confirmed = new ConcurrentHashMap<>();
+    // user id -> epoch millis; tokens issued before it are rejected
+    private final ConcurrentHashMap<Long, Long> watermarks = new ConcurrentHashMap<>();
+    // Newest created_at seen, and the rows already applied inside the overlap window
+    private volatile Instant lastSyncedAt = Instant.EPOCH;
+    private final ConcurrentHashMap<Long, Instant> recentlySynced = new ConcurrentHashMap<>();
+
+    public TokenRevocationService(TokenRevocationRepository revocationRepository,
+                                  JwtConfig jwtConfig,
+                                  @Value("${app.auth.revocation.bloom-expected-entries:100000}") int bloomExpectedEntries,
+                                  @Value("${app.auth.revocation.bloom-false-positive-rate:0.001}") double bloomFalsePositiveRate,
+                                  @Value("${app.auth.revocation.max-confirmed-entries:10000}") int maxConfirmedEntries,
+                                  @Value("${app.auth.revocation.sync-overlap-ms:60000}") long syncOverlapMs) {
+        this.revocationRepository = revocationRepository;
+        this.jwtConfig = jwtConfig;
+        this.bloomExpectedEntries = bloomExpectedEntries;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.maxConfirmedEntries = maxConfirmedEntries;
+        this.syncOverlapMs = syncOverlapMs;
+        this.revokedJtis = new BloomFilter(bloomExpectedEntries, bloomFalsePositiveRate);
+    }
+
+    @PostConstruct
+    public void load() {
+        rebuild();
+        log.info("Loaded {} user token watermarks and revoked token ids up to {}", watermarks.size(), lastSyncedAt);
+    }
+
+    /** O(1) and database-free unless the Bloom filter reports a possible hit. */
+    public boolean isRevoked(Long userId, String jti, Date issuedAt) {
+        Long watermark = watermarks.get(userId);
+        if (watermark != null && (issuedAt == null || issuedAt.getTime() < watermark)) {
+            return true;
+        }
+        if (jti == null || !revokedJtis.mightContain(jti)) {
+            return false;
+        }
+        Boolean revoked = confirmed.get(jti);
+        if (revoked == null) {
+            revoked = revocationRepository.existsByJti(jti);
+            remember(jti, revoked);
+        }
+        return revoked;
+    }
+
+    @Transactional
+    public void revokeToken(String jti, Long userId, Date expiresAt) {
+        if (jti == null || revocationRepository.existsByJti(jti)) {
+            return;
+        }
+        revocationRepository.save(TokenRevocation.ofToken(jti, userId, expiresAt.toInstant()));
+        AfterCommit.run(() -> {
+            revokedJtis.put(jti);
+            remember(jti, true);
+        });
+    }
+
+    /** Revokes every access token the user currently holds. */
+    @Transactional
+    public void revokeAllForUser(Long userId) {
+        // JWT issued-at has second precision: round up so a token from this very second is covered
+        long revokedBefore = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        Instant expiresAt = Instant.ofEpochMilli(revokedBefore + jwtConfig.getJwtExpirationMs());
+        revocationRepository.save(TokenRevocation.ofUser(userId, Instant.ofEpochMilli(revokedBefore), expiresAt));
+        AfterCommit.run(() -> watermarks.merge(userId, revokedBefore, Math::max));
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.revocation.sync-interval-ms:10000}")
+    public void syncFromOtherInstances() {
+        Instant cutoff = lastSyncedAt.minusMillis(syncOverlapMs);
+        List<TokenRevocation> rows = revocationRepository.findByCreatedAtAfterOrderByCreatedAtAsc(cutoff);
+        Instant now = Instant.now();
+        Instant newest = lastSyncedAt;
+        for (TokenRevocation row : rows) {
+            if (recentlySynced.putIfAbsent(row.getId(), row.getCreatedAt()) == null) {
+                apply(row, now);
+            }
+            if (row.getCreatedAt().isAfter(newest)) {
+                newest = row.getCreatedAt();
+            }
+        }
+        lastSyncedAt = newest;
+        Instant forgetBefore = newest.minusMillis(syncOverlapMs);
+        recentlySynced.values().removeIf(createdAt -> createdAt.isBefore(forgetBefore));
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.revocation.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = revocationRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            // A Bloom filter cannot forget, so start a fresh one from what is left
+            rebuild();
+            log.info("Purged {} expired token revocations", deleted);
+        }
+    }
+
+    private void rebuild() {
+        BloomFilter filter = new BloomFilter(bloomExpectedEntries, bloomFalsePositiveRate);
+        Instant now = Instant.now();
+        Instant newest = lastSyncedAt;
+        ConcurrentHashMap<Long, Long> current = new ConcurrentHashMap<>();
+        for (TokenRevocation row : revocationRepository.findByExpiresAtAfter(now)) {
+            if (row.getJti() != null) {
+                filter.put(row.getJti());
+            } else {
+                current.merge(row.getUserId(), row.getRevokedBefore().toEpochMilli(), Math::max);
+            }
+            if (row.getCreatedAt().isAfter(newest)) {
+                newest = row.getCreatedAt();
+            }
+        }
+        revokedJtis = filter;
+        watermarks.keySet().retainAll(current.keySet());
+        current.forEach((userId, watermark) -> watermarks.merge(userId, watermark, Math::max));
+        confirmed.clear();
+        lastSyncedAt = newest;
+    }
+
+    private void apply(TokenRevocation row, Instant now) {
+        if (!row.getExpiresAt().isAfter(now)) {
+            return;
+        }
+        if (row.getJti() != null) {
+            revokedJtis.put(row.getJti());
+            remember(row.getJti(), true);
+        } else {
+            watermarks.merge(row.getUserId(), row.getRevokedBefore().toEpochMilli(), Math::max);
+        }
+    }
+
+    private void remember(String jti, boolean revoked) {
+        if (confirmed.size() >= maxConfirmedEntries) {
+            confirmed.clear();
+        }
+        confirmed.put(jti, revoked);
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.UniqueBuyersResponse;
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.Product;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distinct-buyer counts overall and per product, category and delivery county,
+ * kept as one {@link HyperLogLog} sketch per key and business day in
+ * {@code customer_sketches}. Any range of days is answered by merging its daily
+ * sketches, with the error bounds of a single sketch.
+ * <p>
+ * Placed orders are added to in-memory sketches once they commit, and a
+ * periodic flush merges those into the stored ones. Adding a buyer is
+ * idempotent, so a flush that is retried, or a backfill over days that are
+ * already counted, never inflates the numbers.
+ */
+@Slf4j
+@Service
+public class UniqueBuyerService {
+    private static final String ALL_KEY = "*";
+
+    public enum Dimension {
+        ALL, PRODUCT, CATEGORY, COUNTY;
+
+        String column() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private record Key(String dimension, String key, LocalDate day) implements Comparable<Key> {
+        private static final Comparator<Key> ORDER = Comparator.comparing(Key::dimension)
+                .thenComparing(Key::key)
+                .thenComparing(Key::day);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BusinessClock businessClock;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxRangeDays;
+    private final ConcurrentHashMap<Key, HyperLogLog> pending = new ConcurrentHashMap<>();
+
+    public UniqueBuyerService(JdbcTemplate jdbcTemplate,
+                              BusinessClock businessClock,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.analytics.unique-buyers.max-range-days:400}") int maxRangeDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.businessClock = businessClock;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxRangeDays = maxRangeDays;
+    }
+
+    /** Counts the order's buyer once the surrounding transaction commits. */
+    public void orderPlaced(Order order, Long userId, Collection<Product> products) {
+        LocalDate day = businessClock.toLocalDate(order.getOrderDate());
+        String county = order.getDeliveryCounty();
+        AfterCommit.run(() -> {
+            add(Dimension.ALL, ALL_KEY, day, userId);
+            if (county != null && !county.isBlank()) {
+                add(Dimension.COUNTY, county, day, userId);
+            }
+            for (Product product : products) {
+                add(Dimension.PRODUCT, String.valueOf(product.getId()), day, userId);
+                if (product.getCategory() != null) {
+                    add(Dimension.CATEGORY, product.getCategory(), day, userId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Distinct buyers for one key over the business days {@code from} to
+     * {@code to} inclusive, defaulting to the last 30 days.
+     */
+    public UniqueBuyersResponse getUniqueBuyers(String dimensionName, String key, LocalDate from, LocalDate to) {
+        Dimension dimension;
+        try {
+            dimension = Dimension.valueOf(dimensionName.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown dimension '" + dimensionName + "', expected all, product, category or county");
+        }
+        if (dimension != Dimension.ALL && (key == null || key.isBlank())) {
+            throw new BadRequestException("A key is required for dimension " + dimension.column());
+        }
+        String normalizedKey = dimension == Dimension.ALL ? ALL_KEY : normalize(dimension, key);
+        LocalDate end = to != null ? to : businessClock.today();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (end.isBefore(start)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        if (start.plusDays(maxRangeDays).isBefore(end)) {
+            throw new BadRequestException("Range must not exceed " + maxRangeDays + " days");
+        }
+
+        SortedMap<LocalDate, HyperLogLog> daily = new TreeMap<>();
+        jdbcTemplate.query("SELECT day, sketch FROM customer_sketches " +
+                        "WHERE dimension = ? AND dimension_key = ? AND day BETWEEN ? AND ?",
+                (RowCallbackHandler) rs -> daily.put(rs.getDate(1).toLocalDate(), HyperLogLog.fromBytes(rs.getBytes(2))),
+                dimension.column(), normalizedKey, Date.valueOf(start), Date.valueOf(end));
+        // Include buyers not yet flushed from this instance
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            LocalDate current = day;
+            pending.computeIfPresent(new Key(dimension.column(), normalizedKey, day), (k, sketch) -> {
+                daily.computeIfAbsent(current, d -> new HyperLogLog()).merge(sketch);
+                return sketch;
+            });
+        }
+
+        HyperLogLog union = new HyperLogLog();
+        List<UniqueBuyersResponse.Day> days = new ArrayList<>(daily.size());
+        daily.forEach((day, sketch) -> {
+            union.merge(sketch);
+            days.add(UniqueBuyersResponse.Day.builder().day(day).estimate(sketch.estimate()).build());
+        });
+        long estimate = union.estimate();
+        double margin = 2 * HyperLogLog.RELATIVE_STANDARD_ERROR * estimate;
+        return UniqueBuyersResponse.builder()
+                .dimension(dimension.column())
+                .key(dimension == Dimension.ALL ? null : normalizedKey)
+                .from(start)
+                .to(end)
+                .estimate(estimate)
+                .relativeStandardError(HyperLogLog.RELATIVE_STANDARD_ERROR)
+                .lowerBound(Math.max(0, (long) Math.floor(estimate - margin)))
+                .upperBound((long) Math.ceil(estimate + margin))
+                .days(days)
+                .build();
+    }
+
+    /**
+     * Re-adds every buyer of live orders placed on the given business days, for
+     * days recorded before sketches existed or lost with an unflushed instance.
+     */
+    public long backfill(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new BadRequestException("'to' must not be before 'from'");
+        }
+        if (from.plusDays(maxRangeDays).isBefore(to)) {
+            throw new BadRequestException("Range must not exceed " + maxRangeDays + " days");
+        }
+        Timestamp start = Timestamp.from(businessClock.toInstant(from.atStartOfDay()));
+        Timestamp end = Timestamp.from(businessClock.toInstant(to.plusDays(1).atStartOfDay()));
+        long[] rows = {0};
+        jdbcTemplate.query("SELECT o.user_id, o.order_date, o.delivery_county, oi.product_id, p.category " +
+                        "FROM orders o JOIN order_items oi ON oi.order_id = o.id " +
+                        "LEFT JOIN products p ON p.id = oi.product_id " +
+                        "WHERE o.order_date >= ? AND o.order_date < ? AND o.user_id IS NOT NULL",
+                (RowCallbackHandler) rs -> {
+                    long userId = rs.getLong(1);
+                    LocalDate day = businessClock.toLocalDate(rs.getTimestamp(2));
+                    add(Dimension.ALL, ALL_KEY, day, userId);
+                    String county = rs.getString(3);
+                    if (county != null && !county.isBlank()) {
+                        add(Dimension.COUNTY, county, day, userId);
+                    }
+                    add(Dimension.PRODUCT, String.valueOf(rs.getLong(4)), day, userId);
+                    String category = rs.getString(5);
+                    if (category != null) {
+                        add(Dimension.CATEGORY, category, day, userId);
+                    }
+                    rows[0]++;
+                },
+                start, end);
+        flush();
+        log.info("Backfilled unique buyers for {} to {} from {} order lines", from, to, rows[0]);
+        return rows[0];
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.unique-buyers.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Taking a sketch out of the map is atomic with respect to add(); later
+        // adds for the same key start a fresh sketch
+        SortedMap<Key, HyperLogLog> batch = new TreeMap<>();
+        for (Key key : new ArrayList<>(pending.keySet())) {
+            HyperLogLog sketch = pending.remove(key);
+            if (sketch != null) {
+                batch.put(key, sketch);
+            }
+        }
+        try {
+            // Keys in sorted order, so concurrent flushers lock rows in the same order
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::mergeIntoStore));
+        } catch (RuntimeException e) {
+            log.warn("Flushing {} buyer sketches failed, will retry", batch.size(), e);
+            batch.forEach((key, sketch) -> pending.merge(key, sketch, (a, b) -> {
+                a.merge(b);
+                return a;
+            }));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(Dimension dimension, String key, LocalDate day, long userId) {
+        pending.compute(new Key(dimension.column(), normalize(dimension, key), day), (k, sketch) -> {
+            HyperLogLog target = sketch != null ? sketch : new HyperLogLog();
+            target.add(userId);
+            return target;
+        });
+    }
+
+    private void mergeIntoStore(Key key, HyperLogLog sketch) {
+        Object[] id = {key.dimension(), key.key(), Date.valueOf(key.day())};
+        while (true) {
+            List<byte[]> stored = jdbcTemplate.query("SELECT sketch FROM customer_sketches " +
+                    "WHERE dimension = ? AND dimension_key = ? AND day = ? FOR UPDATE", (rs, i) -> rs.getBytes(1), id);
+            if (!stored.isEmpty()) {
+                HyperLogLog merged = HyperLogLog.fromBytes(stored.get(0));
+                merged.merge(sketch);
+                jdbcTemplate.update("UPDATE customer_sketches SET sketch = ? " +
+                        "WHERE dimension = ? AND dimension_key = ? AND day = ?", merged.toBytes(), id[0], id[1], id[2]);
+                return;
+            }
+            int inserted = jdbcTemplate.update("INSERT INTO customer_sketches (dimension, dimension_key, day, sketch) " +
+                    "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING", id[0], id[1], id[2], sketch.toBytes());
+            if (inserted == 1) {
+                return;
+            }
+            // Another instance inserted the row first; merge into theirs
+        }
+    }
+
+    private static String normalize(Dimension dimension, String key) {
+        String value = key.trim();
+        if (dimension == Dimension.COUNTY) {
+            value = value.toLowerCase(Locale.ROOT);
+        }
+        return value.length() > 255 ? value.substring(0, 255) : value;
+    }
+}
@@ -4,6 +4,7 @@ import com.example.agriecommerce.dto.request.UserUpdateRequest;
 import com.example.agriecommerce.dto.response.UserResponse;
 import com.example.agriecommerce.exception.ResourceNotFoundException;
 import com.example.agriecommerce.model.User;
+import com.example.agriecommerce.model.UserRole;
 import com.example.agriecommerce.model.UserStatus;
 import com.example.agriecommerce.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -11,12 +12,28 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final GridDefinition<User> USER_GRID = GridDefinition.<User>builder("users")
+            .equality("role", "role", "role", UserRole::valueOf)
+            .equality("status", "status", "status", UserStatus::valueOf)
+            .range("createdAt", "created_at", "createdAt")
+            .index("idx_users_created_at", "created_at")
+            .index("idx_users_role_created_at", "created_at", "role")
+            .index("idx_users_status_created_at", "created_at", "status")
+            .index("idx_users_role_status_created_at", "created_at", "role", "status")
+            .build();
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshTokenService refreshTokenService;
+    private final BusinessClock businessClock;
 
     public UserResponse getUserProfile(Long userId) {
         User user = userRepository.findById(userId)
@@ -45,16 +62,24 @@ public class UserService {
         return UserResponse.from(updatedUser);
     }
 
-    public Page<UserResponse> getAllUsers(Pageable pageable) {
-        return userRepository.findAll(pageable)
+    public Page<UserResponse> getAllUsers(Map<String, String> filters, Pageable pageable) {
+        GridDefinition.Query<User> query = USER_GRID.parse(filters, pageable, businessClock.getZone());
+        return userRepository.findAll(query.specification(), query.pageable())
                 .map(UserResponse::from);
     }
 
+    @Transactional
     public UserResponse updateUserStatus(Long userId, UserStatus status) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+        UserStatus previous = user.getStatus();
         user.setStatus(status);
         User updatedUser = userRepository.save(user);
+        if (status != UserStatus.ACTIVE && previous != status) {
+            // Access tokens are trusted without a lookup, so cut off the ones already issued
+            tokenRevocationService.revokeAllForUser(userId);
+            refreshTokenService.deleteByUserId(userId);
+        }
         return UserResponse.from(updatedUser);
     }
 }
\ No newline at end of file
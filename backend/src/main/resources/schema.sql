@@ -0,0 +1,81 @@
+-- Idempotent DDL that Hibernate's ddl-auto cannot express. Runs after the
+-- entity schema update (spring.jpa.defer-datasource-initialization=true).
+
+-- Cold archive of closed orders, range-partitioned by order date. Monthly
+-- partitions are created on demand by OrderArchiveService.
+CREATE TABLE IF NOT EXISTS order_archive (
+    id          VARCHAR(255)   NOT NULL,
+    user_id     BIGINT,
+    status      VARCHAR(20)    NOT NULL,
+    total       NUMERIC(38, 2) NOT NULL,
+    order_date  TIMESTAMP(6)   NOT NULL,
+    archived_at TIMESTAMP(6)   NOT NULL DEFAULT now(),
+    payload     BYTEA          NOT NULL,
+    PRIMARY KEY (id, order_date)
+) PARTITION BY RANGE (order_date);
+
+CREATE INDEX IF NOT EXISTS idx_order_archive_id ON order_archive (id);
+CREATE INDEX IF NOT EXISTS idx_order_archive_user_date ON order_archive (user_id, order_date);
+
+-- The single-token-per-user refresh_tokens table is superseded by
+-- user_refresh_tokens. Carry unexpired sessions over (hashed, one family
+-- each) and drop it. The CREATE only exists so this stays idempotent.
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    user_id     BIGINT,
+    token       VARCHAR(500),
+    expiry_date TIMESTAMP(6) WITH TIME ZONE
+);
+INSERT INTO user_refresh_tokens (user_id, token_hash, family_id, expires_at, created_at)
+SELECT user_id, encode(sha256(convert_to(token, 'UTF8')), 'hex'), gen_random_uuid()::text, expiry_date, now()
+FROM refresh_tokens
+WHERE token IS NOT NULL AND expiry_date > now()
+ON CONFLICT (token_hash) DO NOTHING;
+DROP TABLE refresh_tokens;
+
+-- Admin dashboard rollups, maintained by DashboardRollupService. grain is 'D'
+-- (period_start is the day) or 'M' (first day of the month).
+CREATE TABLE IF NOT EXISTS dashboard_rollups (
+    grain        CHAR(1)        NOT NULL,
+    period_start DATE           NOT NULL,
+    metric       VARCHAR(40)    NOT NULL,
+    item_count   BIGINT         NOT NULL DEFAULT 0,
+    amount       NUMERIC(38, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (grain, period_start, metric)
+);
+
+-- Daily HyperLogLog sketches of distinct buyers, maintained by
+-- UniqueBuyerService. dimension is all / product / category / county.
+CREATE TABLE IF NOT EXISTS customer_sketches (
+    dimension     VARCHAR(16)  NOT NULL,
+    dimension_key VARCHAR(255) NOT NULL,
+    day           DATE         NOT NULL,
+    sketch        BYTEA        NOT NULL,
+    PRIMARY KEY (dimension, dimension_key, day)
+);
+
+-- Per-farmer sales per product and business day, maintained by
+-- FarmerSalesService. Cancelled and returned orders are subtracted.
+CREATE TABLE IF NOT EXISTS farmer_product_daily (
+    farmer_id   BIGINT         NOT NULL,
+    day         DATE           NOT NULL,
+    product_id  BIGINT         NOT NULL,
+    revenue     NUMERIC(38, 2) NOT NULL DEFAULT 0,
+    units       BIGINT         NOT NULL DEFAULT 0,
+    order_count BIGINT         NOT NULL DEFAULT 0,
+    PRIMARY KEY (farmer_id, day, product_id)
+);
+
+-- Partial indexes for StockAlertService: each covers only the handful of
+-- products its query can match, so the periodic scan stays cheap.
+CREATE INDEX IF NOT EXISTS idx_products_low_stock ON products (farmer_id, stock) WHERE stock <= reorder_threshold;
+-- Only products the service hid itself carry status_before_out_of_stock, so this
+-- one skips listings an admin marked OUT_OF_STOCK.
+DROP INDEX IF EXISTS idx_products_out_of_stock;
+CREATE INDEX IF NOT EXISTS idx_products_hidden_by_stock_alert ON products (id) WHERE status_before_out_of_stock IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_products_low_stock_alerted ON products (id) WHERE low_stock_alerted;
+
+-- Hibernate only writes the enum check constraint when it creates the table,
+-- so an existing one would reject statuses added later (UNDER_REVIEW).
+ALTER TABLE payments DROP CONSTRAINT IF EXISTS payments_status_check;
+ALTER TABLE payments ADD CONSTRAINT payments_status_check
+    CHECK (status IN ('PENDING', 'SUCCESS', 'FAILED', 'CANCELLED', 'REFUNDED', 'UNDER_REVIEW'));
@@ -0,0 +1,100 @@
+package com.example.agriecommerce.controller;
+
+import com.example.agriecommerce.config.SecurityConfig;
+import com.example.agriecommerce.security.CustomUserDetailsService;
+import com.example.agriecommerce.security.JwtAuthenticationEntryPoint;
+import com.example.agriecommerce.security.JwtTokenProvider;
+import com.example.agriecommerce.security.UserPrincipal;
+import com.example.agriecommerce.service.BusinessClock;
+import com.example.agriecommerce.service.CheckoutQueue;
+import com.example.agriecommerce.service.OrderExportService;
+import com.example.agriecommerce.service.OrderService;
+import com.example.agriecommerce.service.RateLimiter;
+import com.example.agriecommerce.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The JWT filter only authenticates the original request, so the async dispatch
+ * that writes the end of an SSE stream must not be re-authorized.
+ */
+@WebMvcTest(OrderController.class)
+@Import({SecurityConfig.class, JwtAuthenticationEntryPoint.class})
+@TestPropertySource(properties = {"app.allowedOrigins=http://localhost:3000", "upload.directory=/tmp/uploads"})
+class OrderControllerAsyncSecurityTest {
+    private static final String TOKEN = "valid-token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private OrderService orderService;
+    @MockitoBean
+    private CheckoutQueue checkoutQueue;
+    @MockitoBean
+    private OrderExportService orderExportService;
+    @MockitoBean
+    private BusinessClock businessClock;
+    @MockitoBean
+    private JwtTokenProvider tokenProvider;
+    @MockitoBean
+    private CustomUserDetailsService customUserDetailsService;
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+    @MockitoBean
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Claims claims = mock(Claims.class);
+        when(claims.getId()).thenReturn("jti-1");
+        when(tokenProvider.parseClaims(TOKEN)).thenReturn(claims);
+        when(tokenProvider.toPrincipal(claims)).thenReturn(new UserPrincipal(7L, "buyer@example.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        // A stream that has already reached a terminal status and completed
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(SseEmitter.event().name("status").data("DELIVERED"));
+        emitter.complete();
+        when(orderService.subscribeToStatus("ORD-1")).thenReturn(emitter);
+    }
+
+    @Test
+    void authenticatedStreamIsCompletedOnAsyncDispatch() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/v1/orders/ORD-1/events")
+                        .header("Authorization", "Bearer " + TOKEN))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("data:DELIVERED")));
+    }
+
+    @Test
+    void unauthenticatedStreamIsRejectedBeforeGoingAsync() throws Exception {
+        mockMvc.perform(get("/api/v1/orders/ORD-1/events"))
+                .andExpect(status().isUnauthorized());
+    }
+}
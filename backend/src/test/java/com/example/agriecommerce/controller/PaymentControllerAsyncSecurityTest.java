@@ -0,0 +1,105 @@
+package com.example.agriecommerce.controller;
+
+import com.example.agriecommerce.config.SecurityConfig;
+import com.example.agriecommerce.dto.response.PaymentResponse;
+import com.example.agriecommerce.model.PaymentStatus;
+import com.example.agriecommerce.security.CustomUserDetailsService;
+import com.example.agriecommerce.security.JwtAuthenticationEntryPoint;
+import com.example.agriecommerce.security.JwtTokenProvider;
+import com.example.agriecommerce.security.UserPrincipal;
+import com.example.agriecommerce.service.MpesaCallbackIngestor;
+import com.example.agriecommerce.service.PaymentService;
+import com.example.agriecommerce.service.RateLimiter;
+import com.example.agriecommerce.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The JWT filter only authenticates the original request, so the async dispatch
+ * that writes a CompletableFuture's result must not be re-authorized.
+ */
+@WebMvcTest(PaymentController.class)
+@Import({SecurityConfig.class, JwtAuthenticationEntryPoint.class})
+@TestPropertySource(properties = {"app.allowedOrigins=http://localhost:3000", "upload.directory=/tmp/uploads"})
+class PaymentControllerAsyncSecurityTest {
+    private static final String TOKEN = "valid-token";
+    private static final String BODY = "{\"orderId\":\"ORD-1\",\"paymentMethod\":\"MPESA\",\"phoneNumber\":\"254700000000\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private PaymentService paymentService;
+    @MockitoBean
+    private MpesaCallbackIngestor mpesaCallbackIngestor;
+    @MockitoBean
+    private JwtTokenProvider tokenProvider;
+    @MockitoBean
+    private CustomUserDetailsService customUserDetailsService;
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+    @MockitoBean
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        Claims claims = mock(Claims.class);
+        when(claims.getId()).thenReturn("jti-1");
+        when(tokenProvider.parseClaims(TOKEN)).thenReturn(claims);
+        when(tokenProvider.toPrincipal(claims)).thenReturn(new UserPrincipal(7L, "buyer@example.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        PaymentResponse response = PaymentResponse.builder()
+                .orderId("ORD-1")
+                .status(PaymentStatus.PENDING)
+                .checkoutRequestId("ws_CO_1")
+                .build();
+        when(paymentService.processPayment(eq(7L), any())).thenReturn(CompletableFuture.completedFuture(response));
+    }
+
+    @Test
+    void authenticatedAsyncPaymentIsWrittenOnAsyncDispatch() throws Exception {
+        MvcResult started = mockMvc.perform(post("/api/v1/payments/mpesa/stk-push")
+                        .header("Authorization", "Bearer " + TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.checkoutRequestId").value("ws_CO_1"));
+    }
+
+    @Test
+    void unauthenticatedPaymentIsRejectedBeforeGoingAsync() throws Exception {
+        mockMvc.perform(post("/api/v1/payments/mpesa/stk-push")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY))
+                .andExpect(status().isUnauthorized());
+    }
+}
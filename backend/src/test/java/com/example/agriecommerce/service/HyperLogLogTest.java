@@ -0,0 +1,101 @@
+package com.example.agriecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+    // Three standard errors: the hash is fixed, so these inputs always land in the same place
+    private static final double TOLERANCE = 3 * HyperLogLog.RELATIVE_STANDARD_ERROR;
+
+    @Test
+    void estimatesWithinTheStandardError() {
+        for (int n : new int[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sequential = sketch(0, n);
+            HyperLogLog scattered = new HyperLogLog();
+            for (long i = 0; i < n; i++) {
+                scattered.add(i * 7919 + 1_000_000_007L);
+            }
+            assertWithinError(n, sequential.estimate());
+            assertWithinError(n, scattered.estimate());
+        }
+    }
+
+    @Test
+    void emptyAndRepeatedValues() {
+        assertEquals(0, new HyperLogLog().estimate());
+
+        HyperLogLog once = sketch(1, 500);
+        HyperLogLog twice = sketch(1, 500);
+        for (long i = 1; i < 500; i++) {
+            twice.add(i);
+        }
+        assertEquals(once.estimate(), twice.estimate());
+        assertArrayEquals(once.toBytes(), twice.toBytes());
+    }
+
+    @Test
+    void mergeIsTheUnion() {
+        HyperLogLog monday = sketch(0, 60_000);
+        HyperLogLog tuesday = sketch(40_000, 100_000);
+        monday.merge(tuesday);
+
+        assertArrayEquals(sketch(0, 100_000).toBytes(), monday.toBytes());
+        assertWithinError(100_000, monday.estimate());
+
+        // Merging is idempotent
+        long before = monday.estimate();
+        monday.merge(tuesday);
+        assertEquals(before, monday.estimate());
+    }
+
+    @Test
+    void sparseSketchRoundTrips() {
+        HyperLogLog small = sketch(0, 200);
+        byte[] bytes = small.toBytes();
+        assertTrue(bytes.length < 2 + (1 << HyperLogLog.PRECISION), "expected the sparse form, got " + bytes.length);
+
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertEquals(small.estimate(), restored.estimate());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void denseSketchRoundTrips() {
+        HyperLogLog large = sketch(0, 100_000);
+        byte[] bytes = large.toBytes();
+        assertEquals(2 + (1 << HyperLogLog.PRECISION), bytes.length);
+
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+        assertEquals(large.estimate(), restored.estimate());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+
+    @Test
+    void rejectsForeignOrCorruptBytes() {
+        byte[] sparse = sketch(0, 10).toBytes();
+
+        byte[] otherPrecision = sparse.clone();
+        otherPrecision[1] = HyperLogLog.PRECISION + 2;
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(otherPrecision));
+
+        byte[] truncated = Arrays.copyOf(sparse, sparse.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(truncated));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[1]));
+    }
+
+    private static HyperLogLog sketch(long fromInclusive, long toExclusive) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long i = fromInclusive; i < toExclusive; i++) {
+            sketch.add(i);
+        }
+        return sketch;
+    }
+
+    private static void assertWithinError(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= TOLERANCE, "estimate " + estimate + " for " + expected + " is off by " + error);
+    }
+}
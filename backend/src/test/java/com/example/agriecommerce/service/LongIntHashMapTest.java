@@ -0,0 +1,52 @@
+package com.example.agriecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntHashMapTest {
+
+    @Test
+    void putIfAbsentKeepsTheFirstValue() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        assertEquals(-1, map.get(42));
+        assertEquals(-1, map.putIfAbsent(42, 7));
+        assertEquals(7, map.putIfAbsent(42, 8));
+        assertEquals(7, map.get(42));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void growsPastItsExpectedSize() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        for (int i = 1; i <= 200_000; i++) {
+            assertEquals(-1, map.putIfAbsent(i * 31L, i));
+        }
+        assertEquals(200_000, map.size());
+        for (int i = 1; i <= 200_000; i++) {
+            assertEquals(i, map.get(i * 31L));
+        }
+        assertEquals(-1, map.get(31L * 200_001));
+    }
+
+    @Test
+    void handlesExtremeAndCollidingKeys() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        long[] keys = {Long.MIN_VALUE, Long.MAX_VALUE, -1, 1, 1L << 32, 1L << 48, 2L << 48, 3L << 48};
+        for (int i = 0; i < keys.length; i++) {
+            map.putIfAbsent(keys[i], i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, map.get(keys[i]));
+        }
+        assertEquals(keys.length, map.size());
+    }
+
+    @Test
+    void zeroIsReserved() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(0, 1));
+        assertEquals(-1, map.get(0));
+        assertEquals(0, map.size());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.request.CallbackReplayRequest;
+import com.example.agriecommerce.dto.response.CallbackReplayResponse;
+import com.example.agriecommerce.repository.MpesaCallbackRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MpesaCallbackReplayerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MpesaCallbackIngestor ingestor;
+    private MpesaCallbackReplayer replayer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ingestor = mock(MpesaCallbackIngestor.class);
+        when(ingestor.awaitIdle(anyLong())).thenReturn(true);
+        replayer = new MpesaCallbackReplayer(ingestor, mock(MpesaCallbackRepository.class),
+                mock(JdbcTemplate.class), objectMapper);
+    }
+
+    @Test
+    void replaysParsedCallbacksWithTheirRawBody() throws Exception {
+        JsonNode payload = objectMapper.readTree("""
+                {"Body":{"stkCallback":{"MerchantRequestID":"m-1","CheckoutRequestID":"ws_CO_1",
+                "ResultCode":0,"ResultDesc":"ok","CallbackMetadata":{"Item":[
+                {"Name":"Amount","Value":150},{"Name":"MpesaReceiptNumber","Value":"R1"}]}}}}""");
+        when(ingestor.accept(any(PaymentGateway.StkCallback.class), anyString()))
+                .thenReturn(MpesaCallbackIngestor.Result.REJECTED)
+                .thenReturn(MpesaCallbackIngestor.Result.ACCEPTED)
+                .thenReturn(MpesaCallbackIngestor.Result.DUPLICATE);
+
+        CallbackReplayResponse response = replayer.replay(request(payload, 2));
+
+        ArgumentCaptor<PaymentGateway.StkCallback> callbacks = ArgumentCaptor.forClass(PaymentGateway.StkCallback.class);
+        verify(ingestor, times(3)).accept(callbacks.capture(), eq(payload.toString()));
+        assertEquals("ws_CO_1", callbacks.getValue().checkoutRequestId());
+        assertEquals(1, response.getAccepted());
+        assertEquals(1, response.getDuplicates());
+        assertEquals(1, response.getBackpressureRetries());
+        assertEquals(0, response.getInvalid());
+    }
+
+    @Test
+    void countsBodiesThatAreNotCallbacksAsInvalid() throws Exception {
+        JsonNode payload = objectMapper.readTree("{\"Body\":{}}");
+
+        CallbackReplayResponse response = replayer.replay(request(payload, 3));
+
+        assertEquals(3, response.getInvalid());
+        verify(ingestor, never()).accept(any(PaymentGateway.StkCallback.class), anyString());
+    }
+
+    private static CallbackReplayRequest request(JsonNode payload, int copies) {
+        CallbackReplayRequest request = new CallbackReplayRequest();
+        request.setPayloads(List.of(payload));
+        request.setCopies(copies);
+        request.setFreshIds(false);
+        return request;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.exception.BadRequestException;
+import com.example.agriecommerce.model.Order;
+import com.example.agriecommerce.model.OrderStatus;
+import com.example.agriecommerce.model.OrderStatusHistory;
+import com.example.agriecommerce.repository.OrderRepository;
+import com.example.agriecommerce.repository.OrderStatusHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderStateMachineTest {
+    private static final String ORDER_ID = "ORD-TEST";
+
+    private final List<OrderStatusHistory> history = Collections.synchronizedList(new ArrayList<>());
+    private Order stored;
+    private OrderStateMachine stateMachine;
+
+    @BeforeEach
+    void setUp() {
+        stored = order(OrderStatus.PENDING, 0L);
+
+        // Behaves like a versioned row: a save carrying a stale version is rejected
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.findById(anyString())).thenAnswer(inv -> {
+            synchronized (this) {
+                return Optional.of(order(stored.getStatus(), stored.getVersion()));
+            }
+        });
+        when(orderRepository.saveAndFlush(any(Order.class))).thenAnswer(inv -> {
+            Order candidate = inv.getArgument(0);
+            synchronized (this) {
+                if (!candidate.getVersion().equals(stored.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(Order.class, candidate.getId());
+                }
+                stored = order(candidate.getStatus(), stored.getVersion() + 1);
+                return stored;
+            }
+        });
+
+        OrderStatusHistoryRepository historyRepository = mock(OrderStatusHistoryRepository.class);
+        when(historyRepository.save(any(OrderStatusHistory.class))).thenAnswer(inv -> {
+            history.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+
+        stateMachine = new OrderStateMachine(orderRepository, historyRepository,
+                List.of(mock(OrderStatusListener.class)), new NoOpTransactionManager(), 50);
+    }
+
+    @Test
+    void rejectsTransitionsOutsideTheTable() {
+        assertThrows(BadRequestException.class,
+                () -> stateMachine.transition(ORDER_ID, OrderStatus.DELIVERED, OrderStateMachine.SOURCE_ADMIN));
+        assertTrue(stateMachine.tryTransition(ORDER_ID, OrderStatus.DELIVERED, OrderStateMachine.SOURCE_PAYMENT).isEmpty());
+        assertEquals(OrderStatus.PENDING, stored.getStatus());
+        assertTrue(history.isEmpty());
+    }
+
+    @Test
+    void concurrentWritersNeverLoseAnUpdate() throws Exception {
+        OrderStatus[] targets = {
+                OrderStatus.CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED,
+                OrderStatus.DELIVERED, OrderStatus.CANCELLED, OrderStatus.RETURNED
+        };
+        int writers = 24;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            OrderStatus target = targets[i % targets.length];
+            futures.add(pool.submit(() -> {
+                start.await();
+                return stateMachine.tryTransition(ORDER_ID, target, OrderStateMachine.SOURCE_ADMIN);
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Each applied transition is recorded exactly once, the rows chain from
+        // PENDING without gaps, and the chain ends at the stored status. The table
+        // has no cycles, so each status can be the source of at most one row.
+        assertEquals(stored.getVersion().longValue(), history.size());
+        Map<OrderStatus, OrderStatusHistory> bySource = new EnumMap<>(OrderStatus.class);
+        for (OrderStatusHistory row : history) {
+            assertNull(bySource.put(row.getFromStatus(), row), "status left twice: " + row.getFromStatus());
+            assertTrue(row.getFromStatus().canTransitionTo(row.getToStatus()));
+        }
+        OrderStatus current = OrderStatus.PENDING;
+        while (bySource.containsKey(current)) {
+            current = bySource.get(current).getToStatus();
+        }
+        assertEquals(stored.getStatus(), current);
+    }
+
+    private static Order order(OrderStatus status, Long version) {
+        Order order = new Order();
+        order.setId(ORDER_ID);
+        order.setStatus(status);
+        order.setVersion(version);
+        return order;
+    }
+
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.request.PaymentRequest;
+import com.example.agriecommerce.dto.response.PaymentResponse;
+import com.example.agriecommerce.exception.PaymentGatewayException;
+import com.example.agriecommerce.exception.PaymentGatewayTimeoutException;
+import com.example.agriecommerce.model.*;
+import com.example.agriecommerce.repository.OrderRepository;
+import com.example.agriecommerce.repository.PaymentRepository;
+import com.example.agriecommerce.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class PaymentServiceTest {
+    private static final String ORDER_ID = "ORD-1";
+
+    private PaymentRepository paymentRepository;
+    private OrderStateMachine orderStateMachine;
+    private PaymentGatewayClient paymentGatewayClient;
+    private PaymentService paymentService;
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        orderStateMachine = mock(OrderStateMachine.class);
+        paymentGatewayClient = mock(PaymentGatewayClient.class);
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        paymentService = new PaymentService(paymentRepository, orderRepository, userRepository, orderStateMachine,
+                paymentGatewayClient, mock(PaymentStatusNotifier.class));
+        ReflectionTestUtils.setField(paymentService, "unacknowledgedWindowMinutes", 15L);
+
+        order = new Order();
+        order.setId(ORDER_ID);
+        order.setTotal(new BigDecimal("150.00"));
+        order.setCustomerPhone("0712345678");
+        when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+        when(userRepository.findById(7L)).thenReturn(Optional.of(new User()));
+        when(paymentRepository.findByOrderId(ORDER_ID)).thenReturn(Optional.empty());
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void timedOutPushLeavesThePaymentPending() {
+        when(paymentGatewayClient.initiateStkPush(any())).thenReturn(CompletableFuture.failedFuture(
+                new PaymentGatewayTimeoutException("Payment provider did not respond in time", new TimeoutException())));
+
+        PaymentResponse response = paymentService.processPayment(7L, mpesaRequest()).join();
+
+        assertEquals(PaymentStatus.PENDING, response.getStatus());
+        assertNull(response.getCheckoutRequestId());
+        assertEquals(PaymentStatus.PENDING, lastSavedPayment().getStatus());
+    }
+
+    @Test
+    void rejectedPushFailsThePayment() {
+        when(paymentGatewayClient.initiateStkPush(any())).thenReturn(CompletableFuture.failedFuture(
+                new PaymentGatewayException("M-Pesa rejected the STK push")));
+
+        CompletableFuture<PaymentResponse> result = paymentService.processPayment(7L, mpesaRequest());
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(PaymentGatewayException.class, error.getCause());
+        assertEquals(PaymentStatus.FAILED, lastSavedPayment().getStatus());
+    }
+
+    @Test
+    void successIsPairedWithTheUnacknowledgedPaymentOfThatPhoneAndAmount() {
+        Payment waiting = unacknowledged("0712345678");
+        when(paymentRepository.findByCheckoutRequestIdIn(anyCollection())).thenReturn(List.of());
+        when(paymentRepository.findUnacknowledgedMpesaSince(any(Date.class)))
+                .thenReturn(new ArrayList<>(List.of(unacknowledged("0799999999"), waiting)));
+
+        Set<String> matched = paymentService.applyStkCallbacks(List.of(success("254712345678")));
+
+        assertEquals(Set.of("ws_CO_9"), matched);
+        assertEquals(PaymentStatus.SUCCESS, waiting.getStatus());
+        assertEquals("ws_CO_9", waiting.getCheckoutRequestId());
+        assertEquals("R9", waiting.getReceiptNumber());
+        verify(orderStateMachine).transitionAll(List.of(ORDER_ID), OrderStatus.PENDING, OrderStatus.CONFIRMED,
+                OrderStateMachine.SOURCE_PAYMENT);
+    }
+
+    @Test
+    void ambiguousSuccessIsNotPaired() {
+        Payment first = unacknowledged("0712345678");
+        Payment second = unacknowledged("+254712345678");
+        when(paymentRepository.findByCheckoutRequestIdIn(anyCollection())).thenReturn(List.of());
+        when(paymentRepository.findUnacknowledgedMpesaSince(any(Date.class)))
+                .thenReturn(new ArrayList<>(List.of(first, second)));
+
+        Set<String> matched = paymentService.applyStkCallbacks(List.of(success("254712345678")));
+
+        assertTrue(matched.isEmpty());
+        assertEquals(PaymentStatus.PENDING, first.getStatus());
+        assertEquals(PaymentStatus.PENDING, second.getStatus());
+        verify(orderStateMachine, never()).transitionAll(anyCollection(), any(), any(), any());
+    }
+
+    private Payment lastSavedPayment() {
+        ArgumentCaptor<Payment> saved = ArgumentCaptor.forClass(Payment.class);
+        verify(paymentRepository, atLeastOnce()).save(saved.capture());
+        return saved.getValue();
+    }
+
+    private static PaymentRequest mpesaRequest() {
+        PaymentRequest request = new PaymentRequest();
+        request.setOrderId(ORDER_ID);
+        request.setPaymentMethod(PaymentMethod.MPESA);
+        return request;
+    }
+
+    private Payment unacknowledged(String phoneNumber) {
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setAmount(order.getTotal());
+        payment.setPaymentMethod(PaymentMethod.MPESA);
+        payment.setPhoneNumber(phoneNumber);
+        return payment;
+    }
+
+    private static PaymentGateway.StkCallback success(String phoneNumber) {
+        return new PaymentGateway.StkCallback("m-9", "ws_CO_9", 0, "The service request is processed successfully.",
+                new BigDecimal("150"), "R9", phoneNumber);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.dto.response.RateLimitStatsResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    // auth: burst of 3, one token a second; catalog: burst of 2; default: burst of 5
+    private final RateLimiter rateLimiter = new RateLimiter(1000, 3, 60, 2, 60, 5, 60);
+
+    @Test
+    void routesPathsToTheFirstMatchingPolicy() {
+        assertEquals("auth", rateLimiter.policyFor("/api/v1/auth/login").getName());
+        assertEquals("catalog", rateLimiter.policyFor("/api/v1/products/12").getName());
+        assertEquals("catalog", rateLimiter.policyFor("/api/v1/categories").getName());
+        assertEquals("default", rateLimiter.policyFor("/api/v1/orders").getName());
+        assertNull(rateLimiter.policyFor("/actuator/health"));
+    }
+
+    @Test
+    void allowsTheBurstThenReportsTheWait() {
+        RateLimiter.Policy auth = rateLimiter.policyFor("/api/v1/auth/login");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RateLimiter.ALLOWED, rateLimiter.tryAcquire(auth, "10.0.0.1"));
+        }
+        long wait = rateLimiter.tryAcquire(auth, "10.0.0.1");
+        assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1), "wait " + wait);
+        // A throttled attempt does not consume a token or push the wait out
+        assertTrue(rateLimiter.tryAcquire(auth, "10.0.0.1") <= wait);
+    }
+
+    @Test
+    void bucketsAreKeptPerClientAndPolicy() {
+        RateLimiter.Policy auth = rateLimiter.policyFor("/api/v1/auth/login");
+        RateLimiter.Policy catalog = rateLimiter.policyFor("/api/v1/products");
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire(auth, "10.0.0.1");
+        }
+        assertNotEquals(RateLimiter.ALLOWED, rateLimiter.tryAcquire(auth, "10.0.0.1"));
+
+        assertEquals(RateLimiter.ALLOWED, rateLimiter.tryAcquire(auth, "10.0.0.2"));
+        assertEquals(RateLimiter.ALLOWED, rateLimiter.tryAcquire(catalog, "10.0.0.1"));
+    }
+
+    @Test
+    void countsAllowedAndThrottledRequests() {
+        RateLimiter.Policy catalog = rateLimiter.policyFor("/api/v1/products");
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire(catalog, "10.0.0.1");
+        }
+
+        RateLimitStatsResponse stats = rateLimiter.getStats();
+        RateLimitStatsResponse.PolicyStats catalogStats = stats.getPolicies().stream()
+                .filter(policy -> policy.getName().equals("catalog"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, catalogStats.getAllowed());
+        assertEquals(3, catalogStats.getThrottled());
+        assertEquals(1, stats.getTrackedClients());
+    }
+
+    @Test
+    void sweepKeepsOnlyBucketsThatAreStillDraining() {
+        RateLimiter.Policy auth = rateLimiter.policyFor("/api/v1/auth/login");
+        rateLimiter.tryAcquire(auth, "10.0.0.1");
+        rateLimiter.sweepIdleBuckets();
+        // One token short of full for about a second, so the bucket must survive
+        assertEquals(1, rateLimiter.getStats().getTrackedClients());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.agriecommerce.service;
+
+import com.example.agriecommerce.config.JwtConfig;
+import com.example.agriecommerce.exception.TokenRefreshException;
+import com.example.agriecommerce.model.RefreshToken;
+import com.example.agriecommerce.repository.RefreshTokenRepository;
+import com.example.agriecommerce.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+    private static final String TOKEN = "presented-refresh-token";
+    private static final String FAMILY = "family-1";
+
+    private RefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setJwtRefreshExpirationMs(60_000);
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, mock(UserRepository.class), jwtConfig);
+    }
+
+    @Test
+    void rotatesAnUnusedTokenWithinItsFamily() {
+        RefreshTokenRepository.TokenLookup current = lookup(null, Instant.now().plus(1, ChronoUnit.DAYS));
+        when(refreshTokenRepository.findLookupByTokenHash(RefreshTokenService.hash(TOKEN))).thenReturn(Optional.of(current));
+        when(refreshTokenRepository.markRotated(eq(11L), any(Instant.class))).thenReturn(1);
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(TOKEN);
+
+        assertSame(current, rotation.previous());
+        assertNotEquals(TOKEN, rotation.token());
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals(FAMILY, saved.getValue().getFamilyId());
+        // Only the hash of the successor is stored
+        assertEquals(RefreshTokenService.hash(rotation.token()), saved.getValue().getTokenHash());
+        verify(refreshTokenRepository, never()).deleteByFamilyId(anyString());
+    }
+
+    @Test
+    void reusingARotatedTokenRevokesTheFamily() {
+        RefreshTokenRepository.TokenLookup rotated = lookup(Instant.now().minusSeconds(5), Instant.now().plus(1, ChronoUnit.DAYS));
+        when(refreshTokenRepository.findLookupByTokenHash(anyString())).thenReturn(Optional.of(rotated));
+
+        assertThrows(TokenRefreshException.class, () -> refreshTokenService.rotate(TOKEN));
+
+        verify(refreshTokenRepository).deleteByFamilyId(FAMILY);
+        verify(refreshTokenRepository, never()).markRotated(anyLong(), any());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void losingAConcurrentRotationIsTreatedAsReuse() {
+        RefreshTokenRepository.TokenLookup current = lookup(null, Instant.now().plus(1, ChronoUnit.DAYS));
+        when(refreshTokenRepository.findLookupByTokenHash(anyString())).thenReturn(Optional.of(current));
+        when(refreshTokenRepository.markRotated(eq(11L), any(Instant.class))).thenReturn(0);
+
+        assertThrows(TokenRefreshException.class, () -> refreshTokenService.rotate(TOKEN));
+
+        verify(refreshTokenRepository).deleteByFamilyId(FAMILY);
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void expiredTokenIsRejectedWithoutRevokingTheFamily() {
+        RefreshTokenRepository.TokenLookup expired = lookup(null, Instant.now().minusSeconds(1));
+        when(refreshTokenRepository.findLookupByTokenHash(anyString())).thenReturn(Optional.of(expired));
+
+        assertThrows(TokenRefreshException.class, () -> refreshTokenService.rotate(TOKEN));
+
+        verify(refreshTokenRepository, never()).markRotated(anyLong(), any());
+        verify(refreshTokenRepository, never()).deleteByFamilyId(anyString());
+    }
+
+    @Test
+    void unknownTokenIsRejected() {
+        when(refreshTokenRepository.findLookupByTokenHash(anyString())).thenReturn(Optional.empty());
+
+        TokenRefreshException error = assertThrows(TokenRefreshException.class, () -> refreshTokenService.rotate(TOKEN));
+
+        // The presented token is never echoed back in full
+        assertFalse(error.getToken().contains(TOKEN));
+        verify(refreshTokenRepository, never()).deleteByFamilyId(anyString());
+    }
+
+    private static RefreshTokenRepository.TokenLookup lookup(Instant rotatedAt, Instant expiresAt) {
+        RefreshTokenRepository.TokenLookup lookup = mock(RefreshTokenRepository.TokenLookup.class);
+        when(lookup.getId()).thenReturn(11L);
+        when(lookup.getUserId()).thenReturn(7L);
+        when(lookup.getFamilyId()).thenReturn(FAMILY);
+        when(lookup.getRotatedAt()).thenReturn(rotatedAt);
+        when(lookup.getExpiresAt()).thenReturn(expiresAt);
+        return lookup;
+    }
+}